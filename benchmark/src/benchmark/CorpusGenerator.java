@@ -0,0 +1,293 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Seeded generator of realistic media filenames with known ground truth.
+ * Every sample combines a title with one of the naming conventions found
+ * in the wild: scene releases with S##E## or #x## markers, fansub releases
+ * with absolute episode numbering, bracketed release groups and CRC tags,
+ * codec and resolution tags, episode titles, v2 re-releases and movies
+ * titled by year. Some titles hold non ASCII characters. The same seed
+ * always produces the same samples, so a corpus of any size can be
+ * regenerated instead of checked in.
+ */
+public final class CorpusGenerator implements Iterator<CorpusGenerator.Sample> {
+
+    /**
+     * A generated filename along with the output a correct rename gives.
+     */
+    public static final class Sample {
+        /**Naming convention the filename was generated with.*/
+        final String category;
+        /**Generated original filename.*/
+        final String filename;
+        /**Expected formatted filename.*/
+        final String expected;
+
+        private Sample(String category, String filename, String expected) {
+            this.category = category;
+            this.filename = filename;
+            this.expected = expected;
+        }
+    }
+
+    /**Titles without digits, ASCII.*/
+    private static final String[] TITLES = {
+            "Tokyo Ghoul", "One Piece", "Attack on Titan", "Cowboy Bebop", "Fullmetal Alchemist",
+            "Death Note", "Naruto Shippuden", "Bleach", "Hunter x Hunter", "Sword Art Online",
+            "Breaking Bad", "Better Call Saul", "The Office", "Parks and Recreation", "Game of Thrones",
+            "The Wire", "Mad Men", "Brooklyn Nine-Nine", "Stranger Things", "The Mandalorian",
+            "Avatar The Last Airbender", "Neon Genesis Evangelion", "Samurai Champloo", "Mushishi",
+            "Made in Abyss", "Vinland Saga", "Dr Stone", "Fire Force", "Blue Lock", "Spy x Family",
+            "Chainsaw Man", "Jujutsu Kaisen", "Demon Slayer", "Haikyuu", "Kaguya-sama Love is War",
+            "The Expanse", "Battlestar Galactica", "Firefly", "Twin Peaks", "True Detective"
+    };
+    /**Titles with non ASCII characters.*/
+    private static final String[] UNICODE_TITLES = {
+            "Pokémon", "Kōkaku Kidōtai", "Shingeki no Kyojin – Final", "Dragon Ball Kai ★", "Ghibli Café",
+            "Шерлок", "Sekai Saikō", "Hōzuki no Reitetsu", "Amélie Série", "Niña de Fuego"
+    };
+    /**Titles of movies, without digits.*/
+    private static final String[] MOVIE_TITLES = {
+            "Gladiator", "Blade Runner", "Spirited Away", "The Revenant", "Inception", "Zootopia",
+            "Jaws", "Pans Labyrinth", "Doctor Strange", "Princess Mononoke", "The Matrix", "Alien",
+            "Heat", "Arrival", "Parasite", "Akira", "Perfect Blue", "Paprika", "Up", "Coco"
+    };
+    /**Titles of episodes, without digits.*/
+    private static final String[] EPISODE_TITLES = {
+            "Pilot", "The New Girl", "Ozymandias", "Felina", "Homecoming", "The Long Night", "Reunion"
+    };
+    /**Release groups of fansub releases.*/
+    private static final String[] FANSUB_GROUPS = {
+            "HorribleSubs", "SubsPlease", "Erai-raws", "FFF", "Coalgirls", "UTW", "Doki", "Anime Time"
+    };
+    /**Release groups of scene releases.*/
+    private static final String[] SCENE_GROUPS = {"DIMENSION", "LOL", "KILLERS", "NTb", "ION10", "MEMENTO"};
+    /**Resolution tags.*/
+    private static final String[] RESOLUTIONS = {"480p", "720p", "1080p", "2160p"};
+    /**Source tags of scene releases.*/
+    private static final String[] SOURCES = {"WEB", "WEB-DL", "HDTV", "BluRay", "WEBRip"};
+    /**Codec tags of scene releases.*/
+    private static final String[] CODECS = {"x264", "x265", "H264", "HEVC"};
+    /**File extensions of media files.*/
+    private static final String[] EXTENSIONS = {"mkv", "mp4", "avi", "m4v"};
+
+    /**Source of every random choice.*/
+    private final Random random;
+    /**Number of samples left to generate.*/
+    private long remaining;
+
+    /**
+     * Create a generator of the given number of samples.
+     * @param seed of the random choices.
+     * @param count number of samples to generate.
+     */
+    public CorpusGenerator(long seed, long count) {
+        this.random = new Random(seed);
+        this.remaining = count;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return remaining > 0;
+    }
+
+    @Override
+    public Sample next() {
+        if(remaining <= 0){
+            throw new NoSuchElementException();
+        }
+        remaining--;
+        switch(random.nextInt(9)){
+            case 0:
+                return scene();
+            case 1:
+                return fansub(pick(TITLES), "fansub");
+            case 2:
+                return fansubWithCrc();
+            case 3:
+                return fansub(pick(UNICODE_TITLES), "unicode");
+            case 4:
+                return movie();
+            case 5:
+                return dottedMovie();
+            case 6:
+                return episodeTitle();
+            case 7:
+                return crossMarker();
+            default:
+                return versioned();
+        }
+    }
+
+    /**
+     * Scene release with a dotted title and S##E## marker.
+     * Example: The.Expanse.S02E05.1080p.WEB.x264-NTb.mkv
+     * @return sample.
+     */
+    private Sample scene() {
+        String title = pick(TITLES);
+        int season = 1 + random.nextInt(12);
+        int episode = 1 + random.nextInt(24);
+        String ext = pick(EXTENSIONS);
+        String marker = String.format("S%02dE%02d", season, episode);
+        String filename = title.replace(' ', '.') + "." + marker + "." + pick(RESOLUTIONS) + "." +
+                pick(SOURCES) + "." + pick(CODECS) + "-" + pick(SCENE_GROUPS) + "." + ext;
+        return new Sample("scene", filename, title + " " + marker + "." + ext);
+    }
+
+    /**
+     * Release with an S##E## marker, sometimes lower case, followed by
+     * the title of the episode.
+     * Example: Breaking Bad s05e14 Ozymandias 1080p.mkv
+     * @return sample.
+     */
+    private Sample episodeTitle() {
+        String title = pick(TITLES);
+        int season = 1 + random.nextInt(12);
+        int episode = 1 + random.nextInt(24);
+        String ext = pick(EXTENSIONS);
+        String marker = String.format("S%02dE%02d", season, episode);
+        String filename = title + " " + (random.nextBoolean() ? marker : marker.toLowerCase()) + " " +
+                pick(EPISODE_TITLES) + " " + pick(RESOLUTIONS) + "." + ext;
+        return new Sample("episodeTitle", filename, title + " " + marker + "." + ext);
+    }
+
+    /**
+     * Release with a #x## marker and the title of the episode.
+     * Example: Mad Men - 2x05 - The New Girl.mkv
+     * @return sample.
+     */
+    private Sample crossMarker() {
+        String title = pick(TITLES);
+        int season = 1 + random.nextInt(9);
+        int episode = 1 + random.nextInt(24);
+        String ext = pick(EXTENSIONS);
+        String filename = String.format("%s - %dx%02d - %s.%s", title, season, episode, pick(EPISODE_TITLES), ext);
+        return new Sample("crossMarker", filename, String.format("%s S%02dE%02d.%s", title, season, episode, ext));
+    }
+
+    /**
+     * Fansub re-release, marked v2 right after the episode number.
+     * Example: [Doki] Mushishi - 07v2 [720p].mkv
+     * @return sample.
+     */
+    private Sample versioned() {
+        String title = pick(TITLES);
+        String episode = episode();
+        String ext = pick(EXTENSIONS);
+        String filename = "[" + pick(FANSUB_GROUPS) + "] " + title + " - " + episode + "v" + (2 + random.nextInt(3)) +
+                " [" + pick(RESOLUTIONS) + "]." + ext;
+        return new Sample("versioned", filename, title + " S01E" + episode + "." + ext);
+    }
+
+    /**
+     * Fansub release with a bracketed group and absolute episode number.
+     * Example: [HorribleSubs] Tokyo Ghoul - 07 [720p].mkv
+     * @param title of the show.
+     * @param category of the sample.
+     * @return sample.
+     */
+    private Sample fansub(String title, String category) {
+        String episode = episode();
+        String ext = pick(EXTENSIONS);
+        String filename = "[" + pick(FANSUB_GROUPS) + "] " + title + " - " + episode + " [" + pick(RESOLUTIONS) + "]." + ext;
+        return new Sample(category, filename, title + " S01E" + episode + "." + ext);
+    }
+
+    /**
+     * Fansub release with codec tags and a CRC checksum.
+     * Example: [Doki] Mushishi - 112 [1080p][HEVC][8C127EE1].mkv
+     * @return sample.
+     */
+    private Sample fansubWithCrc() {
+        String title = pick(TITLES);
+        String episode = episode();
+        String ext = pick(EXTENSIONS);
+        String filename = "[" + pick(FANSUB_GROUPS) + "] " + title + " - " + episode + " [" + pick(RESOLUTIONS) +
+                "][" + pick(CODECS) + "][" + String.format("%08X", random.nextInt()) + "]." + ext;
+        return new Sample("crc", filename, title + " S01E" + episode + "." + ext);
+    }
+
+    /**
+     * Movie with the year in parenthesis.
+     * Example: Blade Runner (1982) [1080p].mkv
+     * @return sample.
+     */
+    private Sample movie() {
+        String title = pick(MOVIE_TITLES);
+        int year = year();
+        String ext = pick(EXTENSIONS);
+        String filename = title + " (" + year + ") [" + pick(RESOLUTIONS) + "]." + ext;
+        return new Sample("movie", filename, title + " " + year + "." + ext);
+    }
+
+    /**
+     * Scene release of a movie with a dotted title.
+     * Example: Blade.Runner.1982.1080p.BluRay.x264-MEMENTO.mkv
+     * @return sample.
+     */
+    private Sample dottedMovie() {
+        String title = pick(MOVIE_TITLES);
+        int year = year();
+        String ext = pick(EXTENSIONS);
+        String filename = title.replace(' ', '.') + "." + year + "." + pick(RESOLUTIONS) + "." + pick(SOURCES) +
+                "." + pick(CODECS) + "-" + pick(SCENE_GROUPS) + "." + ext;
+        return new Sample("dottedMovie", filename, title + " " + year + "." + ext);
+    }
+
+    /**
+     * Absolute episode number, two digits up to 99 and three digits above.
+     * @return formatted episode number.
+     */
+    private String episode() {
+        int episode = 1 + random.nextInt(random.nextInt(4) == 0 ? 240 : 99);
+        return String.format(episode > 99 ? "%03d" : "%02d", episode);
+    }
+
+    /**
+     * Year of release of a movie.
+     * @return year between 1951 and 2020.
+     */
+    private int year() {
+        return 1951 + random.nextInt(70);
+    }
+
+    /**
+     * Pick one of the given values.
+     * @param values to pick from.
+     * @return picked value.
+     */
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Write a generated corpus, one tab separated line per sample:
+     * category, filename, expected.
+     * @param args number of samples, seed and output file.
+     * @throws IOException if the output file cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 3){
+            System.err.println("Usage: CorpusGenerator <count> <seed> <output file>");
+            return;
+        }
+        CorpusGenerator generator = new CorpusGenerator(Long.parseLong(args[1]), Long.parseLong(args[0]));
+        try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)){
+            while(generator.hasNext()){
+                Sample sample = generator.next();
+                writer.write(sample.category + "\t" + sample.filename + "\t" + sample.expected);
+                writer.newLine();
+            }
+        }
+    }
+}
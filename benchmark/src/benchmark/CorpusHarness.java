@@ -0,0 +1,147 @@
+package benchmark;
+
+import constants.Constants;
+import rename.MediaFile;
+import rename.Rename;
+import utilities.Utilities;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Accuracy and throughput harness of the rename engine over a generated
+ * corpus, see {@link CorpusGenerator}.
+ * Reports the share of filenames renamed to their ground truth, per
+ * naming convention and overall, along with files per second, per file
+ * latency percentiles and the bytes allocated per file. Samples are
+ * generated in chunks outside of the measured section, so only the
+ * rename itself is timed and its allocation counted.
+ *
+ * Usage: CorpusHarness [count] [seed] [settings directory]
+ */
+public final class CorpusHarness {
+    /**Default number of filenames to rename.*/
+    private static final long DEFAULT_COUNT = 1000000;
+    /**Default seed of the generated corpus.*/
+    private static final long DEFAULT_SEED = 42;
+    /**Number of filenames renamed before measuring, to warm up the JIT.*/
+    private static final int WARMUP = 50000;
+    /**Number of samples generated at a time.*/
+    private static final int CHUNK = 10000;
+
+    /**
+     * Correct and total count of a naming convention.
+     */
+    private static final class Score {
+        private long correct = 0;
+        private long total = 0;
+    }
+
+    private CorpusHarness() {
+    }
+
+    public static void main(String[] args) {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_COUNT;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_SEED;
+        Rename renameModule = createRename(args.length > 2 ? args[2] + "/" : null);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        /*Warm up with samples of another seed.*/
+        CorpusGenerator warmup = new CorpusGenerator(seed + 1, WARMUP);
+        while(warmup.hasNext()){
+            renameModule.rename(new MediaFile(warmup.next().filename));
+        }
+
+        CorpusGenerator generator = new CorpusGenerator(seed, count);
+        CorpusGenerator.Sample[] chunk = new CorpusGenerator.Sample[CHUNK];
+        long[] latencies = new long[(int) count];
+        Map<String, Score> scores = new TreeMap<>();
+        Score overall = new Score();
+        long renamed = 0;
+        long elapsed = 0;
+        long allocated = 0;
+        while(generator.hasNext()){
+            int size = 0;
+            while(size < CHUNK && generator.hasNext()){
+                chunk[size++] = generator.next();
+            }
+            String[] results = new String[size];
+            long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+            long chunkStart = System.nanoTime();
+            for(int i = 0; i < size; i++){
+                long start = System.nanoTime();
+                MediaFile mediaFile = new MediaFile(chunk[i].filename);
+                renameModule.rename(mediaFile);
+                results[i] = mediaFile.toString();
+                latencies[(int) renamed + i] = System.nanoTime() - start;
+            }
+            elapsed += System.nanoTime() - chunkStart;
+            allocated += threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+            for(int i = 0; i < size; i++){
+                Score score = scores.computeIfAbsent(chunk[i].category, k -> new Score());
+                boolean correct = chunk[i].expected.equals(results[i]);
+                score.total++;
+                overall.total++;
+                if(correct){
+                    score.correct++;
+                    overall.correct++;
+                }
+            }
+            renamed += size;
+        }
+
+        Arrays.sort(latencies);
+        System.out.println("Files:       " + renamed + " (seed " + seed + ")");
+        for(Map.Entry<String, Score> entry : scores.entrySet()){
+            System.out.println(String.format("Accuracy:    %-12s %7.3f%% of %d", entry.getKey(),
+                    percent(entry.getValue()), entry.getValue().total));
+        }
+        System.out.println(String.format("Accuracy:    %-12s %7.3f%%", "overall", percent(overall)));
+        System.out.println(String.format("Throughput:  %.0f files/s", renamed / (elapsed / 1e9)));
+        System.out.println(String.format("Latency:     p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                percentile(latencies, 0.5), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies[latencies.length - 1] / 1e3));
+        System.out.println(String.format("Allocation:  %.0f bytes/file, %.1f MB/s",
+                (double) allocated / renamed, allocated / (elapsed / 1e9) / (1024 * 1024)));
+    }
+
+    /**
+     * Create the rename module, with the settings files of the given
+     * directory or with default settings.
+     * @param offset directory of the settings files, null for defaults.
+     * @return rename module.
+     */
+    private static Rename createRename(String offset) {
+        if(offset == null){
+            return new Rename(new HashMap<>(), new HashMap<>(), new HashMap<>());
+        }
+        return new Rename(Utilities.loadSettingsFile(offset + Constants.SETTINGS_FILE),
+                Utilities.loadSettingsFile(offset + Constants.SPECIAL_RENAME_CASES_FILE),
+                Utilities.loadSettingsFile(offset + Constants.SPECIAL_EP_CASES_FILE));
+    }
+
+    /**
+     * Compute the share of correct renames.
+     * @param score to compute share of.
+     * @return percentage correct.
+     */
+    private static double percent(Score score) {
+        return score.total == 0 ? 0 : 100.0 * score.correct / score.total;
+    }
+
+    /**
+     * Look up a percentile of the sorted latencies.
+     * @param latencies sorted, in nanoseconds.
+     * @param percentile between 0 and 1.
+     * @return latency in microseconds.
+     */
+    private static double percentile(long[] latencies, double percentile) {
+        int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile * latencies.length) - 1);
+        return latencies[Math.max(0, index)] / 1e3;
+    }
+}
@@ -0,0 +1,168 @@
+package benchmark;
+
+import constants.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import rename.MediaFile;
+import rename.Rename;
+import utilities.Utilities;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of the rename engine.
+ * Every invocation renames the whole filename corpus, results are
+ * reported per filename.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenameBenchmark {
+    /**Name of the corpus file that holds one original filename per line.*/
+    private static final String CORPUS_FILE = "filenames.txt";
+    /**Number of filenames in the checked in corpus, must match the
+     * number of lines in {@link #CORPUS_FILE}.*/
+    static final int CORPUS_SIZE = 4489;
+
+    /**Directory that holds the corpus and its settings files.*/
+    @Param("benchmark/corpus")
+    public String corpusDirectory;
+
+    /**Original filenames to be renamed.*/
+    private String[] filenames;
+    /**Formatted filenames produced by renaming the corpus once.*/
+    private String[] renamedFilenames;
+    /**Rename module loaded with the corpus settings files.*/
+    private Rename renameModule;
+
+    /**
+     * Load the corpus and the settings files that go along with it.
+     * @throws IOException if the corpus cannot be read.
+     */
+    @Setup(Level.Trial)
+    public void loadCorpus() throws IOException {
+        String offset = corpusDirectory + "/";
+        List<String> lines = Files.readAllLines(Paths.get(offset + CORPUS_FILE), StandardCharsets.UTF_8);
+        if(lines.size() != CORPUS_SIZE){
+            throw new IllegalStateException("Expected " + CORPUS_SIZE + " filenames, found " + lines.size());
+        }
+        filenames = lines.toArray(new String[0]);
+        HashMap<String, String> settings = Utilities.loadSettingsFile(offset + Constants.SETTINGS_FILE);
+        HashMap<String, String> specialRenameCases = Utilities.loadSettingsFile(offset + Constants.SPECIAL_RENAME_CASES_FILE);
+        HashMap<String, String> specialEpisodeCases = Utilities.loadSettingsFile(offset + Constants.SPECIAL_EP_CASES_FILE);
+        renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        renamedFilenames = new String[filenames.length];
+        for(int i = 0; i < filenames.length; i++){
+            MediaFile mediaFile = new MediaFile(filenames[i]);
+            renameModule.rename(mediaFile);
+            String renamed = mediaFile.toString();
+            renamedFilenames[i] = renamed == null ? filenames[i] : renamed;
+        }
+    }
+
+    /**
+     * Rename every filename of the corpus from scratch.
+     * @param blackhole to consume the formatted output.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void rename(Blackhole blackhole) {
+        for(String filename : filenames){
+            MediaFile mediaFile = new MediaFile(filename);
+            renameModule.rename(mediaFile);
+            blackhole.consume(mediaFile.toString());
+        }
+    }
+
+    /**
+     * Rename the already renamed corpus as the copy pass does, where
+     * already renamed filenames short circuit.
+     * @param blackhole to consume the formatted output.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void renameAgain(Blackhole blackhole) {
+        for(String filename : renamedFilenames){
+            MediaFile mediaFile = new MediaFile(filename);
+            mediaFile.renamed();
+            renameModule.rename(mediaFile);
+            blackhole.consume(mediaFile.toString());
+        }
+    }
+
+    /**
+     * Rename every filename of the corpus as a single parallel batch.
+     * @param blackhole to consume the formatted output.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void renameAll(Blackhole blackhole) {
+        List<MediaFile> batch = new ArrayList<>(filenames.length);
+        for(String filename : filenames){
+            batch.add(new MediaFile(filename));
+        }
+        for(MediaFile mediaFile : renameModule.renameAll(batch)){
+            blackhole.consume(mediaFile.toString());
+        }
+    }
+
+    /**
+     * Rename every filename of the corpus as a single series batch.
+     * @param blackhole to consume the formatted output.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void renameSeries(Blackhole blackhole) {
+        List<MediaFile> batch = new ArrayList<>(filenames.length);
+        for(String filename : filenames){
+            batch.add(new MediaFile(filename));
+        }
+        for(MediaFile mediaFile : renameModule.renameSeries(batch)){
+            blackhole.consume(mediaFile.toString());
+        }
+    }
+
+    /**
+     * Run every benchmark with the GC profiler attached so that
+     * allocated bytes per filename are reported alongside ops/s.
+     * @param args optional corpus directory.
+     * @throws RunnerException if the benchmark fails.
+     */
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.include(RenameBenchmark.class.getSimpleName());
+        builder.addProfiler(GCProfiler.class);
+        if(args.length != 0){
+            builder.param("corpusDirectory", args[0]);
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
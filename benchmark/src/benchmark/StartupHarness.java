@@ -0,0 +1,116 @@
+package benchmark;
+
+import constants.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup harness of a single file run.
+ * Launches the application in a new JVM over and over, each time with a
+ * single file to rename, as a download client would on every finished
+ * download. Reports the time from launch until the file is renamed, and
+ * until the JVM has exited. Every option after the run count is passed to
+ * the launched JVM, so the same runs can be compared with and without an
+ * AppCDS archive or other JVM options. An archive is made by a single
+ * run with -XX:ArchiveClassesAtExit.
+ *
+ * Usage: StartupHarness [runs] [jvm options...]
+ */
+public final class StartupHarness {
+    /**Default number of runs.*/
+    private static final int DEFAULT_RUNS = 20;
+    /**Runs made before measuring, to warm up the file system caches.*/
+    private static final int WARMUP = 3;
+    /**File renamed by every run.*/
+    private static final String FILENAME = "[Grp] Show - 01 [720p].mkv";
+
+    private StartupHarness() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+        List<String> jvmOptions = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : new ArrayList<>();
+
+        /*Settings are read from the working directory of the launched JVM.
+        * The directory is named without digits, they could be taken for an
+        * episode number on file systems where the path is not split.*/
+        File directory = new File(System.getProperty("java.io.tmpdir"), "mediaRenamerStartup");
+        File media = new File(directory, "media");
+        if(!media.isDirectory() && !media.mkdirs()){
+            throw new IOException("Cannot create " + media);
+        }
+        List<String> settings = Arrays.asList(
+                Constants.DEFAULT_RENAME_DIRECTORY + ": " + media.getAbsolutePath(),
+                Constants.USER_INTERACTION + ": " + Constants.FALSE);
+        Files.write(new File(directory, ".\\" + Constants.SETTINGS_FILE).toPath(), settings, StandardCharsets.UTF_8);
+
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("launch.Runner");
+        command.add(".");
+
+        long[] renamed = new long[runs];
+        long[] exited = new long[runs];
+        for(int i = -WARMUP; i < runs; i++){
+            File original = new File(media, FILENAME);
+            for(File file : media.listFiles()){
+                Files.delete(file.toPath());
+            }
+            Files.write(original.toPath(), new byte[0]);
+
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command).directory(directory)
+                    .redirectOutput(new File(directory, "output.txt"))
+                    .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            /*The file is renamed once it is gone under its original name.*/
+            while(original.exists() && process.isAlive()){
+                Thread.sleep(1);
+            }
+            long renameTime = System.nanoTime() - start;
+            process.waitFor();
+            long exitTime = System.nanoTime() - start;
+            if(original.exists()){
+                throw new IllegalStateException("File was not renamed, exit code " + process.exitValue());
+            }
+            if(i >= 0){
+                renamed[i] = renameTime;
+                exited[i] = exitTime;
+            }
+        }
+
+        System.out.println("JVM options: " + (jvmOptions.isEmpty() ? "none" : String.join(" ", jvmOptions)));
+        report("Time to first rename", renamed);
+        report("Time to exit", exited);
+    }
+
+    /**
+     * Print the distribution of a set of times.
+     * @param name of the times.
+     * @param times in nanos.
+     */
+    private static void report(String name, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-21s min %6.1f ms  p50 %6.1f ms  max %6.1f ms%n", name,
+                millis(sorted[0]), millis(sorted[sorted.length / 2]), millis(sorted[sorted.length - 1]));
+    }
+
+    /**
+     * Convert nanos to millis.
+     * @param nanos to convert.
+     * @return millis.
+     */
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -14,6 +14,20 @@ public class Constants {
     public static final String SPECIAL_EP_CASES_FILE = "specialEpisodes.txt";
     /**Name of the media division file read in and wrote to by system.*/
     public static final String MEDIA_DIVISION_FILE = "mediaDivision.txt";
+    /**Name of the user defined filename rules file read in by the system.*/
+    public static final String FILENAME_RULES_FILE = "filenameRules.txt";
+    /**Name of the file that low confidence renames are queued in for review.*/
+    public static final String REVIEW_QUEUE_FILE = "reviewQueue.txt";
+    /**Name of the file that caches rename results between runs.*/
+    public static final String PARSE_CACHE_FILE = "parseCache.txt";
+    /**Name of the file that records the files handled by earlier runs.*/
+    public static final String SCAN_MANIFEST_FILE = "scanManifest.txt";
+    /**Name of the file holding the token a send presents to the server.*/
+    public static final String SERVER_TOKEN_FILE = "serverToken.txt";
+    /**Default file the rename and copy plan is written to and applied from.*/
+    public static final String PLAN_FILE = "plan.jsonl";
+    /**Extension of the journal kept next to a plan file while it is applied.*/
+    public static final String JOURNAL_FILE_EXTENSION = ".journal";
 
     /**Find and replace var for DEFAULT_MEDIA_NAME for mediaName*/
     public static final String MEDIA_NAME = "MEDIA_NAME";
@@ -52,6 +66,40 @@ public class Constants {
     public static final String EXCLUDE_FILE_TYPES = "ExcludeFileTypes";
     /**Settings header to determine if backup is desired.*/
     public static final String BACKUP = "Backup";
+    /**Settings header to determine if rename results are cached between runs.*/
+    public static final String PARSE_CACHE = "ParseCache";
+    /**Settings header to determine if files handled by earlier runs are skipped while unchanged.*/
+    public static final String SCAN_MANIFEST = "ScanManifest";
+    /**Settings header to determine if low confidence renames are queued for
+     * review instead of prompting the user.*/
+    public static final String REVIEW_QUEUE = "ReviewQueue";
+    /**Settings header to determine if the stages of the rename algorithm are timed.*/
+    public static final String STAGE_TIMERS = "StageTimers";
+    /**Settings header to determine how many directories are parsed at once.*/
+    public static final String PARSE_WORKERS = "ParseWorkers";
+    /**Settings header to determine how many files are copied at once.*/
+    public static final String COPY_WORKERS = "CopyWorkers";
+    /**Settings header to determine how many file system lookups are made at once.*/
+    public static final String METADATA_CONCURRENCY = "MetadataConcurrency";
+    /**Settings header to determine how many seconds a watched file has to go unchanged before it is renamed.*/
+    public static final String WATCH_SETTLE_SECONDS = "WatchSettleSeconds";
+    /**Settings header to determine the local port the server listens on.*/
+    public static final String SERVER_PORT = "ServerPort";
+    /**Settings header to determine when the journal of an apply is forced to disk.*/
+    public static final String JOURNAL_SYNC = "JournalSync";
+    /**Settings header to determine how many seconds an apply may take before it stops, to be resumed later.*/
+    public static final String TIME_BUDGET_SECONDS = "TimeBudgetSeconds";
+
+    /**Command line mode that writes the rename and copy plan instead of renaming.*/
+    public static final String PLAN = "plan";
+    /**Command line mode that applies a previously written plan.*/
+    public static final String APPLY = "apply";
+    /**Command line mode that keeps watching the rename directory for new files.*/
+    public static final String WATCH = "watch";
+    /**Command line mode that keeps the settings loaded and takes jobs from the send mode.*/
+    public static final String SERVE = "serve";
+    /**Command line mode that hands a file or directory to a running server.*/
+    public static final String SEND = "send";
 
     /**String representation of "true" for setting flags in settings files.*/
     public static final String TRUE = "TRUE";
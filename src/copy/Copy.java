@@ -2,6 +2,7 @@ package copy;
 
 import constants.Constants;
 import rename.MediaFile;
+import utilities.MetadataProbe;
 import utilities.Utilities;
 
 import java.io.File;
@@ -35,6 +36,17 @@ public class Copy {
      * @param mediaFile to by moved.
      */
     public void copy(MediaFile mediaFile){
+        copy(mediaFile, true);
+    }
+
+    /**
+     * Algorithm to determine where the media file should
+     * live after the move.
+     * @param mediaFile to by moved.
+     * @param createDirectories true to create the directories of the new
+     *                          location, false to leave the file system untouched.
+     */
+    public void copy(MediaFile mediaFile, boolean createDirectories){
         String destination = settings.get(Constants.DEFAULT_COPY_DIRECTORY);
 
         if(destination == null){
@@ -92,11 +104,12 @@ public class Copy {
             mediaType = "";
         }
         String preNewPath = destination+"\\"+mediaType;
-        if(!Utilities.fileExists(preNewPath)){
-            Utilities.makeDirectory(preNewPath);
-        }
         String newPath = preNewPath+newFolder;
         newPath = newPath.trim();
+        MetadataProbe.Lookup lookup = createDirectories ? MetadataProbe.exists(preNewPath, newPath) : null;
+        if(createDirectories && !lookup.exists(0)){
+            Utilities.makeDirectory(preNewPath);
+        }
 
         /*Extract the filename of the file to be copied.*/
         String filename = Utilities.parseFilenameFromPath(mediaFile.toString());
@@ -106,7 +119,7 @@ public class Copy {
         String dest = newPath+"\\"+filename;
 
         /*Need to create the directory if it does not exist.*/
-        if(!Utilities.fileExists(newPath)) {
+        if(createDirectories && !lookup.exists(1)) {
             Utilities.makeDirectory(newPath);
         }
 
@@ -161,18 +174,17 @@ public class Copy {
         if(copyLoc != null) {
             destination = copyLoc.get(mediaType);
         }
-        //return if destination does not exist in the file structure.
-        if(destination == null || !Utilities.fileExists(destination)){
+        if(destination == null){
             return;
         }
         //assign media type to destination.
-        if(mediaType != null){
-            destination += "\\"+mediaType;
-        }
+        String typeDestination = mediaType == null ? destination : destination+"\\"+mediaType;
         //return if destination does not exist in the file structure.
-        if(!Utilities.fileExists(destination)){
+        MetadataProbe.Lookup lookup = MetadataProbe.exists(destination, typeDestination);
+        if(!lookup.exists(0) || !lookup.exists(1)){
             return;
         }
+        destination = typeDestination;
         /*We have two cases where the file can be located.
         * Either the file is located in:
         * {title}\{title} Season {SNum}\
@@ -181,40 +193,55 @@ public class Copy {
         * or
         * {title}\*/
         String mediaName = Utilities.parseFilenameFromPath(mediaFile.getMediaName());
-        handleDefaultMediaFileStructureCases(mediaFile, mediaName, destination);
         /*If we are unable to find a match, lets see if we can do a replacement
-        * on the name from the rename special case file.*/
-        for(String originalName: specialRenameCases.keySet()){
-            if(("$$"+mediaName).equals(originalName)){
-                mediaName = specialRenameCases.get(originalName);
-                break;
-            }
+        * on the name from the rename special case file. The folders of both
+        * names are looked up at once.*/
+        String specialMediaName = specialRenameCases.get("$$"+mediaName);
+        String seasonNumber = Integer.toString(Integer.parseInt(mediaFile.getSeasonNumber()));
+        String[] folders = seasonFolders(destination, mediaName, seasonNumber);
+        String[] specialFolders = specialMediaName == null ? new String[0] :
+                seasonFolders(destination, specialMediaName, seasonNumber);
+        String[] paths = new String[folders.length + specialFolders.length];
+        System.arraycopy(folders, 0, paths, 0, folders.length);
+        System.arraycopy(specialFolders, 0, paths, folders.length, specialFolders.length);
+        MetadataProbe.Lookup folderLookup = MetadataProbe.exists(paths);
+        handleDefaultMediaFileStructureCases(mediaFile, folderLookup, paths, 0);
+        if(specialFolders.length > 0){
+            handleDefaultMediaFileStructureCases(mediaFile, folderLookup, paths, folders.length);
         }
-        handleDefaultMediaFileStructureCases(mediaFile, mediaName, destination);
+    }
+
+    /**
+     * Build the folders a media file can be located in, in order of preference:
+     * {title}\{title} Season {SNum}, {title} Season {SNum} and {title}.
+     * @param destination parent directory of where the file belongs.
+     * @param mediaName of the media file folder.
+     * @param seasonNumber of the media file, without leading zeros.
+     * @return folders in order of preference.
+     */
+    private static String[] seasonFolders(String destination, String mediaName, String seasonNumber){
+        return new String[]{
+                destination+"\\"+mediaName+"\\"+mediaName+" "+Constants.SEASON+" "+seasonNumber,
+                destination+"\\"+mediaName+" "+Constants.SEASON+" "+seasonNumber,
+                destination+"\\"+mediaName
+        };
     }
 
     /**
      * Helper method to determine where the file belongs in the default file structure.
      * @param mediaFile of the file to determine placement.
-     * @param mediaName of what the media file folder is changed to. (Special Rename Case File)
-     * @param destination of where the parent directory of where the file belongs.
+     * @param lookup of the folders the file can be located in.
+     * @param folders looked up.
+     * @param first index of the folders of a media name, see {@link #seasonFolders}.
      */
-    private static void handleDefaultMediaFileStructureCases(MediaFile mediaFile, String mediaName, String destination){
-        String seasonNumber = Integer.toString(Integer.parseInt(mediaFile.getSeasonNumber()));
-        String seasonFolder = destination+"\\"+mediaName+"\\"+mediaName+" "+Constants.SEASON+" "+seasonNumber;
+    private static void handleDefaultMediaFileStructureCases(MediaFile mediaFile, MetadataProbe.Lookup lookup,
+                                                             String[] folders, int first){
         String media = Utilities.parseFilenameFromPath(mediaFile.toString());
-        if(Utilities.fileExists(seasonFolder)){
-            mediaFile.setCopyLocation(seasonFolder+"\\"+media);
-            return;
-        }
-        seasonFolder = destination+"\\"+mediaName+" "+Constants.SEASON+" "+seasonNumber;
-        if(Utilities.fileExists(seasonFolder)){
-            mediaFile.setCopyLocation(seasonFolder+"\\"+media);
-            return;
-        }
-        seasonFolder = destination+"\\"+mediaName;
-        if(Utilities.fileExists(seasonFolder)){
-            mediaFile.setCopyLocation(seasonFolder+"\\"+media);
+        for(int i = first; i < first + 3; i++){
+            if(lookup.exists(i)){
+                mediaFile.setCopyLocation(folders[i]+"\\"+media);
+                return;
+            }
         }
     }
 }
@@ -27,10 +27,12 @@ public class ErrorHandler {
     /**
      * Output new data to end of existing file.
      * If file does not exist, file is created.
+     * Callers on different threads write one after the other,
+     * so lines are never interleaved.
      * @param filePath of file to add data to.
      * @param data to add to the given filePath.
      */
-    public static void printOutToFile(String filePath, String data){
+    public static synchronized void printOutToFile(String filePath, String data){
         try{
             PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(filePath,true)));
             writer.println(data);
@@ -0,0 +1,281 @@
+package launch;
+
+import errorHandle.ErrorHandler;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write ahead journal of the operations of a plan being applied, see
+ * {@link PlanApplier}. An operation is known by its line in the plan file.
+ * It is recorded as begun before it touches any file, and as done once it
+ * succeeded, so an apply that was stopped, by a crash or a time budget,
+ * can be resumed: done operations are skipped, and an operation that was
+ * begun but not done is known to have been cut short.
+ * Records are written straight to the file, so they outlive a crash of
+ * the application. When they are forced to disk, to outlive a crash of
+ * the machine as well, is up to the {@link Sync} policy.
+ * The journal belongs to one version of the plan file. Once the plan file
+ * changes, the journal is started over.
+ */
+final class OperationJournal implements Closeable {
+    /**First field of the line naming the plan version.*/
+    private static final String PLAN = "PLAN";
+    /**First field of the line of a begun operation.*/
+    private static final String BEGIN = "BEGIN";
+    /**First field of the line of a done operation.*/
+    private static final String DONE = "DONE";
+    /**Separates the fields of a journal line.*/
+    private static final String FIELD_SEPARATOR = "\t";
+    /**Time between forcing records to disk with {@link Sync#INTERVAL}.*/
+    private static final long SYNC_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * When records are forced to disk.
+     */
+    enum Sync {
+        /**Every record, before its operation goes on. Slowest, nothing is lost.*/
+        ALWAYS,
+        /**By the first record a second or more after the last force, and
+         * when the journal is closed. A crash of the machine loses the
+         * records since the last force: about a second of them while
+         * records keep coming, all of them if no record followed.*/
+        INTERVAL,
+        /**Left to the operating system. A crash of the machine may lose records.*/
+        NEVER
+    }
+
+    /**Channel the records are appended to.*/
+    private final FileChannel channel;
+    /**Policy of forcing records to disk.*/
+    private final Sync sync;
+    /**Operations done, by an earlier apply or this one.*/
+    private final Set<Long> done = new HashSet<>();
+    /**Operations begun by an earlier apply and not done.*/
+    private final Set<Long> interrupted = new HashSet<>();
+    /**Time records were last forced to disk, in nanos.*/
+    private long lastSync = System.nanoTime();
+
+    private OperationJournal(FileChannel channel, Sync sync) {
+        this.channel = channel;
+        this.sync = sync;
+    }
+
+    /**
+     * Open the journal of a plan file, reading what earlier applies of
+     * the same plan did. The journal is started over if the plan changed.
+     * @param journalFile path of the journal, created if it does not exist.
+     * @param planFile the journal belongs to.
+     * @param sync when records are forced to disk.
+     * @return opened journal.
+     * @throws IOException if the plan or journal cannot be read, or the journal written.
+     */
+    static OperationJournal open(String journalFile, String planFile, Sync sync) throws IOException {
+        String version = PLAN + FIELD_SEPARATOR + version(Paths.get(planFile));
+        Path path = Paths.get(journalFile);
+        Set<Long> begun = new HashSet<>();
+        Set<Long> done = new HashSet<>();
+        boolean samePlan = false;
+        if(Files.exists(path)){
+            try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)){
+                samePlan = version.equals(reader.readLine());
+                String line;
+                while(samePlan && (line = reader.readLine()) != null){
+                    String[] fields = line.split(FIELD_SEPARATOR);
+                    if(fields.length != 2){
+                        continue; //torn by a crash
+                    }
+                    try{
+                        if(BEGIN.equals(fields[0])){
+                            begun.add(Long.parseLong(fields[1]));
+                        } else if(DONE.equals(fields[0])){
+                            done.add(Long.parseLong(fields[1]));
+                        }
+                    } catch (NumberFormatException e){
+                        //torn by a crash
+                    }
+                }
+            }
+        }
+        FileChannel channel;
+        if(samePlan){
+            /*Records are appended by this apply alone.*/
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        OperationJournal journal = new OperationJournal(channel, sync);
+        try{
+            if(samePlan){
+                /*A line torn by a crash is ended, so the next record starts on a line of its own.*/
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, channel.size() - 1);
+                if(last.get(0) != '\n'){
+                    journal.write("");
+                }
+            } else {
+                journal.write(version);
+            }
+            journal.force();
+        } catch (IOException e){
+            channel.close();
+            throw e;
+        }
+        begun.removeAll(done);
+        journal.done.addAll(done);
+        journal.interrupted.addAll(begun);
+        return journal;
+    }
+
+    /**
+     * Determine if an operation is done.
+     * @param operation line of the operation in the plan file.
+     * @return true if done, false otherwise.
+     */
+    synchronized boolean isDone(long operation) {
+        return done.contains(operation);
+    }
+
+    /**
+     * Determine if an operation was begun by an earlier apply and cut short.
+     * @param operation line of the operation in the plan file.
+     * @return true if cut short, false otherwise.
+     */
+    synchronized boolean wasInterrupted(long operation) {
+        return interrupted.contains(operation);
+    }
+
+    /**
+     * Record an operation as begun, before it touches any file.
+     * @param operation line of the operation in the plan file.
+     * @throws IOException if the record cannot be written.
+     */
+    synchronized void begin(long operation) throws IOException {
+        record(BEGIN + FIELD_SEPARATOR + operation);
+    }
+
+    /**
+     * Record an operation as done.
+     * @param operation line of the operation in the plan file.
+     * @throws IOException if the record cannot be written.
+     */
+    synchronized void done(long operation) throws IOException {
+        record(DONE + FIELD_SEPARATOR + operation);
+        done.add(operation);
+        interrupted.remove(operation);
+    }
+
+    /**
+     * Retrieve the number of operations done.
+     * @return operations done, by an earlier apply or this one.
+     */
+    synchronized int getDone() {
+        return done.size();
+    }
+
+    /**
+     * Read the policy of forcing records to disk from a setting.
+     * @param value of the setting, may be null.
+     * @return policy, {@link Sync#INTERVAL} if not given or not known.
+     */
+    static Sync parseSync(String value) {
+        if(value != null){
+            try{
+                return Sync.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e){
+                ErrorHandler.printError("Unknown journal sync: " + value);
+            }
+        }
+        return Sync.INTERVAL;
+    }
+
+    /**
+     * Force the records to disk and close the journal.
+     * @throws IOException if the records cannot be forced.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try{
+            if(sync != Sync.NEVER){
+                force();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Write a record and force it to disk as the policy asks.
+     * @param line of the record.
+     * @throws IOException if the record cannot be written.
+     */
+    private void record(String line) throws IOException {
+        write(line);
+        if(sync == Sync.ALWAYS || (sync == Sync.INTERVAL && System.nanoTime() - lastSync >= SYNC_INTERVAL_NANOS)){
+            force();
+        }
+    }
+
+    /**
+     * Write a line to the journal file, straight through to the operating system.
+     * @param line to write, without line separator.
+     * @throws IOException if the line cannot be written.
+     */
+    private void write(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Force the records written so far to disk.
+     * @throws IOException if the records cannot be forced.
+     */
+    private void force() throws IOException {
+        channel.force(false);
+        lastSync = System.nanoTime();
+    }
+
+    /**
+     * Compute the hash identifying the contents of a plan file.
+     * @param planFile to hash.
+     * @return hex encoded hash.
+     * @throws IOException if the plan file cannot be read.
+     */
+    private static String version(Path planFile) throws IOException {
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            try(InputStream in = Files.newInputStream(planFile)){
+                int read;
+                while((read = in.read(buffer)) != -1){
+                    digest.update(buffer, 0, read);
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest.digest()){
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+}
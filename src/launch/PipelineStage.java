@@ -0,0 +1,105 @@
+package launch;
+
+import errorHandle.ErrorHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Stage of the rename pipeline: a bounded queue of items worked off by
+ * a fixed number of worker threads.
+ * Stages are chained by having the work of one stage submit to the next.
+ * Submitting blocks while the queue is full, so a slow stage holds back
+ * the stages before it and the number of items in flight stays bounded.
+ * An item that fails is reported and the stage moves on to the next one.
+ * @param <T> type of the items of the stage.
+ */
+final class PipelineStage<T> {
+    /**Marks the end of the items, one per worker.*/
+    private static final Object STOP = new Object();
+
+    /**Name of the stage, used to name its threads.*/
+    private final String name;
+    /**Items waiting for a worker.*/
+    private final BlockingQueue<Object> queue;
+    /**Work done on each item.*/
+    private final Consumer<T> work;
+    /**Worker threads of the stage.*/
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * Create a stage and start its workers.
+     * @param name of the stage.
+     * @param workerCount number of worker threads, at least one.
+     * @param capacity number of items that can wait in the queue.
+     * @param work done on each item.
+     */
+    PipelineStage(String name, int workerCount, int capacity, Consumer<T> work) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.work = work;
+        for(int i = 0; i < Math.max(1, workerCount); i++){
+            Thread worker = new Thread(this::runWorker, name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queue an item for the workers, waiting while the queue is full.
+     * @param item to be worked on.
+     */
+    void submit(T item) {
+        try{
+            queue.put(item);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            ErrorHandler.printError(name + " stage interrupted, item dropped: " + item);
+        }
+    }
+
+    /**
+     * Signal that no more items will be submitted and wait for the workers
+     * to finish every queued item.
+     */
+    void finish() {
+        try{
+            for(int i = 0; i < workers.size(); i++){
+                queue.put(STOP);
+            }
+            for(Thread worker : workers){
+                worker.join();
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            ErrorHandler.printError(name + " stage interrupted before finishing.");
+        }
+    }
+
+    /**
+     * Work off items until the end of the items is reached.
+     */
+    @SuppressWarnings("unchecked")
+    private void runWorker() {
+        while(true){
+            Object item;
+            try{
+                item = queue.take();
+            } catch (InterruptedException e){
+                return;
+            }
+            if(item == STOP){
+                return;
+            }
+            try{
+                work.accept((T) item);
+            } catch (RuntimeException e){
+                ErrorHandler.printError(e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package launch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import constants.Constants;
+import copy.Copy;
+import errorHandle.ErrorHandler;
+import utilities.Utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Applies a plan written by {@link Planner} in bulk.
+ * The plan file is read twice. The first read applies the renames in order
+ * and gathers the directories, which are then created at once, parents
+ * first. The second read hands the copies to a pool of copy workers, each
+ * copy along with the delete that follows it.
+ * Reviews and collisions are not applied. A rename whose target has come
+ * to exist since the plan was written is skipped.
+ * Every rename, copy and delete is recorded in an {@link OperationJournal}
+ * next to the plan file, so applying the same plan again resumes where the
+ * last apply stopped: operations already done are skipped, and a copy that
+ * was cut short has its partial target removed before it is copied again.
+ * Given a time budget, no operation is started once it is spent, the
+ * operations left are applied by the next apply.
+ */
+final class PlanApplier {
+    /**Reads operations from JSON.*/
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Copies a file, see {@link Copy#executeCopy(String, String, boolean)}.
+     */
+    interface FileCopier {
+        /**
+         * Copy a file, reporting errors rather than throwing them.
+         * @param source of the file to copy.
+         * @param target to copy to.
+         * @param delete true to delete the source once copied with the same size.
+         */
+        void copy(String source, String target, boolean delete);
+    }
+
+    /**
+     * An operation along with its line in the plan file.
+     */
+    private static final class Step {
+        /**Line of the operation in the plan file, known to the journal by it.*/
+        private final long lineNumber;
+        /**Operation to apply.*/
+        private final PlanOperation operation;
+
+        private Step(long lineNumber, PlanOperation operation) {
+            this.lineNumber = lineNumber;
+            this.operation = operation;
+        }
+    }
+
+    /**Number of files copied at once.*/
+    private final int copyWorkers;
+    /**Number of copies that can wait for a copy worker.*/
+    private final int queueCapacity;
+    /**When the records of the journal are forced to disk.*/
+    private final OperationJournal.Sync sync;
+    /**Time the apply may take, in nanos, 0 if unlimited.*/
+    private final long budgetNanos;
+    /**Source of the time, in nanos.*/
+    private final LongSupplier clock;
+    /**Copies the files of the plan.*/
+    private final FileCopier copier;
+    /**Time the apply started, in nanos.*/
+    private long start;
+    /**True once an operation was left for the next apply, out of time.*/
+    private final AtomicBoolean outOfTime = new AtomicBoolean(false);
+    /**Journal of the plan being applied.*/
+    private OperationJournal journal;
+    /**Number of renames applied.*/
+    private long renames = 0;
+    /**Number of directories created.*/
+    private long directoriesCreated = 0;
+    /**Number of operations not applied.*/
+    private long skipped = 0;
+    /**Number of operations done by an earlier apply.*/
+    private final AtomicLong resumed = new AtomicLong();
+    /**Number of copies whose target exists once applied.*/
+    private final AtomicLong copies = new AtomicLong();
+
+    /**
+     * Create an applier of plans.
+     * @param copyWorkers number of files copied at once.
+     * @param queueCapacity number of copies that can wait for a copy worker.
+     * @param sync when the records of the journal are forced to disk.
+     * @param budgetMillis time an apply may take, 0 if unlimited.
+     */
+    PlanApplier(int copyWorkers, int queueCapacity, OperationJournal.Sync sync, long budgetMillis) {
+        this(copyWorkers, queueCapacity, sync, budgetMillis, System::nanoTime, Copy::executeCopy);
+    }
+
+    /**
+     * Create an applier of plans with the given clock and copier.
+     * @param copyWorkers number of files copied at once.
+     * @param queueCapacity number of copies that can wait for a copy worker.
+     * @param sync when the records of the journal are forced to disk.
+     * @param budgetMillis time an apply may take, 0 if unlimited.
+     * @param clock source of the time, in nanos.
+     * @param copier copies the files of the plan.
+     */
+    PlanApplier(int copyWorkers, int queueCapacity, OperationJournal.Sync sync, long budgetMillis,
+                LongSupplier clock, FileCopier copier) {
+        this.copyWorkers = copyWorkers;
+        this.queueCapacity = queueCapacity;
+        this.sync = sync;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.clock = clock;
+        this.copier = copier;
+    }
+
+    /**
+     * Apply every operation of a plan file not done by an earlier apply,
+     * until done or out of time.
+     * @param planFile to apply.
+     * @throws IOException if the plan file cannot be read or the journal written.
+     */
+    void apply(String planFile) throws IOException {
+        start = clock.getAsLong();
+        try(OperationJournal opened = OperationJournal.open(planFile + Constants.JOURNAL_FILE_EXTENSION,
+                planFile, sync)){
+            journal = opened;
+            apply(Paths.get(planFile));
+            Utilities.getPrintStream().println("Plan applied: " + renames + " renames, " + directoriesCreated +
+                    " directories, " + copies.get() + " copies, " + skipped + " skipped, " + resumed.get() +
+                    " done before.");
+            if(outOfTime.get()){
+                Utilities.getPrintStream().println("Time budget spent, apply again to resume.");
+            }
+        } finally {
+            journal = null;
+        }
+    }
+
+    /**
+     * Apply the operations of a plan file, see {@link #apply(String)}.
+     * @param planFile to apply.
+     * @throws IOException if the plan file cannot be read or the journal written.
+     */
+    private void apply(Path planFile) throws IOException {
+        Set<String> directories = new TreeSet<>();
+        try(BufferedReader reader = Files.newBufferedReader(planFile, StandardCharsets.UTF_8)){
+            long lineNumber = 0;
+            String line;
+            while((line = reader.readLine()) != null){
+                lineNumber++;
+                PlanOperation operation = MAPPER.readValue(line, PlanOperation.class);
+                switch(operation.getType()){
+                    case RENAME:
+                        if(journal.isDone(lineNumber)){
+                            resumed.incrementAndGet();
+                        } else if(isOutOfTime()){
+                            return;
+                        } else {
+                            rename(lineNumber, operation);
+                        }
+                        break;
+                    case MKDIR:
+                        directories.add(operation.getTarget());
+                        break;
+                    case REVIEW:
+                    case COLLISION:
+                        skipped++;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        /*Sorted, so every parent is created before its children.*/
+        for(String directory : directories){
+            if(!Utilities.fileExists(directory) && new File(directory).mkdirs()){
+                directoriesCreated++;
+            }
+        }
+        PipelineStage<Step[]> copyStage = new PipelineStage<>("apply", copyWorkers, queueCapacity, this::copy);
+        try(BufferedReader reader = Files.newBufferedReader(planFile, StandardCharsets.UTF_8)){
+            Step pending = null;
+            long lineNumber = 0;
+            String line;
+            while((line = reader.readLine()) != null){
+                lineNumber++;
+                PlanOperation operation = MAPPER.readValue(line, PlanOperation.class);
+                if(operation.getType() != PlanOperation.Type.COPY && operation.getType() != PlanOperation.Type.DELETE){
+                    continue;
+                }
+                if(journal.isDone(lineNumber)){
+                    resumed.incrementAndGet();
+                    continue;
+                }
+                Step step = new Step(lineNumber, operation);
+                if(operation.getType() == PlanOperation.Type.COPY){
+                    if(pending != null && !submit(copyStage, pending)){
+                        return;
+                    }
+                    pending = step;
+                } else {
+                    boolean submitted;
+                    if(pending != null && pending.operation.getSource().equals(operation.getSource()) &&
+                            pending.operation.getTarget().equals(operation.getTarget())){
+                        submitted = submit(copyStage, pending, step);
+                    } else {
+                        submitted = (pending == null || submit(copyStage, pending)) && submit(copyStage, step);
+                    }
+                    if(!submitted){
+                        return;
+                    }
+                    pending = null;
+                }
+            }
+            if(pending != null){
+                submit(copyStage, pending);
+            }
+        } finally {
+            copyStage.finish();
+        }
+    }
+
+    /**
+     * Hand steps to the copy workers, unless out of time.
+     * @param copyStage copy workers.
+     * @param steps copy and delete, or a single copy or delete.
+     * @return true if handed over, false if out of time.
+     */
+    private boolean submit(PipelineStage<Step[]> copyStage, Step... steps) {
+        if(isOutOfTime()){
+            return false;
+        }
+        copyStage.submit(steps);
+        return true;
+    }
+
+    /**
+     * Determine if the time budget is spent, in which case the operation
+     * at hand is left for the next apply.
+     * @return true if spent, false if there is time left or no budget.
+     */
+    private boolean isOutOfTime() {
+        if(budgetNanos > 0 && clock.getAsLong() - start >= budgetNanos){
+            outOfTime.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Apply a rename, unless its source is gone or its target is taken.
+     * A rename cut short after the file was renamed is done as it is.
+     * @param lineNumber of the rename in the plan file.
+     * @param operation rename to apply.
+     * @throws IOException if the journal cannot be written.
+     */
+    private void rename(long lineNumber, PlanOperation operation) throws IOException {
+        String source = operation.getSource();
+        String target = operation.getTarget();
+        if(journal.wasInterrupted(lineNumber) && !Utilities.fileExists(source) && Utilities.fileExists(target)){
+            journal.done(lineNumber);
+            resumed.incrementAndGet();
+            return;
+        }
+        if(!Utilities.fileExists(source) ||
+                (Utilities.fileExists(target) && !target.equalsIgnoreCase(source))){
+            ErrorHandler.printError("Rename skipped: " + source + " >> " + target);
+            skipped++;
+            return;
+        }
+        journal.begin(lineNumber);
+        if(Utilities.rename(new File(source), target)){
+            journal.done(lineNumber);
+            renames++;
+        } else {
+            ErrorHandler.printError("Rename failed: " + source + " >> " + target);
+            skipped++;
+        }
+    }
+
+    /**
+     * Apply a copy and the delete that follows it, or a lone delete.
+     * A delete only removes its source if the copy target exists with the
+     * same size. A copy cut short by an earlier apply has its partial
+     * target removed first, the plan only copies to targets that did not
+     * exist when it was written. A copy is only done once its target has
+     * the size its source had, a copy that failed part way has its target
+     * removed and is left for the next apply. Nothing is started once out
+     * of time.
+     * @param steps copy and delete, or a single copy or delete.
+     */
+    private void copy(Step[] steps) {
+        /*Copies waiting for a worker are left as well once out of time.*/
+        if(isOutOfTime()){
+            return;
+        }
+        PlanOperation first = steps[0].operation;
+        try{
+            for(Step step : steps){
+                journal.begin(step.lineNumber);
+            }
+            File source = new File(first.getSource());
+            File target = new File(first.getTarget());
+            if(first.getType() == PlanOperation.Type.COPY){
+                if(!source.exists()){
+                    /*Copied and deleted by an earlier apply that was cut
+                    * short before its records were forced to disk.*/
+                    if(target.exists()){
+                        for(Step step : steps){
+                            journal.done(step.lineNumber);
+                        }
+                        resumed.addAndGet(steps.length);
+                    }
+                    return;
+                }
+                if(journal.wasInterrupted(steps[0].lineNumber) && target.exists()){
+                    ErrorHandler.printError("Partial copy removed: " + first.getTarget());
+                    Utilities.deleteFile(first.getTarget());
+                }
+                long sourceLength = source.length();
+                copier.copy(first.getSource(), first.getTarget(), steps.length > 1);
+                if(!target.exists() || target.length() != sourceLength){
+                    ErrorHandler.printError("Copy failed: " + first.getSource() + " >> " + first.getTarget());
+                    if(target.exists()){
+                        Utilities.deleteFile(first.getTarget());
+                    }
+                    return;
+                }
+                copies.incrementAndGet();
+                for(Step step : steps){
+                    journal.done(step.lineNumber);
+                }
+                return;
+            }
+            if(source.exists() && target.exists() && source.length() == target.length()){
+                Utilities.deleteFile(first.getSource());
+                journal.done(steps[0].lineNumber);
+            }
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package launch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A single operation of a rename and copy plan, written as one line of
+ * JSON. Which paths are given depends on the type of the operation.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+final class PlanOperation {
+
+    /**
+     * Types of the operations of a plan.
+     */
+    enum Type {
+        /**Rename source to target.*/
+        RENAME,
+        /**Create the target directory, along with its parents.*/
+        MKDIR,
+        /**Copy source to target.*/
+        COPY,
+        /**Delete source once it is copied to target with the same size.*/
+        DELETE,
+        /**Rename of source to target held for review, not applied.*/
+        REVIEW,
+        /**Rename or copy of source to target left out, as another file
+         * of the batch or an existing file already takes target.*/
+        COLLISION
+    }
+
+    /**Type of the operation.*/
+    @JsonProperty("op")
+    private Type type;
+    /**Path the operation reads, null if none.*/
+    @JsonProperty
+    private String source;
+    /**Path the operation writes, null if none.*/
+    @JsonProperty
+    private String target;
+    /**Confidence of a rename, null if none.*/
+    @JsonProperty
+    private String confidence;
+    /**Reason of a collision, null if none.*/
+    @JsonProperty
+    private String reason;
+
+    /**
+     * Create an empty operation, filled in when a plan is read.
+     */
+    private PlanOperation() {
+    }
+
+    /**
+     * Create a new operation.
+     * @param type of the operation.
+     * @param source path the operation reads, null if none.
+     * @param target path the operation writes, null if none.
+     */
+    PlanOperation(Type type, String source, String target) {
+        this.type = type;
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * Retrieve the type of the operation.
+     * @return type.
+     */
+    Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieve the path the operation reads.
+     * @return source, null if none.
+     */
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * Retrieve the path the operation writes.
+     * @return target, null if none.
+     */
+    String getTarget() {
+        return target;
+    }
+
+    /**
+     * Retrieve the confidence of a rename.
+     * @return confidence, null if none.
+     */
+    String getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Assign the confidence of a rename.
+     * @param confidence of the rename.
+     * @return this operation.
+     */
+    PlanOperation withConfidence(String confidence) {
+        this.confidence = confidence;
+        return this;
+    }
+
+    /**
+     * Retrieve the reason of a collision.
+     * @return reason, null if none.
+     */
+    String getReason() {
+        return reason;
+    }
+
+    /**
+     * Assign the reason of a collision.
+     * @param reason of the collision.
+     * @return this operation.
+     */
+    PlanOperation withReason(String reason) {
+        this.reason = reason;
+        return this;
+    }
+}
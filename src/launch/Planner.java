@@ -0,0 +1,199 @@
+package launch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import copy.Copy;
+import rename.MediaFile;
+import rename.ParseConfidence;
+import utilities.MetadataProbe;
+import utilities.Utilities;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans the renames, directories, copies and deletes of renamed media
+ * files without touching the file system, see {@link PlanApplier}.
+ * Operations are written to the plan file as they are planned, one line
+ * of JSON each, so a plan of any size can be reviewed before it is applied.
+ * Targets are compared ignoring case, as on Windows file systems. A rename
+ * or copy whose target is taken by an earlier file of the batch, or by an
+ * existing file, is written as a collision instead.
+ */
+final class Planner implements Closeable {
+    /**Writes operations as JSON.*/
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**Plan file being written.*/
+    private final BufferedWriter writer;
+    /**Copy module to plan copies with, null if files are not copied.*/
+    private final Copy copyModule;
+    /**True if media is divided by media type.*/
+    private final boolean division;
+    /**Media names to media types.*/
+    private final Map<String, String> mediaDivisionCases;
+    /**True if low confidence renames are held for review.*/
+    private final boolean reviewQueue;
+    /**Planned rename targets to their sources.*/
+    private final Map<String, String> renameTargets = new HashMap<>();
+    /**Planned copy targets to their sources.*/
+    private final Map<String, String> copyTargets = new HashMap<>();
+    /**Directories already planned or known to exist.*/
+    private final Set<String> directories = new HashSet<>();
+    /**Number of operations written.*/
+    private long operations = 0;
+    /**Number of collisions written.*/
+    private long collisions = 0;
+
+    /**
+     * Create a planner writing to a new plan file.
+     * @param planFile to write, replaced if it exists.
+     * @param copyModule to plan copies with, null if files are not copied.
+     * @param division true if media is divided by media type.
+     * @param mediaDivisionCases media names to media types, null if media is not divided.
+     * @param reviewQueue true if low confidence renames are held for review.
+     * @throws IOException if the plan file cannot be created.
+     */
+    Planner(String planFile, Copy copyModule, boolean division, Map<String, String> mediaDivisionCases,
+            boolean reviewQueue) throws IOException {
+        this.writer = Files.newBufferedWriter(Paths.get(planFile), StandardCharsets.UTF_8);
+        this.copyModule = copyModule;
+        this.division = division;
+        this.mediaDivisionCases = mediaDivisionCases;
+        this.reviewQueue = reviewQueue;
+    }
+
+    /**
+     * Plan the operations of renamed media files.
+     * @param mediaFiles renamed media files.
+     * @throws IOException if the plan file cannot be written.
+     */
+    void plan(Iterable<MediaFile> mediaFiles) throws IOException {
+        for(MediaFile mediaFile : mediaFiles){
+            if(mediaFile.toString() == null){
+                continue;
+            }
+            String source = mediaFile.getOriginalFileName();
+            String target = mediaFile.toString();
+            String confidence = mediaFile.getConfidence().name();
+            if(reviewQueue && mediaFile.getConfidence() == ParseConfidence.LOW){
+                write(new PlanOperation(PlanOperation.Type.REVIEW, source, target).withConfidence(confidence));
+                continue;
+            }
+            String renamed = source;
+            if(!target.equals(source)){
+                String collision = claim(renameTargets, source, target, Utilities.fileExists(target));
+                if(collision != null){
+                    write(new PlanOperation(PlanOperation.Type.COLLISION, source, target).withReason(collision));
+                    continue;
+                }
+                write(new PlanOperation(PlanOperation.Type.RENAME, source, target).withConfidence(confidence));
+                renamed = target;
+            }
+            if(copyModule != null){
+                planCopy(mediaFile, renamed);
+            }
+        }
+    }
+
+    /**
+     * Retrieve the number of operations written.
+     * @return number of operations.
+     */
+    long getOperations() {
+        return operations;
+    }
+
+    /**
+     * Retrieve the number of collisions written.
+     * @return number of collisions.
+     */
+    long getCollisions() {
+        return collisions;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Plan the copy of a renamed media file, along with the directory it
+     * is copied to and the delete of the renamed file.
+     * @param mediaFile renamed media file.
+     * @param source path of the renamed file.
+     * @throws IOException if the plan file cannot be written.
+     */
+    private void planCopy(MediaFile mediaFile, String source) throws IOException {
+        if(division){
+            String mediaType = mediaDivisionCases.get(Utilities.parseFilenameFromPath(mediaFile.getMediaName()));
+            if(mediaType != null){
+                mediaFile.setMediaType(mediaType);
+            }
+        }
+        copyModule.copy(mediaFile, false);
+        String target = mediaFile.getCopyLocation();
+        if(target == null){
+            return;
+        }
+        String directory = Utilities.removeFilenameFromPath(target);
+        MetadataProbe.Lookup lookup = MetadataProbe.exists(target, directory);
+        String collision = claim(copyTargets, source, target, lookup.exists(0));
+        if(collision != null){
+            write(new PlanOperation(PlanOperation.Type.COLLISION, source, target).withReason(collision));
+            return;
+        }
+        if(!directory.isEmpty() && directories.add(key(directory)) && !lookup.exists(1)){
+            write(new PlanOperation(PlanOperation.Type.MKDIR, null, directory));
+        }
+        write(new PlanOperation(PlanOperation.Type.COPY, source, target));
+        write(new PlanOperation(PlanOperation.Type.DELETE, source, target));
+    }
+
+    /**
+     * Claim a target for a source, unless it is taken.
+     * @param targets planned targets to their sources.
+     * @param source of the operation.
+     * @param target of the operation.
+     * @param exists true if the target exists on the file system.
+     * @return reason the target is taken, null if claimed.
+     */
+    private static String claim(Map<String, String> targets, String source, String target, boolean exists) {
+        if(exists && !target.equalsIgnoreCase(source)){
+            return "Target exists";
+        }
+        String previous = targets.putIfAbsent(key(target), source);
+        return previous == null ? null : "Target of " + previous;
+    }
+
+    /**
+     * Build the key a path is compared by.
+     * @param path to build key of.
+     * @return path ignoring case.
+     */
+    private static String key(String path) {
+        return path.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Write an operation to the plan file.
+     * @param operation to write.
+     * @throws IOException if the plan file cannot be written.
+     */
+    private void write(PlanOperation operation) throws IOException {
+        writer.write(MAPPER.writeValueAsString(operation));
+        writer.newLine();
+        operations++;
+        if(operation.getType() == PlanOperation.Type.COLLISION){
+            collisions++;
+        }
+    }
+}
@@ -4,79 +4,162 @@ import backup.Backup;
 import constants.Constants;
 import copy.Copy;
 import errorHandle.ErrorHandler;
+import rename.FilenameRules;
 import rename.MediaFile;
+import rename.ParseConfidence;
 import rename.Rename;
+import rename.StageTimers;
+import scan.DirectoryScanner;
+import scan.DirectoryWatcher;
+import scan.ScanManifest;
+import utilities.MetadataProbe;
 import utilities.Utilities;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Top level class that kicks off the media rename application.
  */
 public class Runner {
-    /**Static list of files to rename.*/
-    private static ArrayList<File> files = new ArrayList<>();
+    /**Number of directories parsed at once unless the user specified otherwise.*/
+    private static final int DEFAULT_PARSE_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /**Number of files copied at once unless the user specified otherwise.*/
+    private static final int DEFAULT_COPY_WORKERS = 1;
+    /**Seconds a watched file has to go unchanged unless the user specified otherwise.*/
+    private static final int DEFAULT_WATCH_SETTLE_SECONDS = 10;
+    /**Port the server listens on unless the user specified otherwise.*/
+    private static final int DEFAULT_SERVER_PORT = 47813;
+    /**Number of connections that can wait for the server.*/
+    private static final int SERVER_BACKLOG = 50;
+    /**Time the server waits for the job of a connection.*/
+    private static final int SERVER_READ_TIMEOUT_MILLIS = 10000;
+    /**Number of items that can wait between two stages of the pipeline.*/
+    private static final int PIPELINE_QUEUE_CAPACITY = 16;
+    /**Registers the stage timers of each session, one at a time in the order the sessions started.*/
+    private static final ExecutorService TIMER_REGISTRATION = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stage-timers");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**Stage timers of the session started last.*/
+    private static volatile StageTimers latestTimers = null;
+
+    /**
+     * A renamed file waiting to be copied.
+     */
+    private static final class CopyJob {
+        /**Media file with its copy location generated.*/
+        private final MediaFile mediaFile;
+        /**Path of the renamed file.*/
+        private final String source;
+        /**What was done with the file, recorded if it is not copied.*/
+        private final ScanManifest.Outcome outcome;
+
+        private CopyJob(MediaFile mediaFile, String source, ScanManifest.Outcome outcome) {
+            this.mediaFile = mediaFile;
+            this.source = source;
+            this.outcome = outcome;
+        }
+    }
 
     public static void main(String[] args) {
 
         /*Command line argument #1 is an offset directory to look for settings files.*/
-        String offset = "";
-        if(args.length != 0){
-            offset = args[0]+"\\";
-        }
+        String offset = args.length != 0 ? args[0]+"\\" : "";
+        /*Command line argument #2 is the mode, plan, apply, watch, serve or send,
+        * and #3 the plan file or the path to send.*/
+        String mode = args.length > 1 ? args[1] : null;
+        String planFile = args.length > 2 ? args[2] : offset+Constants.PLAN_FILE;
 
-        /*Setup working directory.*/
-        if(!Utilities.fileExists(offset+Constants.SETTINGS_FILE)) {
-            Setup.setupSettingsFile(offset+Constants.SETTINGS_FILE);
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, "#" + Constants.DEFAULT_RENAME_DIRECTORY + ":");
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, "#" + Constants.DEFAULT_COPY_DIRECTORY + ":");
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, "#" + Constants.DEFAULT_MAX_EPISODE_COUNT + ":");
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, Constants.USER_INTERACTION+": "+Constants.TRUE);
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, Constants.COPY_FILES_FLAG+": "+Constants.FALSE);
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, Constants.MEDIA_DIVISION+": "+Constants.FALSE);
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, Constants.ERROR_HANDLER+": "+Constants.TRUE);
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE,
-                    Constants.COPY_FILE_STRUCTURE+": "+Constants.DEFAULT_COPY_FILE_STRUCTURE);
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, "#" + Constants.EXCLUDE_FILE_TYPES + ":");
-            ErrorHandler.printOutToFile(offset+Constants.SETTINGS_FILE, "#" + Constants.BACKUP + ":");
+        /*The client only hands a path to a running server, nothing is loaded.
+        * Command line argument #4 is the port of the server.*/
+        if(Constants.SEND.equals(mode)){
+            int port = args.length > 3 ? parseWorkerCount(args[3], DEFAULT_SERVER_PORT) : DEFAULT_SERVER_PORT;
+            if(args.length < 3 || !send(offset+Constants.SERVER_TOKEN_FILE, args[2], port)){
+                System.exit(1);
+            }
+            return;
         }
 
-        if(!Utilities.fileExists(offset+Constants.SPECIAL_RENAME_CASES_FILE)) {
-            Setup.setupSettingsFile(offset+Constants.SPECIAL_RENAME_CASES_FILE);
-            ErrorHandler.printOutToFile(offset+Constants.SPECIAL_RENAME_CASES_FILE, "###OriginalName: NewName");
-        }
+        /*Setup working directory, each missing file is written at once.*/
+        Setup.setupSettingsFile(offset+Constants.SETTINGS_FILE,
+                "#" + Constants.DEFAULT_RENAME_DIRECTORY + ":",
+                "#" + Constants.DEFAULT_COPY_DIRECTORY + ":",
+                "#" + Constants.DEFAULT_MAX_EPISODE_COUNT + ":",
+                Constants.USER_INTERACTION+": "+Constants.TRUE,
+                Constants.COPY_FILES_FLAG+": "+Constants.FALSE,
+                Constants.MEDIA_DIVISION+": "+Constants.FALSE,
+                Constants.ERROR_HANDLER+": "+Constants.TRUE,
+                Constants.COPY_FILE_STRUCTURE+": "+Constants.DEFAULT_COPY_FILE_STRUCTURE,
+                "#" + Constants.EXCLUDE_FILE_TYPES + ":",
+                "#" + Constants.BACKUP + ":",
+                Constants.PARSE_CACHE+": "+Constants.TRUE,
+                Constants.SCAN_MANIFEST+": "+Constants.FALSE,
+                Constants.REVIEW_QUEUE+": "+Constants.FALSE,
+                Constants.STAGE_TIMERS+": "+Constants.TRUE,
+                "#" + Constants.PARSE_WORKERS + ":",
+                "#" + Constants.COPY_WORKERS + ":",
+                "#" + Constants.METADATA_CONCURRENCY + ":",
+                "#" + Constants.WATCH_SETTLE_SECONDS + ":",
+                "#" + Constants.SERVER_PORT + ":",
+                "#" + Constants.JOURNAL_SYNC + ":",
+                "#" + Constants.TIME_BUDGET_SECONDS + ":");
 
-        if(!Utilities.fileExists(offset+Constants.SPECIAL_EP_CASES_FILE)) {
-            Setup.setupSettingsFile(offset+Constants.SPECIAL_EP_CASES_FILE);
-            ErrorHandler.printOutToFile(offset+Constants.SPECIAL_EP_CASES_FILE, "### S##E## where S## is last season, E## is last ep of S##");
-            ErrorHandler.printOutToFile(offset+Constants.SPECIAL_EP_CASES_FILE, "###OriginalName: S##E##");
-        }
+        Setup.setupSettingsFile(offset+Constants.SPECIAL_RENAME_CASES_FILE,
+                "###OriginalName: NewName");
 
-        if(!Utilities.fileExists(offset+Constants.MEDIA_DIVISION_FILE)){
-            Setup.setupSettingsFile(offset+Constants.MEDIA_DIVISION_FILE);
-            ErrorHandler.printOutToFile(offset+Constants.MEDIA_DIVISION_FILE, "### Media Division format = {Title}: {Type}");
-        }
+        Setup.setupSettingsFile(offset+Constants.SPECIAL_EP_CASES_FILE,
+                "### S##E## where S## is last season, E## is last ep of S##",
+                "###OriginalName: S##E##",
+                "### Absolute numbering, last ep of each season: S##E##, S##E##");
+
+        Setup.setupSettingsFile(offset+Constants.FILENAME_RULES_FILE,
+                "### Name: Pattern, tried in order against the filename without path and file ext",
+                "### Named groups: (?<title>...) with (?<episode>...) and optional (?<season>...), or (?<year>...)",
+                "### Back references by name only: \\k<name>",
+                "### "+FilenameRules.DROP+": Pattern, removes every match before any rule is tried",
+                "### "+FilenameRules.BUILTIN+" is the built-in parser, rules after it are tried if it finds nothing or only a guess",
+                "###Dotted: (?<title>.+?)\\.S(?<season>\\d{2})E(?<episode>\\d{2,3})\\..*",
+                FilenameRules.DEFAULT_BUILTIN_RULE);
+
+        Setup.setupSettingsFile(offset+Constants.MEDIA_DIVISION_FILE,
+                "### Media Division format = {Title}: {Type}");
 
         /*Read in settings values.*/
-        HashMap<String, String> settings = Utilities.loadSettingsFile(offset+Constants.SETTINGS_FILE);
-        HashMap<String, String> specialRenameCases = Utilities.loadSettingsFile(offset+Constants.SPECIAL_RENAME_CASES_FILE);
-        HashMap<String, String> specialEpisodeCases = Utilities.loadSettingsFile(offset+Constants.SPECIAL_EP_CASES_FILE);
-        HashMap<String, String> mediaDivisionCases = Utilities.loadSettingsFile(offset+Constants.MEDIA_DIVISION_FILE);
+        Session session = Session.load(offset);
+        HashMap<String, String> settings = session.getSettings();
         String directory = settings.get(Constants.DEFAULT_RENAME_DIRECTORY);
         if(directory == null){
             Utilities.getPrintStream().println(Constants.DIRECTORY_NULL);
             return;
         }
         /*Set if the user has chosen to user error handler.*/
-        String errorHandle = settings.get(Constants.ERROR_HANDLER);
-        if(Constants.TRUE.equals(errorHandle)){
-            ErrorHandler.errorHandle = true;
-        } else if(Constants.FALSE.equals(errorHandle)){
-            ErrorHandler.errorHandle = false;
-        }
+        setErrorHandle(settings);
         String userInteraction = settings.get(Constants.USER_INTERACTION);
         /*
         *
@@ -125,101 +208,696 @@ public class Runner {
             return;
         }
 
-        /*Instantiate rename module and execute rename.*/
-        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
-        listFiles(new File(directory).listFiles());
-        if(files.size() == 0){
+        /*Apply a reviewed plan as it was written, nothing is parsed again.
+        * An apply that was stopped is resumed where it stopped.*/
+        if(Constants.APPLY.equals(mode)){
+            try{
+                new PlanApplier(parseWorkerCount(settings.get(Constants.COPY_WORKERS), DEFAULT_COPY_WORKERS),
+                        PIPELINE_QUEUE_CAPACITY, OperationJournal.parseSync(settings.get(Constants.JOURNAL_SYNC)),
+                        TimeUnit.SECONDS.toMillis(parseWorkerCount(settings.get(Constants.TIME_BUDGET_SECONDS), 0)))
+                        .apply(planFile);
+            } catch (IOException e){
+                ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            }
+            return;
+        }
+
+        /*Keep watching the rename directory, the files of each download
+        * are renamed once they are complete.*/
+        if(Constants.WATCH.equals(mode)){
+            watch(session, directory);
+            return;
+        }
+        /*Keep the session loaded and take jobs from the send command.*/
+        if(Constants.SERVE.equals(mode)){
+            serve(session, parseWorkerCount(settings.get(Constants.SERVER_PORT), DEFAULT_SERVER_PORT));
+            return;
+        }
+
+        startSession(session);
+        List<Path> roots = toPaths(directory);
+        boolean filesFound;
+        if(Constants.PLAN.equals(mode)){
+            /*Plan every rename and copy without touching the files, to be
+            * reviewed and applied later.*/
+            filesFound = writePlan(roots, planFile, session);
+        } else {
+            filesFound = renameRoots(session, roots);
+        }
+        if(!filesFound){
             Utilities.getPrintStream().println(Constants.NO_FILES_TO_RENAME);
             return;
         }
-        for(File file : files){
-            MediaFile mediaFile = new MediaFile(file.toString());
-            renameModule.rename(mediaFile);
-            if(mediaFile.toString() == null){
-                continue;
+        finishBatch(session);
+    }
+
+    /**
+     * Watch the rename directory and run the files through the rename
+     * pipeline as they settle, see {@link DirectoryWatcher}. Files already
+     * in the directory are renamed first. When the settings or rule files
+     * change, they are loaded again before the next files, and the rename
+     * directories are watched anew if they changed. Runs until interrupted.
+     * @param session settings and rule files to start with.
+     * @param directory rename directories to watch, as specified.
+     */
+    private static void watch(Session session, String directory){
+        while(directory != null){
+            long settleMillis = TimeUnit.SECONDS.toMillis(
+                    parseWorkerCount(session.getSettings().get(Constants.WATCH_SETTLE_SECONDS), DEFAULT_WATCH_SETTLE_SECONDS));
+            startSession(session);
+            Utilities.getPrintStream().println("Watching: " + directory);
+            String watchedDirectory = directory;
+            try(DirectoryWatcher watcher = new DirectoryWatcher(toPaths(directory), session.getFiles(), settleMillis)){
+                while(watchedDirectory.equals(directory)){
+                    DirectoryWatcher.Changes changes = watcher.take();
+                    if(!changes.getWatchedFiles().isEmpty()){
+                        session.save();
+                        session = Session.load(session.getOffset());
+                        setErrorHandle(session.getSettings());
+                        startSession(session);
+                        directory = session.getSettings().get(Constants.DEFAULT_RENAME_DIRECTORY);
+                        Utilities.getPrintStream().println("Settings reloaded.");
+                    }
+                    List<Path> files = skipHandled(session.getScanManifest(), changes.getFiles());
+                    if(files.isEmpty()){
+                        continue;
+                    }
+                    Session batchSession = session;
+                    runPipeline(batchSession, action -> {
+                        List<File> batch = new ArrayList<>();
+                        for(Path path : files){
+                            File file = path.toFile();
+                            if(!batch.isEmpty() && !file.getParentFile().equals(batch.get(0).getParentFile())){
+                                action.accept(batch);
+                                batch = new ArrayList<>();
+                            }
+                            batch.add(file);
+                        }
+                        action.accept(batch);
+                        return true;
+                    }, renamedPath -> watcher.ignore(Paths.get(renamedPath)));
+                    finishBatch(batchSession);
+                }
+            } catch (IOException e){
+                ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+                return;
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                session.save();
+                return;
             }
-            /*If the settings file has determined that the user wants user interaction.*/
-            if(Constants.TRUE.equals(userInteraction)){
-                userDecisionOnRename(mediaFile, file);
-                continue;   //continue to next item
+        }
+        Utilities.getPrintStream().println(Constants.DIRECTORY_NULL);
+    }
+
+    /**
+     * Take rename jobs from the send command, see {@link #send(String, String, int)},
+     * and run them one at a time through the rename pipeline. The session
+     * stays loaded between jobs, it is only loaded again once the settings
+     * or rule files change, so a job costs no more than renaming its files.
+     * A job is a line with the token of the server, see {@link ServerToken},
+     * then a line naming a file or a directory under a rename directory,
+     * answered with a line starting with OK or ERROR.
+     * Only connections from this machine are accepted. Runs until stopped.
+     * @param session settings and rule files to start with.
+     * @param port to listen on.
+     */
+    private static void serve(Session session, int port){
+        startSession(session);
+        String token;
+        try{
+            token = ServerToken.create(session.getOffset()+Constants.SERVER_TOKEN_FILE);
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            Utilities.getPrintStream().println("Cannot write server token: " +
+                    session.getOffset()+Constants.SERVER_TOKEN_FILE);
+            return;
+        }
+        try(ServerSocket server = new ServerSocket(port, SERVER_BACKLOG, InetAddress.getLoopbackAddress())){
+            Utilities.getPrintStream().println("Serving on port: " + server.getLocalPort());
+            while(true){
+                try(Socket socket = server.accept();
+                    BufferedReader reader = new BufferedReader(
+                            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                    Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)){
+                    socket.setSoTimeout(SERVER_READ_TIMEOUT_MILLIS);
+                    /*Any process of this machine can connect, only the user
+                    * the server runs as can read the token.*/
+                    if(!ServerToken.matches(token, reader.readLine())){
+                        writer.write("ERROR Not authorized.\n");
+                        writer.flush();
+                        continue;
+                    }
+                    String request = reader.readLine();
+                    if(session.isStale()){
+                        session.save();
+                        session = Session.load(session.getOffset());
+                        setErrorHandle(session.getSettings());
+                        startSession(session);
+                        Utilities.getPrintStream().println("Settings reloaded.");
+                    }
+                    writer.write(runJob(session, request) + "\n");
+                    writer.flush();
+                } catch (IOException e){
+                    ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+                }
             }
-            Utilities.rename(file, mediaFile.toString());
-            Utilities.getPrintStream().println(Constants.MEDIA_RENAME_COMPLETE);
-            logRename(mediaFile);
-        }
-
-        String copyFlag = settings.get(Constants.COPY_FILES_FLAG);
-        if(Constants.TRUE.equals(copyFlag)) {
-            //Begin move
-            /*Instantiate copy module and execute copy*/
-            Copy copyModule = new Copy(settings, specialRenameCases);
-            /*Remove all files in the list*/
-            files.clear();
-            listFiles(new File(directory).listFiles());
-            String mediaDivision = settings.get(Constants.MEDIA_DIVISION);
-            boolean division = false;
-            if(Constants.TRUE.equals(mediaDivision)){
-                division = true;
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            Utilities.getPrintStream().println("Cannot serve on port: " + port);
+        }
+    }
+
+    /**
+     * Run the files of a job through the rename pipeline.
+     * @param session to rename and copy with.
+     * @param request file or directory to rename, as sent.
+     * @return answer to the job.
+     */
+    private static String runJob(Session session, String request){
+        String directory = session.getSettings().get(Constants.DEFAULT_RENAME_DIRECTORY);
+        if(directory == null){
+            return "ERROR " + Constants.DIRECTORY_NULL;
+        }
+        if(request == null || request.trim().isEmpty()){
+            return "ERROR No path given.";
+        }
+        Path requested;
+        try{
+            requested = Paths.get(request.trim()).toAbsolutePath().normalize();
+        } catch (InvalidPathException e){
+            return "ERROR " + e.getMessage();
+        }
+        if(!Files.exists(requested)){
+            return "ERROR Not found: " + requested;
+        }
+        /*Only files the user asked to be renamed are touched. Links are
+        * resolved first, so a link under a rename directory cannot lead
+        * out of it.*/
+        Path path;
+        try{
+            path = requested.toRealPath();
+        } catch (IOException e){
+            return "ERROR " + e.getMessage();
+        }
+        boolean underRoot = false;
+        for(Path root : toPaths(directory)){
+            try{
+                underRoot |= path.startsWith(root.toRealPath());
+            } catch (IOException e){
+                //a rename directory that cannot be found holds nothing
+            }
+        }
+        if(!underRoot){
+            return "ERROR Not under " + Constants.DEFAULT_RENAME_DIRECTORY + ": " + requested;
+        }
+        int[] fileCount = {0};
+        runPipeline(session, action -> {
+            if(!Files.isDirectory(path)){
+                fileCount[0]++;
+                action.accept(Collections.singletonList(path.toFile()));
+                return true;
+            }
+            return forEachDirectory(path.toString(), null, files -> {
+                fileCount[0] += files.size();
+                action.accept(files);
+            });
+        }, null);
+        if(fileCount[0] == 0){
+            return "OK " + Constants.NO_FILES_TO_RENAME;
+        }
+        finishBatch(session);
+        return "OK " + fileCount[0] + " files";
+    }
+
+    /**
+     * Hand a file or directory to a running server, see {@link #serve(Session, int)},
+     * and print its answer.
+     * @param tokenFile written by the server.
+     * @param path of the file or directory to rename.
+     * @param port the server listens on.
+     * @return true if the server ran the job, false otherwise.
+     */
+    private static boolean send(String tokenFile, String path, int port){
+        String token;
+        try{
+            token = ServerToken.read(tokenFile);
+        } catch (IOException e){
+            Utilities.getPrintStream().println("No server token: " + tokenFile);
+            return false;
+        }
+        try(Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)){
+            writer.write(token + "\n" + new File(path).getAbsolutePath() + "\n");
+            writer.flush();
+            String answer = reader.readLine();
+            Utilities.getPrintStream().println(answer);
+            return answer != null && answer.startsWith("OK");
+        } catch (IOException e){
+            Utilities.getPrintStream().println("No server on port: " + port);
+            return false;
+        }
+    }
+
+    /**
+     * Apply the settings of a session that reach past its modules.
+     * @param session to start.
+     */
+    private static void startSession(Session session){
+        /*Stage timers can be watched with JConsole while the batch runs.
+        * Starting the MBean server takes longer than renaming a few files,
+        * so it is left to a background thread. A session replaced before
+        * its turn is not registered, the newer session registers its own.*/
+        StageTimers timers = session.getRenameModule().getStageTimers();
+        latestTimers = timers;
+        TIMER_REGISTRATION.execute(() -> {
+            if(latestTimers == timers){
+                timers.register();
             }
-            for (File file : files) {
-                MediaFile mediaFile = new MediaFile(file.toString());
-                mediaFile.renamed();
-                renameModule.rename(mediaFile);
+        });
+        /*File system lookups of copy planning are sent out together, up to
+        * the given number at once.*/
+        MetadataProbe.setConcurrency(parseWorkerCount(session.getSettings().get(Constants.METADATA_CONCURRENCY), 1));
+    }
+
+    /**
+     * Log the statistics of the rename module and persist the rename
+     * results for the next run.
+     * @param session the batch ran with.
+     */
+    private static void finishBatch(Session session){
+        Rename renameModule = session.getRenameModule();
+        ErrorHandler.printOutToFile(Constants.LOG_FILE, "Debug: Rename fallbacks: "+renameModule.getFallbackCounters());
+        if(renameModule.getStageTimers().isEnabled()){
+            ErrorHandler.printOutToFile(Constants.LOG_FILE, "Debug: Rename stages: "+renameModule.getStageTimers());
+        }
+
+        /*Persist the rename results for the next run.*/
+        session.save();
+    }
+
+    /**
+     * Set if the user has chosen to use the error handler.
+     * @param settings user specified settings.
+     */
+    private static void setErrorHandle(HashMap<String, String> settings){
+        String errorHandle = settings.get(Constants.ERROR_HANDLER);
+        if(Constants.TRUE.equals(errorHandle)){
+            ErrorHandler.errorHandle = true;
+        } else if(Constants.FALSE.equals(errorHandle)){
+            ErrorHandler.errorHandle = false;
+        }
+    }
+
+    /**
+     * Run files through the rename pipeline a directory at a time, the
+     * files of a series share a directory. A pool parses directories, a
+     * single thread renames, divides and plans the copy of each file in
+     * order, as it may prompt the user, and copy workers move the files.
+     * Bounded queues between the stages hold back the source when a later
+     * stage falls behind. Files left in place are recorded in the scan
+     * manifest of the session, if any.
+     * @param session to rename and copy with.
+     * @param source hands the files to the given action a directory at a
+     *               time, returns true if any file was found.
+     * @param renamed told the path of every file renamed, may be null.
+     * @return true if any file was found, false otherwise.
+     */
+    private static boolean runPipeline(Session session, Function<Consumer<List<File>>, Boolean> source,
+                                       Consumer<String> renamed){
+        HashMap<String, String> settings = session.getSettings();
+        String offset = session.getOffset();
+        boolean prompt = promptsUser(settings);
+        Rename renameModule = session.getRenameModule();
+        Copy copyModule = session.getCopyModule();
+        ScanManifest manifest = session.getScanManifest();
+        boolean reviewQueue = Constants.TRUE.equals(settings.get(Constants.REVIEW_QUEUE));
+        boolean division = Constants.TRUE.equals(settings.get(Constants.MEDIA_DIVISION));
+        HashMap<String, String> mediaDivisionCases = division ? session.getMediaDivisionCases() : null;
+        int metadataConcurrency = parseWorkerCount(settings.get(Constants.METADATA_CONCURRENCY), 1);
+        PipelineStage<CopyJob> copyStage = copyModule == null ? null :
+                new PipelineStage<>("copy", parseWorkerCount(settings.get(Constants.COPY_WORKERS), DEFAULT_COPY_WORKERS),
+                        PIPELINE_QUEUE_CAPACITY, Runner::executeCopy);
+        /*Without prompts, files are also planned that many at a time, off
+        * the rename thread.*/
+        PipelineStage<CopyJob> planStage = copyModule == null || prompt ? null :
+                new PipelineStage<>("plan", metadataConcurrency, PIPELINE_QUEUE_CAPACITY, copyJob -> {
+                    if(planCopy(copyModule, copyJob.mediaFile, division, mediaDivisionCases, false)){
+                        copyStage.submit(copyJob);
+                    } else {
+                        record(manifest, copyJob.source, copyJob.outcome);
+                    }
+                });
+        PipelineStage<List<MediaFile>> renameStage = new PipelineStage<>("rename", 1, PIPELINE_QUEUE_CAPACITY,
+                mediaFiles -> {
+            /*Low confidence renames are queued for review instead of prompting
+            * the user, confident renames are then applied without prompting.*/
+            for(MediaFile mediaFile : mediaFiles){
                 if(mediaFile.toString() == null){
+                    record(manifest, mediaFile.getOriginalFileName(), ScanManifest.Outcome.NOT_RENAMED);
                     continue;
                 }
-                //get media name from complete filename
-                String mediaName = Utilities.parseFilenameFromPath(mediaFile.getMediaName());
-                //if user settings is to divide media based on type
-                if(division){
-                    String mediaType = mediaDivisionCases.get(mediaName);
-                    if(mediaType == null){
-                        if(Constants.TRUE.equals(userInteraction)) {
-                            Utilities.getPrintStream().println(mediaName);
-                            mediaType = getMediaTypeFromUser();
-                            ErrorHandler.printOutToFile(Constants.MEDIA_DIVISION_FILE, mediaName + ": " + mediaType);
-                            //allows for multiple of same file.
-                            mediaDivisionCases.put(mediaName,mediaType);
-                        }
-                    }
-                    //assign media type if determined.
-                    if(mediaType != null) {
-                        mediaFile.setMediaType(mediaType);
+                if(reviewQueue && mediaFile.getConfidence() == ParseConfidence.LOW){
+                    ErrorHandler.printOutToFile(offset+Constants.REVIEW_QUEUE_FILE,
+                            mediaFile.getOriginalFileName()+": "+mediaFile.toString());
+                    record(manifest, mediaFile.getOriginalFileName(), ScanManifest.Outcome.QUEUED);
+                    continue;
+                }
+                File file = new File(mediaFile.getOriginalFileName());
+                String renamedPath;
+                /*If the settings file has determined that the user wants user interaction.*/
+                if(prompt){
+                    renamedPath = userDecisionOnRename(mediaFile, file);
+                } else {
+                    renamedPath = Utilities.rename(file, mediaFile.toString()) ? mediaFile.toString() : file.toString();
+                    Utilities.getPrintStream().println(Constants.MEDIA_RENAME_COMPLETE);
+                    logRename(mediaFile);
+                }
+                if(renamed != null){
+                    renamed.accept(renamedPath);
+                }
+                ScanManifest.Outcome outcome = renamedPath.equals(file.toString()) ?
+                        ScanManifest.Outcome.NOT_RENAMED : ScanManifest.Outcome.RENAMED;
+                if(copyStage == null){
+                    record(manifest, renamedPath, outcome);
+                    continue;
+                }
+                /*Copy with the media file just renamed, unless the file took
+                * another name, then that name is parsed.*/
+                MediaFile copyFile = mediaFile;
+                if(!renamedPath.equals(mediaFile.toString())){
+                    copyFile = new MediaFile(renamedPath);
+                    copyFile.renamed();
+                    renameModule.rename(copyFile);
+                    if(copyFile.toString() == null){
+                        record(manifest, renamedPath, outcome);
+                        continue;
                     }
                 }
-                //generate the copy directory path
-                copyModule.copy(mediaFile);
-
-                Utilities.getPrintStream().println(mediaFile.getCopyLocation());
-                //default to true since the user specified the copy module to be enabled.
-                boolean copy = true;
-                if(Constants.TRUE.equals(userInteraction)){
-                    copy = userDecisionOnCopy(mediaFile);
+                if(planStage != null){
+                    planStage.submit(new CopyJob(copyFile, renamedPath, outcome));
+                } else if(planCopy(copyModule, copyFile, division, mediaDivisionCases, prompt)){
+                    copyStage.submit(new CopyJob(copyFile, renamedPath, outcome));
+                } else {
+                    record(manifest, renamedPath, outcome);
+                }
+            }
+        });
+        /*Parse every file of a directory up front, a series at a time.*/
+        PipelineStage<List<File>> parseStage = new PipelineStage<>("parse",
+                parseWorkerCount(settings.get(Constants.PARSE_WORKERS), DEFAULT_PARSE_WORKERS),
+                PIPELINE_QUEUE_CAPACITY, files -> {
+            List<MediaFile> mediaFiles = new ArrayList<>();
+            for(File file : files){
+                mediaFiles.add(new MediaFile(file.toString()));
+            }
+            renameStage.submit(renameModule.renameSeries(mediaFiles));
+        });
+        boolean filesFound = source.apply(parseStage::submit);
+        /*Drain the stages in order, each one only ends once the stage
+        * feeding it has.*/
+        parseStage.finish();
+        renameStage.finish();
+        if(planStage != null){
+            planStage.finish();
+        }
+        if(copyStage != null){
+            copyStage.finish();
+        }
+        return filesFound;
+    }
+
+    /**
+     * Write the plan of every file under the rename directories, see {@link Planner}.
+     * The directories are scanned one after the other, into a single plan.
+     * @param roots rename directories to scan.
+     * @param planFile to write.
+     * @param session to plan renames and copies with.
+     * @return true if any file was found, false otherwise.
+     */
+    private static boolean writePlan(List<Path> roots, String planFile, Session session){
+        HashMap<String, String> settings = session.getSettings();
+        Rename renameModule = session.getRenameModule();
+        boolean division = Constants.TRUE.equals(settings.get(Constants.MEDIA_DIVISION));
+        boolean reviewQueue = Constants.TRUE.equals(settings.get(Constants.REVIEW_QUEUE));
+        try(Planner planner = new Planner(planFile, session.getCopyModule(), division,
+                division ? session.getMediaDivisionCases() : null, reviewQueue)){
+            boolean filesFound = forEachDirectory(roots, null, files -> {
+                List<MediaFile> mediaFiles = new ArrayList<>();
+                for(File file : files){
+                    mediaFiles.add(new MediaFile(file.toString()));
+                }
+                try{
+                    planner.plan(renameModule.renameSeries(mediaFiles));
+                } catch (IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            });
+            Utilities.getPrintStream().println("Plan written: " + planner.getOperations() + " operations, " +
+                    planner.getCollisions() + " collisions >> " + planFile);
+            return filesFound;
+        } catch (IOException | UncheckedIOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * Run every file under the rename directories through the rename
+     * pipeline. Directories on different file stores are scanned and renamed
+     * in parallel, each file store by a pipeline of its own, so every disk
+     * is read at once while the directories of a disk are read one after
+     * the other, see {@link DirectoryScanner#groupByFileStore(List)}.
+     * When the user is prompted, see {@link #promptsUser(HashMap)}, a single
+     * pipeline takes every directory in turn, so the user is prompted for
+     * one file at a time.
+     * @param session to rename and copy with.
+     * @param roots rename directories to scan.
+     * @return true if any file was found, false otherwise.
+     */
+    private static boolean renameRoots(Session session, List<Path> roots){
+        ScanManifest manifest = session.getScanManifest();
+        List<List<Path>> groups = promptsUser(session.getSettings()) ?
+                Collections.singletonList(roots) : DirectoryScanner.groupByFileStore(roots);
+        if(groups.size() == 1){
+            return runPipeline(session, action -> forEachDirectory(groups.get(0), manifest, action), null);
+        }
+        AtomicBoolean filesFound = new AtomicBoolean(false);
+        List<Thread> workers = new ArrayList<>();
+        for(List<Path> group : groups){
+            Thread worker = new Thread(() -> {
+                if(runPipeline(session, action -> forEachDirectory(group, manifest, action), null)){
+                    filesFound.set(true);
                 }
-                if(copy && ensureFileStructureExists(mediaFile.getCopyLocation())) {
-                    //if the user selected to copy, the execute the copy.
-                    Copy.executeCopy(mediaFile.getOriginalFileName(), mediaFile.getCopyLocation());
-                    /*Let the user know where the file was stored.*/
-                    String filename = Utilities.parseFilenameFromPath(mediaFile.toString());
-                    String path = Utilities.removeFilenameFromPath(mediaFile.toString());
-                    String folder = Utilities.parseFilenameFromPath(path);
-                    Utilities.getPrintStream().println("File copied: " + filename + " to dir: {CopyDir}\\" + folder);
-                    Utilities.getPrintStream().println(Constants.MEDIA_COPY_COMPLETE);
+            }, "store-" + workers.size());
+            workers.add(worker);
+            worker.start();
+        }
+        /*The batch only finishes once every file store is done.*/
+        boolean interrupted = false;
+        for(Thread worker : workers){
+            while(worker.isAlive()){
+                try{
+                    worker.join();
+                } catch (InterruptedException e){
+                    interrupted = true;
                 }
             }
         }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+        return filesFound.get();
     }
 
     /**
-     * Recursive listFiles structure
-     * @param myFiles array of files to add to list.
+     * Scan every file under each of the given directories in turn, see
+     * {@link #forEachDirectory(String, ScanManifest, Consumer)}.
+     * @param roots directories to scan.
+     * @param manifest of the files to skip while unchanged, may be null.
+     * @param action to perform on the files of each directory.
+     * @return true if any file was found, false otherwise.
      */
-    private static void listFiles(File[] myFiles){
-        for(File file : myFiles){
-            if (file.isDirectory())
-                listFiles(file.listFiles());
-            else
+    private static boolean forEachDirectory(List<Path> roots, ScanManifest manifest, Consumer<List<File>> action){
+        boolean filesFound = false;
+        for(Path root : roots){
+            filesFound |= forEachDirectory(root.toString(), manifest, action);
+        }
+        return filesFound;
+    }
+
+    /**
+     * Split the rename directories of the settings file into paths, see
+     * {@link Utilities#determineRenameDirs(String)}.
+     * @param directory setting of the rename directories.
+     * @return paths of the directories, in the given order.
+     */
+    private static List<Path> toPaths(String directory){
+        List<Path> roots = new ArrayList<>();
+        for(String root : Utilities.determineRenameDirs(directory)){
+            roots.add(Paths.get(root));
+        }
+        return roots;
+    }
+
+    /**
+     * Scan every file under a directory and hand the files to the given
+     * action a directory at a time, as the scan finds them. Only the files
+     * of one directory are held at once. Files handled by an earlier run
+     * and unchanged since are skipped, from the attributes read by the scan.
+     * @param directory to scan.
+     * @param manifest of the files to skip while unchanged, may be null.
+     * @param action to perform on the files of each directory.
+     * @return true if any file was found, false otherwise.
+     */
+    private static boolean forEachDirectory(String directory, ScanManifest manifest, Consumer<List<File>> action){
+        boolean filesFound = false;
+        List<File> files = new ArrayList<>();
+        try(DirectoryScanner scanner = new DirectoryScanner(Paths.get(directory))){
+            while(scanner.hasNext()){
+                DirectoryScanner.ScannedFile scannedFile = scanner.next();
+                if(manifest != null && manifest.isUnchanged(scannedFile.getPath(), scannedFile.getAttributes())){
+                    continue;
+                }
+                File file = scannedFile.getPath().toFile();
+                filesFound = true;
+                if(!files.isEmpty() && !file.getParentFile().equals(files.get(0).getParentFile())){
+                    action.accept(files);
+                    files = new ArrayList<>();
+                }
                 files.add(file);
+            }
+        }
+        if(!files.isEmpty()){
+            action.accept(files);
+        }
+        return filesFound;
+    }
+
+    /**
+     * Drop the files handled by an earlier run and unchanged since.
+     * @param manifest of the handled files, may be null.
+     * @param files to check.
+     * @return files still to be handled, in the given order.
+     */
+    private static List<Path> skipHandled(ScanManifest manifest, List<Path> files){
+        if(manifest == null){
+            return files;
+        }
+        List<Path> changed = new ArrayList<>();
+        for(Path path : files){
+            try{
+                if(manifest.isUnchanged(path, Files.readAttributes(path, BasicFileAttributes.class))){
+                    continue;
+                }
+            } catch (IOException e){
+                //handed on as found, the pipeline reports it
+            }
+            changed.add(path);
+        }
+        return changed;
+    }
+
+    /**
+     * Record a file left in place by the batch in a scan manifest.
+     * @param manifest to record the file in, may be null.
+     * @param path of the file.
+     * @param outcome what was done with the file.
+     */
+    private static void record(ScanManifest manifest, String path, ScanManifest.Outcome outcome){
+        if(manifest != null){
+            manifest.record(path, outcome);
+        }
+    }
+
+    /**
+     * Divide a renamed media file by media type and generate its copy location.
+     * @param copyModule to generate the copy location with.
+     * @param mediaFile renamed media file to be copied.
+     * @param division true if media is divided by media type.
+     * @param mediaDivisionCases media names to media types, null if media is not divided.
+     * @param prompt true to prompt the user for unknown media types and the copy.
+     * @return true if the media file should be copied, false otherwise.
+     */
+    private static boolean planCopy(Copy copyModule, MediaFile mediaFile, boolean division,
+                                    HashMap<String, String> mediaDivisionCases, boolean prompt){
+        //get media name from complete filename
+        String mediaName = Utilities.parseFilenameFromPath(mediaFile.getMediaName());
+        //if user settings is to divide media based on type
+        if(division){
+            String mediaType = mediaDivisionCases.get(mediaName);
+            if(mediaType == null){
+                if(prompt) {
+                    Utilities.getPrintStream().println(mediaName);
+                    mediaType = getMediaTypeFromUser();
+                    ErrorHandler.printOutToFile(Constants.MEDIA_DIVISION_FILE, mediaName + ": " + mediaType);
+                    //allows for multiple of same file.
+                    mediaDivisionCases.put(mediaName,mediaType);
+                }
+            }
+            //assign media type if determined.
+            if(mediaType != null) {
+                mediaFile.setMediaType(mediaType);
+            }
+        }
+        //generate the copy directory path
+        copyModule.copy(mediaFile);
+
+        Utilities.getPrintStream().println(mediaFile.getCopyLocation());
+        //default to true since the user specified the copy module to be enabled.
+        if(prompt){
+            return userDecisionOnCopy(mediaFile);
+        }
+        return true;
+    }
+
+    /**
+     * Copy a renamed file to the copy location of its media file.
+     * @param copyJob file to be copied.
+     */
+    private static void executeCopy(CopyJob copyJob){
+        MediaFile mediaFile = copyJob.mediaFile;
+        if(ensureFileStructureExists(mediaFile.getCopyLocation())) {
+            //if the user selected to copy, the execute the copy.
+            Copy.executeCopy(copyJob.source, mediaFile.getCopyLocation());
+            /*Let the user know where the file was stored.*/
+            String filename = Utilities.parseFilenameFromPath(mediaFile.toString());
+            String path = Utilities.removeFilenameFromPath(mediaFile.toString());
+            String folder = Utilities.parseFilenameFromPath(path);
+            Utilities.getPrintStream().println("File copied: " + filename + " to dir: {CopyDir}\\" + folder);
+            Utilities.getPrintStream().println(Constants.MEDIA_COPY_COMPLETE);
+        }
+    }
+
+    /**
+     * Determine if the rename pipeline prompts the user. A review queue
+     * takes the place of the prompts, so a run with one never blocks.
+     * @param settings user specified settings.
+     * @return true if user interaction is on and there is no review queue.
+     */
+    private static boolean promptsUser(HashMap<String, String> settings){
+        return Constants.TRUE.equals(settings.get(Constants.USER_INTERACTION))
+                && !Constants.TRUE.equals(settings.get(Constants.REVIEW_QUEUE));
+    }
+
+    /**
+     * Helper method to read a user specified number of worker threads.
+     * @param userWorkerCount setting value, may be null.
+     * @param defaultWorkerCount used if not given or not a positive number.
+     * @return number of worker threads.
+     */
+    private static int parseWorkerCount(String userWorkerCount, int defaultWorkerCount){
+        if(userWorkerCount == null){
+            return defaultWorkerCount;
+        }
+        try{
+            int workerCount = Integer.parseInt(userWorkerCount);
+            return workerCount > 0 ? workerCount : defaultWorkerCount;
+        } catch (NumberFormatException e){
+            ErrorHandler.printError(e.getClass().getName() + ": " + e.getMessage());
+            return defaultWorkerCount;
         }
     }
 
@@ -227,8 +905,10 @@ public class Runner {
      * Helper method to determine rename based on user input.
      * Allow the user to modify the filename dynamically.
      * @param mediaFile of the media file in question to be renamed.
+     * @param file to be renamed.
+     * @return path of the file after the user decision.
      */
-    private static void userDecisionOnRename(MediaFile mediaFile, File file){
+    private static String userDecisionOnRename(MediaFile mediaFile, File file){
         Utilities.getPrintStream().println(Constants.LINE_BREAK);
         Utilities.getPrintStream().println("The rename algorithm has determined the following new name:");
         Utilities.getPrintStream().println("Original >> "+Utilities.parseFilenameFromPath(mediaFile.getOriginalFileName()));
@@ -238,7 +918,9 @@ public class Runner {
         switch(userInput){
             case "Y":
             case "y":
-                Utilities.rename(file, mediaFile.toString());
+                if(Utilities.rename(file, mediaFile.toString())){
+                    return mediaFile.toString();
+                }
                 break;
             case "N":
             case "n":
@@ -246,9 +928,12 @@ public class Runner {
                 Utilities.getPrintStream().println("Give full name with extension?");
                 userInput = Utilities.userInput();
                 String path = Utilities.removeFilenameFromPath(mediaFile.toString());
-                Utilities.rename(file, path+userInput);
+                if(Utilities.rename(file, path+userInput)){
+                    return path+userInput;
+                }
                 break;
         }
+        return file.toString();
     }
 
     /**
@@ -304,14 +989,20 @@ public class Runner {
             return true;
         }
         String[] subFolders = filepath.split("\\\\");
+        String[] folderStructures = new String[subFolders.length];
         String folderStructure = "";
-        for(String folder: subFolders){
-            folderStructure += folder;
-            if(!Utilities.fileExists(folderStructure)){
-                Utilities.makeDirectory(folderStructure);
-            }
+        for(int i = 0; i < subFolders.length; i++){
+            folderStructure += subFolders[i];
+            folderStructures[i] = folderStructure;
             folderStructure+="\\";
         }
+        /*Look up every level at once, then create the missing ones in order.*/
+        MetadataProbe.Lookup lookup = MetadataProbe.exists(folderStructures);
+        for(int i = 0; i < folderStructures.length; i++){
+            if(!lookup.exists(i)){
+                Utilities.makeDirectory(folderStructures[i]);
+            }
+        }
         return Utilities.fileExists(filepath);
     }
 
@@ -0,0 +1,103 @@
+package launch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Shared secret a send must present to the server, see {@link Runner}.
+ * Any process of the machine can connect to the server, only processes of
+ * the user the server runs as can read the token file: on start the
+ * server writes a new token to a file that only its owner can read, send
+ * reads it from there.
+ */
+final class ServerToken {
+    /**Number of random bytes of a token.*/
+    private static final int TOKEN_BYTES = 32;
+    /**Source of the tokens.*/
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private ServerToken() {
+    }
+
+    /**
+     * Write a new token to the token file, replacing any earlier token.
+     * The file is created readable by its owner alone.
+     * @param tokenFile path of the token file.
+     * @return new token.
+     * @throws IOException if the token file cannot be written.
+     */
+    static String create(String tokenFile) throws IOException {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for(byte b : bytes){
+            token.append(String.format("%02x", b));
+        }
+        Path path = Paths.get(tokenFile);
+        Files.deleteIfExists(path);
+        if(path.getFileSystem().supportedFileAttributeViews().contains("posix")){
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+            restrictToOwner(path);
+        }
+        Files.write(path, token.toString().getBytes(StandardCharsets.UTF_8));
+        return token.toString();
+    }
+
+    /**
+     * Read the token of a running server.
+     * @param tokenFile path of the token file.
+     * @return token, empty if the file is empty.
+     * @throws IOException if the token file cannot be read.
+     */
+    static String read(String tokenFile) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(tokenFile)), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Determine if a presented token is the token of the server, in time
+     * that does not depend on how much of it is right.
+     * @param token of the server.
+     * @param presented token, may be null.
+     * @return true if the tokens are equal, false otherwise.
+     */
+    static boolean matches(String token, String presented) {
+        return presented != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                presented.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Grant access to a file to its owner alone, on file systems with
+     * access control lists instead of POSIX permissions.
+     * @param path of the file.
+     * @throws IOException if the access control list cannot be written.
+     */
+    private static void restrictToOwner(Path path) throws IOException {
+        AclFileAttributeView view = Files.getFileAttributeView(path, AclFileAttributeView.class);
+        if(view == null){
+            return; //no access control to tighten
+        }
+        UserPrincipal owner = Files.getOwner(path);
+        List<AclEntry> acl = Collections.singletonList(AclEntry.newBuilder()
+                .setType(AclEntryType.ALLOW)
+                .setPrincipal(owner)
+                .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+                .build());
+        view.setAcl(acl);
+    }
+}
@@ -0,0 +1,187 @@
+package launch;
+
+import constants.Constants;
+import copy.Copy;
+import rename.FilenameRules;
+import rename.ParseCache;
+import rename.Rename;
+import scan.ScanManifest;
+import utilities.Utilities;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The settings and rule files of a run, along with the modules built from
+ * them. Only the settings file is read up front, every other file is read
+ * the first time a module needs it, so a run reads no more than it uses.
+ * A new session can be loaded when any of the files change.
+ */
+final class Session {
+    /**Offset directory the files are read from.*/
+    private final String offset;
+    /**User specified settings.*/
+    private final HashMap<String, String> settings;
+    /**Last modified time of each file read, when it was read.*/
+    private final Map<String, Long> modified = new HashMap<>();
+    /**Special cases for assigning user specified names to determined names, null until read.*/
+    private HashMap<String, String> specialRenameCases = null;
+    /**Media names to media types, null until read.*/
+    private HashMap<String, String> mediaDivisionCases = null;
+    /**Cache of rename results, null if disabled.*/
+    private final ParseCache parseCache;
+    /**Rename module of the session, null until needed.*/
+    private Rename renameModule = null;
+    /**Copy module of the session, null until needed.*/
+    private Copy copyModule = null;
+    /**Manifest of the files handled by earlier runs, null until needed.*/
+    private ScanManifest scanManifest = null;
+
+    private Session(String offset) {
+        this.offset = offset;
+        this.settings = readFile(Constants.SETTINGS_FILE);
+        /*Rename results are cached between runs unless the user disabled it.*/
+        this.parseCache = Constants.FALSE.equals(settings.get(Constants.PARSE_CACHE)) ? null :
+                new ParseCache(offset+Constants.PARSE_CACHE_FILE);
+    }
+
+    /**
+     * Load the settings file found in an offset directory.
+     * @param offset directory the files are read from, ends with a separator.
+     * @return loaded session.
+     */
+    static Session load(String offset) {
+        return new Session(offset);
+    }
+
+    /**
+     * Retrieve the paths of the settings and rule files of the session.
+     * @return paths of the files.
+     */
+    List<Path> getFiles() {
+        List<Path> files = new ArrayList<>();
+        files.add(Paths.get(offset+Constants.SETTINGS_FILE));
+        files.add(Paths.get(offset+Constants.SPECIAL_RENAME_CASES_FILE));
+        files.add(Paths.get(offset+Constants.SPECIAL_EP_CASES_FILE));
+        files.add(Paths.get(offset+Constants.MEDIA_DIVISION_FILE));
+        files.add(Paths.get(offset+Constants.FILENAME_RULES_FILE));
+        return files;
+    }
+
+    /**
+     * Determine if any of the files read by the session changed since.
+     * @return true if changed, false otherwise.
+     */
+    synchronized boolean isStale() {
+        for(Map.Entry<String, Long> file : modified.entrySet()){
+            if(new File(offset+file.getKey()).lastModified() != file.getValue()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Retrieve the offset directory the files are read from.
+     * @return offset, ends with a separator.
+     */
+    String getOffset() {
+        return offset;
+    }
+
+    /**
+     * Retrieve the user specified settings.
+     * @return settings.
+     */
+    HashMap<String, String> getSettings() {
+        return settings;
+    }
+
+    /**
+     * Retrieve the media names to media types, read when first needed.
+     * @return media division cases.
+     */
+    synchronized HashMap<String, String> getMediaDivisionCases() {
+        if(mediaDivisionCases == null){
+            mediaDivisionCases = readFile(Constants.MEDIA_DIVISION_FILE);
+        }
+        return mediaDivisionCases;
+    }
+
+    /**
+     * Retrieve the rename module of the session, built when first needed.
+     * @return rename module.
+     */
+    synchronized Rename getRenameModule() {
+        if(renameModule == null){
+            HashMap<String, String> specialEpisodeCases = readFile(Constants.SPECIAL_EP_CASES_FILE);
+            modified.put(Constants.FILENAME_RULES_FILE, new File(offset+Constants.FILENAME_RULES_FILE).lastModified());
+            FilenameRules filenameRules = FilenameRules.load(offset+Constants.FILENAME_RULES_FILE);
+            renameModule = new Rename(settings, getSpecialRenameCases(), specialEpisodeCases, parseCache, filenameRules);
+        }
+        return renameModule;
+    }
+
+    /**
+     * Retrieve the copy module of the session, built when first needed.
+     * @return copy module, null if files are not copied.
+     */
+    synchronized Copy getCopyModule() {
+        if(copyModule == null && Constants.TRUE.equals(settings.get(Constants.COPY_FILES_FLAG))){
+            copyModule = new Copy(settings, getSpecialRenameCases());
+        }
+        return copyModule;
+    }
+
+    /**
+     * Retrieve the manifest of the files handled by earlier runs, built
+     * when first needed. Its entries are only valid for the current
+     * contents of the settings and rule files.
+     * @return scan manifest, null if handled files are not skipped.
+     */
+    synchronized ScanManifest getScanManifest() {
+        if(scanManifest == null && Constants.TRUE.equals(settings.get(Constants.SCAN_MANIFEST))){
+            scanManifest = new ScanManifest(offset+Constants.SCAN_MANIFEST_FILE, ScanManifest.version(getFiles()));
+        }
+        return scanManifest;
+    }
+
+    /**
+     * Persist the rename results and handled files of the session for the next run.
+     */
+    synchronized void save() {
+        if(parseCache != null){
+            parseCache.save();
+        }
+        if(scanManifest != null){
+            scanManifest.save();
+        }
+    }
+
+    /**
+     * Retrieve the special rename cases, read when first needed.
+     * @return special rename cases.
+     */
+    private HashMap<String, String> getSpecialRenameCases() {
+        if(specialRenameCases == null){
+            specialRenameCases = readFile(Constants.SPECIAL_RENAME_CASES_FILE);
+        }
+        return specialRenameCases;
+    }
+
+    /**
+     * Read a settings file of the offset directory, remembering when it
+     * was last modified.
+     * @param file name of the file.
+     * @return keys and values of the file.
+     */
+    private HashMap<String, String> readFile(String file) {
+        modified.put(file, new File(offset+file).lastModified());
+        return Utilities.loadSettingsFile(offset+file);
+    }
+}
@@ -18,11 +18,25 @@ public class Setup {
      * @param filePath file to generate.
      */
     public static void setupSettingsFile(String filePath){
+        setupSettingsFile(filePath, new String[0]);
+    }
+
+    /**
+     * Generate a new copy of the specified settings file with default lines,
+     * written at once.
+     * Only build new if doesn't already exist.
+     * @param filePath file to generate.
+     * @param lines default lines written after the header.
+     */
+    public static void setupSettingsFile(String filePath, String... lines){
         try {
             if(Utilities.fileExists(filePath))
                 return;
             PrintWriter settings = new PrintWriter(new FileWriter(filePath));
             generateDefaultFileText(settings);
+            for(String line : lines){
+                settings.println(line);
+            }
             settings.close();
         }catch(Exception e){
             ErrorHandler.printError(e.getClass().getName() + ": " + e.getMessage());
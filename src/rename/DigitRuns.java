@@ -0,0 +1,212 @@
+package rename;
+
+/**
+ * Index of every run of digits in a filename.
+ * The filename is scanned once and every maximal run of digits 0-9 is
+ * recorded as its offset, length and value. The episode, season and
+ * year parsers all work from this index instead of stripping the
+ * non digits from the filename into a new String each.
+ * Digits are also numbered in order of appearance, so the parsers can
+ * address "the first three digits of the filename" without building it.
+ */
+final class DigitRuns {
+    /**Value recorded for runs too long to fit in an int.*/
+    static final int OVERFLOW = Integer.MAX_VALUE;
+
+    /**Indexed filename.*/
+    private final String filename;
+    /**Offset of each digit in the filename, in order of appearance.*/
+    private final int[] positions;
+    /**Run each digit belongs to.*/
+    private final int[] digitRuns;
+    /**Number of digits in the filename.*/
+    private final int digitCount;
+    /**Offset of the first digit of each run.*/
+    private final int[] runOffsets;
+    /**Number of digits in each run.*/
+    private final int[] runLengths;
+    /**Value of each run, OVERFLOW if too long to fit in an int.*/
+    private final int[] runValues;
+    /**Number of runs.*/
+    private final int runCount;
+
+    /**
+     * Scan the filename and index its digits.
+     * @param filename to be indexed.
+     */
+    DigitRuns(String filename) {
+        this.filename = filename;
+        int length = filename.length();
+        int maxRuns = (length + 1) / 2;
+        this.positions = new int[length];
+        this.digitRuns = new int[length];
+        this.runOffsets = new int[maxRuns];
+        this.runLengths = new int[maxRuns];
+        this.runValues = new int[maxRuns];
+        int digits = 0;
+        int runs = 0;
+        int i = 0;
+        while(i < length){
+            if(!FilenameTokenizer.isDigit(filename.charAt(i))){
+                i++;
+                continue;
+            }
+            int start = i;
+            long value = 0;
+            while(i < length && FilenameTokenizer.isDigit(filename.charAt(i))){
+                positions[digits] = i;
+                digitRuns[digits] = runs;
+                digits++;
+                if(value <= OVERFLOW){
+                    value = value * 10 + (filename.charAt(i) - '0');
+                }
+                i++;
+            }
+            runOffsets[runs] = start;
+            runLengths[runs] = i - start;
+            runValues[runs] = value > OVERFLOW ? OVERFLOW : (int) value;
+            runs++;
+        }
+        this.digitCount = digits;
+        this.runCount = runs;
+    }
+
+    /**
+     * Retrieve the indexed filename.
+     * @return filename.
+     */
+    String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Retrieve the number of digits in the filename.
+     * @return number of digits.
+     */
+    int getDigitCount() {
+        return digitCount;
+    }
+
+    /**
+     * Retrieve the offset in the filename of a digit.
+     * @param digit index of the digit in order of appearance.
+     * @return offset in the filename.
+     */
+    int getPosition(int digit) {
+        return positions[digit];
+    }
+
+    /**
+     * Retrieve the number of runs of digits in the filename.
+     * @return number of runs.
+     */
+    int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Build the String of a run of digits.
+     * @param run index of the run in order of appearance.
+     * @return digits of the run.
+     */
+    String run(int run) {
+        return filename.substring(runOffsets[run], runOffsets[run] + runLengths[run]);
+    }
+
+    /**
+     * Determine if a run of digits is equal to the run of another index.
+     * @param run index of the run in this index.
+     * @param other index to compare with.
+     * @param otherRun index of the run in the other index.
+     * @return true if both runs have the same digits.
+     */
+    boolean runEquals(int run, DigitRuns other, int otherRun) {
+        return runLengths[run] == other.runLengths[otherRun] &&
+                filename.regionMatches(runOffsets[run], other.filename, other.runOffsets[otherRun], runLengths[run]);
+    }
+
+    /**
+     * Determine if a sequence of digits is adjacent in the filename.
+     * @param first index of the first digit.
+     * @param length number of digits.
+     * @return true if the digits form part of a single run.
+     */
+    boolean isAdjacent(int first, int length) {
+        return positions[first + length - 1] - positions[first] == length - 1;
+    }
+
+    /**
+     * Compute the value of a sequence of digits, which need not be adjacent
+     * in the filename.
+     * @param first index of the first digit.
+     * @param length number of digits, at most nine.
+     * @return value of the digits.
+     */
+    int value(int first, int length) {
+        int run = digitRuns[first];
+        if(runOffsets[run] == positions[first] && runLengths[run] == length){
+            return runValues[run];
+        }
+        int value = 0;
+        for(int i = first; i < first + length; i++){
+            value = value * 10 + (filename.charAt(positions[i]) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Determine if the filename contains the given sequence of digits,
+     * the same as {@link String#contains(CharSequence)} with the digits
+     * as a String. Every occurrence of a String of digits lies within a
+     * single run, so only the runs are searched.
+     * @param first index of the first digit.
+     * @param length number of digits.
+     * @return true if the digits appear adjacent anywhere in the filename.
+     */
+    boolean contains(int first, int length) {
+        if(isAdjacent(first, length)){
+            return true;
+        }
+        for(int run = 0; run < runCount; run++){
+            for(int start = runOffsets[run]; start + length <= runOffsets[run] + runLengths[run]; start++){
+                if(matches(start, first, length)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build the String of a sequence of digits.
+     * @param first index of the first digit.
+     * @param length number of digits.
+     * @return digits.
+     */
+    String digits(int first, int length) {
+        if(isAdjacent(first, length)){
+            return filename.substring(positions[first], positions[first] + length);
+        }
+        char[] digits = new char[length];
+        for(int i = 0; i < length; i++){
+            digits[i] = filename.charAt(positions[first + i]);
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Compare the filename at an offset with a sequence of digits.
+     * @param offset in the filename.
+     * @param first index of the first digit.
+     * @param length number of digits.
+     * @return true if equal.
+     */
+    private boolean matches(int offset, int first, int length) {
+        for(int i = 0; i < length; i++){
+            if(filename.charAt(offset + i) != filename.charAt(positions[first + i])){
+                return false;
+            }
+        }
+        return true;
+    }
+}
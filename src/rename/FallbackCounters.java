@@ -0,0 +1,63 @@
+package rename;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how often the rename algorithm falls back to a slower search
+ * because a filename could not be parsed directly.
+ * Counters are shared by every thread renaming with the same rename object.
+ */
+public final class FallbackCounters {
+
+    /**
+     * Fallback searches of the rename algorithm.
+     */
+    public enum Fallback {
+        /**Filename parsed again with a pair of () or [] removed.*/
+        BRACKET_STRIP,
+        /**Leading title digit dropped while parsing the episode number.*/
+        EPISODE_TITLE_DIGIT,
+        /**Leading title digit dropped while parsing the season number.*/
+        SEASON_TITLE_DIGIT,
+        /**Year searched for among more than four digits.*/
+        YEAR_SEARCH,
+        /**Fallback stopped because the work budget of the file ran out.*/
+        BUDGET_EXHAUSTED
+    }
+
+    /**Count of each fallback, indexed by ordinal.*/
+    private final AtomicLongArray counts = new AtomicLongArray(Fallback.values().length);
+
+    /**
+     * Record that a fallback fired.
+     * @param fallback that fired.
+     */
+    void increment(Fallback fallback) {
+        counts.incrementAndGet(fallback.ordinal());
+    }
+
+    /**
+     * Retrieve how often a fallback fired.
+     * @param fallback to retrieve count of.
+     * @return number of times the fallback fired.
+     */
+    public long get(Fallback fallback) {
+        return counts.get(fallback.ordinal());
+    }
+
+    /**
+     * Format every counter as name=count pairs.
+     * @return formatted counters.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for(Fallback fallback : Fallback.values()){
+            if(out.length() > 0){
+                out.append(", ");
+            }
+            out.append(fallback.name()).append('=').append(get(fallback));
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,448 @@
+package rename;
+
+import errorHandle.ErrorHandler;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * User defined filename rules, read from the filename rules file.
+ * Each rule is a line in the format Name: Pattern, where the pattern is a
+ * regular expression matched against the whole filename without its path
+ * and file extension. The named groups title, season, episode and year of
+ * a pattern are assigned to the media file; a rule needs a title along
+ * with an episode or a year. Back references must be named, as in
+ * \k&lt;name&gt;, numbered back references are not supported.
+ * Rules named Drop declare tags that are removed from the filename before
+ * any rule is tried, the built-in parser included.
+ * The pattern BUILTIN stands for the built-in rename algorithm. Rules
+ * before it are tried first, rules after it only when the built-in
+ * algorithm finds neither an episode nor a year, or is not confident in
+ * what it found, see {@link ParseConfidence}. Without a BUILTIN rule
+ * the built-in algorithm is not used, so the default rule set is the
+ * single rule Builtin: BUILTIN.
+ * All drop rules are compiled into one pattern, as are all rules on either
+ * side of BUILTIN, so a filename is matched against every rule in one pass
+ * and the first rule in file order that matches wins. If its title is
+ * empty or its numbers are not valid, the rules after it are tried.
+ */
+public final class FilenameRules {
+    /**Pattern that stands for the built-in rename algorithm.*/
+    public static final String BUILTIN = "BUILTIN";
+    /**Name of the rules that remove tags from the filename.*/
+    public static final String DROP = "Drop";
+    /**Name of the built-in rule of the default rule set.*/
+    public static final String DEFAULT_BUILTIN_RULE = "Builtin: " + BUILTIN;
+    /**Separates the name of a rule from its pattern.*/
+    private static final String DELIMITER = ": ";
+    /**Named group of the title.*/
+    private static final String TITLE = "title";
+    /**Named group of the season number.*/
+    private static final String SEASON = "season";
+    /**Named group of the episode number.*/
+    private static final String EPISODE = "episode";
+    /**Named group of the year.*/
+    private static final String YEAR = "year";
+    /**Named group or named back reference in a pattern.*/
+    private static final Pattern GROUP_NAME = Pattern.compile("(\\(\\?<|\\\\k<)([a-zA-Z][a-zA-Z0-9]*)>");
+    /**Maximum number of digits of a season or episode number.*/
+    private static final int MAX_NUMBER_DIGITS = 6;
+    /**Number of digits of a year.*/
+    private static final int YEAR_DIGITS = 4;
+    /**Separators in a matched title, replaced by a single space.*/
+    private static final Pattern TITLE_SEPARATORS = Pattern.compile("[._\\s]+");
+
+    /**
+     * Fields matched by a rule.
+     */
+    static final class Match {
+        /**Matched title with separators replaced by spaces.*/
+        final String title;
+        /**Matched season number, null if not matched.*/
+        final String seasonNumber;
+        /**Matched episode number, null if not matched.*/
+        final String episodeNumber;
+        /**Matched year, null if not matched.*/
+        final String year;
+
+        private Match(String title, String seasonNumber, String episodeNumber, String year) {
+            this.title = title;
+            this.seasonNumber = seasonNumber;
+            this.episodeNumber = episodeNumber;
+            this.year = year;
+        }
+    }
+
+    /**
+     * Rules on one side of BUILTIN compiled into a single pattern.
+     * Rule i is the alternative named Ri, its named groups are renamed
+     * to nameGi so they are unique across rules.
+     */
+    private static final class RuleSet {
+        /**Combined pattern, null if there are no rules.*/
+        private final Pattern pattern;
+        /**Index of each rule in the combined pattern.*/
+        private final int[] indexes;
+        /**Named groups declared by each rule, parallel to indexes.*/
+        private final boolean[][] declared;
+        /**Pattern of each rule on its own, parallel to indexes.*/
+        private final Pattern[] single;
+
+        private RuleSet(List<String> patterns, List<Integer> indexes) {
+            this.indexes = new int[indexes.size()];
+            this.declared = new boolean[indexes.size()][];
+            this.single = new Pattern[indexes.size()];
+            StringBuilder combined = new StringBuilder();
+            for(int i = 0; i < patterns.size(); i++){
+                int index = indexes.get(i);
+                this.indexes[i] = index;
+                this.declared[i] = declaredGroups(patterns.get(i));
+                this.single[i] = Pattern.compile(patterns.get(i));
+                if(combined.length() > 0){
+                    combined.append('|');
+                }
+                combined.append("(?<R").append(index).append('>')
+                        .append(renameGroups(patterns.get(i), index)).append(')');
+            }
+            this.pattern = patterns.isEmpty() ? null : Pattern.compile(combined.toString());
+        }
+
+        /**
+         * Match the filename against every rule of the set.
+         * @param filename without path and file extension.
+         * @return fields of the first rule that matches with valid fields, null if none.
+         */
+        private Match match(String filename) {
+            if(pattern == null){
+                return null;
+            }
+            Matcher matcher = pattern.matcher(filename);
+            if(!matcher.matches()){
+                return null;
+            }
+            for(int i = 0; i < indexes.length; i++){
+                if(matcher.start("R" + indexes[i]) < 0){
+                    continue;
+                }
+                Match match = fields(matcher, i, "G" + indexes[i]);
+                /*The combined pattern stops at the first rule that matches,
+                * the rules after it are matched on their own.*/
+                for(int j = i + 1; match == null && j < indexes.length; j++){
+                    Matcher singleMatcher = single[j].matcher(filename);
+                    if(singleMatcher.matches()){
+                        match = fields(singleMatcher, j, "");
+                    }
+                }
+                return match;
+            }
+            return null;
+        }
+
+        /**
+         * Read the fields of a rule that matched.
+         * @param matcher that matched.
+         * @param rule position of the rule in the set.
+         * @param suffix of the group names in the pattern of the matcher.
+         * @return matched fields, null if the title is empty or neither
+         * an episode nor a year is valid.
+         */
+        private Match fields(Matcher matcher, int rule, String suffix) {
+            String title = group(matcher, rule, 0, TITLE + suffix);
+            title = title == null ? "" : TITLE_SEPARATORS.matcher(title).replaceAll(" ").trim();
+            String episodeNumber = number(group(matcher, rule, 2, EPISODE + suffix), 1, MAX_NUMBER_DIGITS);
+            String year = number(group(matcher, rule, 3, YEAR + suffix), YEAR_DIGITS, YEAR_DIGITS);
+            if(title.isEmpty() || (episodeNumber == null && year == null)){
+                return null;
+            }
+            return new Match(title, number(group(matcher, rule, 1, SEASON + suffix), 1, MAX_NUMBER_DIGITS),
+                    episodeNumber, year);
+        }
+
+        /**
+         * Retrieve a named group of the rule that matched.
+         * @param matcher that matched.
+         * @param rule position of the rule in the set.
+         * @param field position of the group in {@link #declaredGroups(String)}.
+         * @param name of the group in the pattern of the matcher.
+         * @return matched value, null if not declared or not matched.
+         */
+        private String group(Matcher matcher, int rule, int field, String name) {
+            if(!declared[rule][field]){
+                return null;
+            }
+            return matcher.group(name);
+        }
+    }
+
+    /**Rule lines in file order, identify the rules for cached results.*/
+    private final List<String> rules;
+    /**All drop rules compiled into one pattern, null if none.*/
+    private final Pattern drop;
+    /**Rules tried before the built-in algorithm.*/
+    private final RuleSet before;
+    /**Rules tried after the built-in algorithm.*/
+    private final RuleSet after;
+    /**True if the built-in algorithm is one of the rules.*/
+    private final boolean builtin;
+
+    /**
+     * Compile the given rule lines. Comment lines starting with ### and
+     * blank lines are skipped, malformed rules are reported and ignored.
+     * @param lines of the filename rules file in file order.
+     */
+    public FilenameRules(List<String> lines) {
+        List<String> ruleList = new ArrayList<>();
+        List<String> drops = new ArrayList<>();
+        List<String> beforePatterns = new ArrayList<>();
+        List<Integer> beforeIndexes = new ArrayList<>();
+        List<String> afterPatterns = new ArrayList<>();
+        List<Integer> afterIndexes = new ArrayList<>();
+        boolean foundBuiltin = false;
+        for(String line : lines){
+            if(line.startsWith("###") || line.trim().isEmpty()){
+                continue;
+            }
+            int delimiter = line.indexOf(DELIMITER);
+            String name = delimiter < 0 ? null : line.substring(0, delimiter).trim();
+            String pattern = delimiter < 0 ? null : line.substring(delimiter + DELIMITER.length());
+            if(BUILTIN.equals(pattern) && !foundBuiltin){
+                foundBuiltin = true;
+                ruleList.add(line);
+                continue;
+            }
+            if(name == null || name.isEmpty() || !isValid(name, pattern)){
+                ErrorHandler.printError("Malformed filename rule, ignored: " + line);
+                continue;
+            }
+            ruleList.add(line);
+            if(DROP.equals(name)){
+                drops.add(pattern);
+            } else if(foundBuiltin){
+                afterPatterns.add(pattern);
+                afterIndexes.add(ruleList.size() - 1);
+            } else {
+                beforePatterns.add(pattern);
+                beforeIndexes.add(ruleList.size() - 1);
+            }
+        }
+        this.rules = Collections.unmodifiableList(ruleList);
+        this.builtin = foundBuiltin;
+        this.before = new RuleSet(beforePatterns, beforeIndexes);
+        this.after = new RuleSet(afterPatterns, afterIndexes);
+        if(drops.isEmpty()){
+            this.drop = null;
+        } else {
+            StringBuilder combined = new StringBuilder();
+            for(String pattern : drops){
+                if(combined.length() > 0){
+                    combined.append('|');
+                }
+                combined.append("(?:").append(pattern).append(')');
+            }
+            this.drop = Pattern.compile(combined.toString());
+        }
+    }
+
+    /**
+     * Create the default rule set, the built-in algorithm only.
+     * @return default rules.
+     */
+    public static FilenameRules defaultRules() {
+        return new FilenameRules(Collections.singletonList(DEFAULT_BUILTIN_RULE));
+    }
+
+    /**
+     * Read the filename rules file.
+     * @param filepath of the filename rules file.
+     * @return rules of the file, the default rules if it cannot be read.
+     */
+    public static FilenameRules load(String filepath) {
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader br = new BufferedReader(new FileReader(filepath))){
+            String line;
+            while((line = br.readLine()) != null){
+                lines.add(line);
+            }
+        } catch (Exception e){
+            ErrorHandler.printError(e.getClass().getName() + ": " + e.getMessage());
+            return defaultRules();
+        }
+        return new FilenameRules(lines);
+    }
+
+    /**
+     * Retrieve the rule lines in file order.
+     * @return rule lines, without comments and malformed rules.
+     */
+    List<String> getRules() {
+        return rules;
+    }
+
+    /**
+     * Determine if these rules are the default rule set.
+     * @return true if the built-in algorithm is the only rule.
+     */
+    boolean isDefault() {
+        return builtin && rules.size() == 1;
+    }
+
+    /**
+     * Determine if the built-in algorithm is one of the rules.
+     * @return true if the built-in algorithm is used.
+     */
+    boolean usesBuiltin() {
+        return builtin;
+    }
+
+    /**
+     * Remove every tag declared by the drop rules from a filename.
+     * @param filename without path and file extension.
+     * @return filename without tags.
+     */
+    String dropTags(String filename) {
+        if(drop == null){
+            return filename;
+        }
+        return drop.matcher(filename).replaceAll("");
+    }
+
+    /**
+     * Match a filename against the rules before the built-in algorithm.
+     * @param filename without path, file extension and tags.
+     * @return fields of the first rule that matches, null if none.
+     */
+    Match matchBeforeBuiltin(String filename) {
+        return before.match(filename);
+    }
+
+    /**
+     * Match a filename against the rules after the built-in algorithm.
+     * @param filename without path, file extension and tags.
+     * @return fields of the first rule that matches, null if none.
+     */
+    Match matchAfterBuiltin(String filename) {
+        return after.match(filename);
+    }
+
+    /**
+     * Validate a single rule.
+     * @param name of the rule.
+     * @param pattern of the rule.
+     * @return true if the pattern compiles and declares the groups its rule needs.
+     */
+    private static boolean isValid(String name, String pattern) {
+        try{
+            Pattern.compile(pattern);
+        } catch (PatternSyntaxException e){
+            return false;
+        }
+        /*Group numbers are shifted once rules are compiled into one pattern.*/
+        if(hasNumberedBackReference(pattern)){
+            ErrorHandler.printError("Numbered back reference in filename rule, use \\k<name> instead: " + pattern);
+            return false;
+        }
+        if(DROP.equals(name)){
+            return true;
+        }
+        boolean[] declared = declaredGroups(pattern);
+        return declared[0] && (declared[2] || declared[3]);
+    }
+
+    /**
+     * Determine if a pattern refers back to a group by its number.
+     * Character classes need not be looked at, a numbered back reference
+     * in one does not compile.
+     * @param pattern of a rule that compiles.
+     * @return true if the pattern holds a back reference such as \1.
+     */
+    private static boolean hasNumberedBackReference(String pattern) {
+        boolean quoted = false;
+        for(int i = 0; i < pattern.length() - 1; i++){
+            if(pattern.charAt(i) != '\\'){
+                continue;
+            }
+            char next = pattern.charAt(i + 1);
+            if(quoted){
+                //only \E ends a quote, every other backslash in it is literal
+                if(next == 'E'){
+                    quoted = false;
+                    i++;
+                }
+                continue;
+            }
+            i++;
+            if(next == 'Q'){
+                quoted = true;
+            } else if(next >= '1' && next <= '9'){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine which of the title, season, episode and year groups a
+     * pattern declares.
+     * @param pattern of a rule.
+     * @return declared flags, in the order title, season, episode, year.
+     */
+    private static boolean[] declaredGroups(String pattern) {
+        boolean[] declared = new boolean[4];
+        Matcher matcher = GROUP_NAME.matcher(pattern);
+        while(matcher.find()){
+            switch(matcher.group(2)){
+                case TITLE:
+                    declared[0] = true;
+                    break;
+                case SEASON:
+                    declared[1] = true;
+                    break;
+                case EPISODE:
+                    declared[2] = true;
+                    break;
+                case YEAR:
+                    declared[3] = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return declared;
+    }
+
+    /**
+     * Rename every named group and named back reference of a pattern so
+     * that it is unique in the combined pattern.
+     * @param pattern of a rule.
+     * @param index of the rule.
+     * @return pattern with renamed groups.
+     */
+    private static String renameGroups(String pattern, int index) {
+        return GROUP_NAME.matcher(pattern).replaceAll("$1$2G" + index + ">");
+    }
+
+    /**
+     * Validate a matched number.
+     * @param number matched by a rule, may be null.
+     * @param minDigits minimum number of digits.
+     * @param maxDigits maximum number of digits.
+     * @return number if it only holds between minDigits and maxDigits digits, null otherwise.
+     */
+    private static String number(String number, int minDigits, int maxDigits) {
+        if(number == null || number.length() < minDigits || number.length() > maxDigits){
+            return null;
+        }
+        for(int i = 0; i < number.length(); i++){
+            if(!FilenameTokenizer.isDigit(number.charAt(i))){
+                return null;
+            }
+        }
+        return number;
+    }
+}
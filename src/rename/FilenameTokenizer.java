@@ -0,0 +1,387 @@
+package rename;
+
+/**
+ * Lexer that breaks a raw media filename into tokens.
+ * The filename is scanned once left to right, every token is
+ * classified (bracket group, codec tag, resolution tag, digit run,
+ * separator, word...) and the kept tokens are rendered back into the
+ * cleaned filename that the rest of the rename algorithm works on.
+ * This replaces the chain of replaceAll calls that used to strip
+ * bracket groups, separators, codec and resolution tags one by one.
+ */
+final class FilenameTokenizer {
+
+    /**
+     * Type of token recognized by the lexer.
+     */
+    enum TokenType {
+        /**Anything enclosed in (), [] or {}, removed from output.*/
+        BRACKET_GROUP,
+        /**x### codec tag such as x264 or x265, removed from output.*/
+        CODEC,
+        /**###p or ####p resolution tag such as 720p, removed from output.*/
+        RESOLUTION,
+        /**Number prefixed with '#', removed from output.*/
+        HASH_NUMBER,
+        /**One of "._;,!&" and any following whitespace, output as a space.*/
+        SEPARATOR,
+        /**Run of whitespace, output as is.*/
+        SPACE,
+        /**Single '-', output as is unless surrounded by whitespace.*/
+        DASH,
+        /**Run of digits.*/
+        DIGITS,
+        /**Run of any other characters.*/
+        WORD
+    }
+
+    /**Initial capacity of the token arrays.*/
+    private static final int DEFAULT_CAPACITY = 32;
+
+    /**Filename with every bracket group removed; offsets of all
+     * non bracket tokens point into this buffer.*/
+    private final char[] buffer;
+    /**Number of valid chars in buffer.*/
+    private int length = 0;
+    /**Type of each token.*/
+    private TokenType[] types = new TokenType[DEFAULT_CAPACITY];
+    /**Start offset of each token, inclusive.*/
+    private int[] starts = new int[DEFAULT_CAPACITY];
+    /**End offset of each token, exclusive.*/
+    private int[] ends = new int[DEFAULT_CAPACITY];
+    /**Number of tokens found.*/
+    private int count = 0;
+    /**Buffer offset of each bracket group removed from the filename.*/
+    private int[] bracketOffsets = new int[DEFAULT_CAPACITY];
+    /**Number of bracket groups removed from the filename.*/
+    private int bracketCount = 0;
+
+    /**
+     * Tokenize the given filename. The filename should already have
+     * its file extension removed.
+     * @param filename to be tokenized.
+     */
+    FilenameTokenizer(String filename) {
+        buffer = new char[filename.length()];
+        lex(filename);
+    }
+
+    /**
+     * Retrieve the number of tokens found in the filename.
+     * @return number of tokens.
+     */
+    int getTokenCount() {
+        return count;
+    }
+
+    /**
+     * Retrieve the type of the token at the given index.
+     * @param index of the token.
+     * @return type of the token.
+     */
+    TokenType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Retrieve the text of the token at the given index.
+     * Bracket groups are not retained and report an empty string.
+     * @param index of the token.
+     * @return text of the token.
+     */
+    String getText(int index) {
+        if(types[index] == TokenType.BRACKET_GROUP){
+            return "";
+        }
+        return new String(buffer, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Render the cleaned filename from the token stream.
+     * Bracket groups, codec, resolution and '#' number tags are dropped,
+     * separators become a single space, a dash surrounded by whitespace
+     * collapses with that whitespace into a single space and smart quotes
+     * become plain quotes.
+     * @return cleaned filename.
+     */
+    String render() {
+        StringBuilder out = new StringBuilder(length);
+        /*Output index where the current run of whitespace started, -1 if
+        * the output does not currently end in whitespace.*/
+        int spaceStart = -1;
+        for(int i = 0; i < count; i++){
+            switch(types[i]){
+                case BRACKET_GROUP:
+                    //removed before any other stage, never splits whitespace
+                    break;
+                case CODEC:
+                case RESOLUTION:
+                case HASH_NUMBER:
+                    spaceStart = -1;
+                    break;
+                case SEPARATOR:
+                    if(spaceStart < 0){
+                        spaceStart = out.length();
+                    }
+                    out.append(' ');
+                    break;
+                case SPACE:
+                    if(spaceStart < 0){
+                        spaceStart = out.length();
+                    }
+                    out.append(buffer, starts[i], ends[i] - starts[i]);
+                    break;
+                case DASH:
+                    if(spaceStart >= 0 && isWhitespaceToken(i + 1)){
+                        //collapse " - " and all surrounding whitespace to a single space
+                        out.setLength(spaceStart);
+                        out.append(' ');
+                        while(isWhitespaceToken(i + 1)){
+                            i++;
+                        }
+                    } else {
+                        out.append('-');
+                    }
+                    spaceStart = -1;
+                    break;
+                case WORD:
+                    for(int j = starts[i]; j < ends[i]; j++){
+                        char c = buffer[j];
+                        out.append(c == '`' ? '\'' : c);
+                    }
+                    spaceStart = -1;
+                    break;
+                default:
+                    out.append(buffer, starts[i], ends[i] - starts[i]);
+                    spaceStart = -1;
+                    break;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Scan the filename and record every token.
+     * @param filename to be scanned.
+     */
+    private void lex(String filename) {
+        int rawLength = filename.length();
+        /*Elide every bracket group into the buffer first; the lexing
+        * below must see the characters on either side of a group as
+        * adjacent.*/
+        for(int i = 0; i < rawLength; i++){
+            char c = filename.charAt(i);
+            char closer = closingBracket(c);
+            if(closer != 0){
+                int close = filename.indexOf(closer, i + 1);
+                if(close >= 0){
+                    if(bracketCount == bracketOffsets.length){
+                        int[] newOffsets = new int[bracketCount * 2];
+                        System.arraycopy(bracketOffsets, 0, newOffsets, 0, bracketCount);
+                        bracketOffsets = newOffsets;
+                    }
+                    bracketOffsets[bracketCount++] = length;
+                    i = close;
+                    continue;
+                }
+            }
+            buffer[length++] = c;
+        }
+
+        int i = 0;
+        int nextBracket = 0;
+        while(i < length){
+            //keep bracket groups in stream order
+            while(nextBracket < bracketCount && bracketOffsets[nextBracket] <= i){
+                add(TokenType.BRACKET_GROUP, i, i);
+                nextBracket++;
+            }
+            char c = buffer[i];
+            int end;
+            if(isSeparator(c)){
+                end = skipWhitespace(i + 1);
+                add(TokenType.SEPARATOR, i, end);
+            } else if(isWhitespace(c)){
+                end = skipWhitespace(i + 1);
+                add(TokenType.SPACE, i, end);
+            } else if(c == '-'){
+                end = i + 1;
+                add(TokenType.DASH, i, end);
+            } else if(c == '#'){
+                int digitsEnd = skipDigits(i + 1);
+                end = digitsEnd;
+                //a trailing resolution tag is removed along with the '#' number
+                if(isResolution(i + 1, digitsEnd)){
+                    end++;
+                }
+                add(TokenType.HASH_NUMBER, i, end);
+            } else if(isCodec(i)){
+                end = i + 4;
+                add(TokenType.CODEC, i, end);
+            } else if(isDigit(c)){
+                end = skipDigits(i + 1);
+                if(isResolution(i, end)){
+                    int resolutionStart = end - Math.min(4, end - i);
+                    if(resolutionStart > i){
+                        add(TokenType.DIGITS, i, resolutionStart);
+                    }
+                    add(TokenType.RESOLUTION, resolutionStart, end + 1);
+                    end++;
+                } else {
+                    add(TokenType.DIGITS, i, end);
+                }
+            } else {
+                end = i + 1;
+                while(end < length && isWordChar(end)){
+                    end++;
+                }
+                add(TokenType.WORD, i, end);
+            }
+            i = end;
+        }
+        while(nextBracket < bracketCount){
+            add(TokenType.BRACKET_GROUP, length, length);
+            nextBracket++;
+        }
+    }
+
+    /**
+     * Record a new token, growing the token arrays as needed.
+     * @param type of the token.
+     * @param start offset of the token, inclusive.
+     * @param end offset of the token, exclusive.
+     */
+    private void add(TokenType type, int start, int end) {
+        if(count == types.length){
+            int capacity = count * 2;
+            TokenType[] newTypes = new TokenType[capacity];
+            int[] newStarts = new int[capacity];
+            int[] newEnds = new int[capacity];
+            System.arraycopy(types, 0, newTypes, 0, count);
+            System.arraycopy(starts, 0, newStarts, 0, count);
+            System.arraycopy(ends, 0, newEnds, 0, count);
+            types = newTypes;
+            starts = newStarts;
+            ends = newEnds;
+        }
+        types[count] = type;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Determine if the token at the given index renders as whitespace.
+     * Bracket groups are transparent as they are removed before any
+     * whitespace is considered.
+     * @param index of the token.
+     * @return true if separator or space token.
+     */
+    private boolean isWhitespaceToken(int index) {
+        while(index < count && types[index] == TokenType.BRACKET_GROUP){
+            index++;
+        }
+        return index < count && (types[index] == TokenType.SEPARATOR || types[index] == TokenType.SPACE);
+    }
+
+    /**
+     * Determine if the char at the given offset continues a word token.
+     * @param index of the char in the buffer.
+     * @return true if the char belongs to the current word.
+     */
+    private boolean isWordChar(int index) {
+        char c = buffer[index];
+        return !isSeparator(c) && !isWhitespace(c) && !isDigit(c) &&
+                c != '-' && c != '#' && !isCodec(index);
+    }
+
+    /**
+     * Determine if an x### codec tag starts at the given offset.
+     * @param index of the char in the buffer.
+     * @return true if codec tag.
+     */
+    private boolean isCodec(int index) {
+        return buffer[index] == 'x' && index + 3 < length &&
+                isDigit(buffer[index + 1]) && isDigit(buffer[index + 2]) && isDigit(buffer[index + 3]);
+    }
+
+    /**
+     * Determine if the digit run between the given offsets ends in a
+     * ###p or ####p resolution tag.
+     * @param start of the digit run, inclusive.
+     * @param end of the digit run, exclusive.
+     * @return true if resolution tag.
+     */
+    private boolean isResolution(int start, int end) {
+        return end - start >= 3 && end < length && buffer[end] == 'p';
+    }
+
+    /**
+     * Advance past a run of whitespace.
+     * @param index to start at.
+     * @return offset of the first non whitespace char.
+     */
+    private int skipWhitespace(int index) {
+        while(index < length && isWhitespace(buffer[index])){
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Advance past a run of digits.
+     * @param index to start at.
+     * @return offset of the first non digit char.
+     */
+    private int skipDigits(int index) {
+        while(index < length && isDigit(buffer[index])){
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Retrieve the closing bracket for the given opening bracket.
+     * @param c possible opening bracket.
+     * @return closing bracket, or 0 if c is not an opening bracket.
+     */
+    private static char closingBracket(char c) {
+        switch(c){
+            case '(':
+                return ')';
+            case '[':
+                return ']';
+            case '{':
+                return '}';
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Determine if the char separates words in a filename.
+     * @param c to check.
+     * @return true if one of "._;,!&".
+     */
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == '_' || c == ';' || c == ',' || c == '!' || c == '&';
+    }
+
+    /**
+     * Whitespace as defined by the regex class \s.
+     * @param c to check.
+     * @return true if whitespace.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Digit as defined by the regex class \d.
+     * @param c to check.
+     * @return true if digit 0-9.
+     */
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,195 @@
+package rename;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a fixed list of keywords.
+ * Keywords are case folded when compiled and text is case folded as it
+ * is scanned, so a single pass over the text reports every case
+ * insensitive occurrence of every keyword. Callers verify each
+ * occurrence with a {@link Filter} when case matters.
+ */
+final class KeywordAutomaton {
+
+    /**
+     * Decides if an occurrence of a keyword in the scanned text counts
+     * as a match.
+     */
+    interface Filter {
+        /**
+         * @param keyword index of the keyword that occurs.
+         * @param start offset of the occurrence in the scanned text.
+         * @return true if the occurrence is a match.
+         */
+        boolean accept(int keyword, int start);
+    }
+
+    /**Transition labels of each state, sorted ascending.*/
+    private final char[][] labels;
+    /**Transition targets of each state, parallel to labels.*/
+    private final int[][] targets;
+    /**Failure link of each state.*/
+    private final int[] failure;
+    /**Nearest state on the failure chain that ends a keyword, -1 if none.*/
+    private final int[] dictionary;
+    /**Keywords ending at each state.*/
+    private final int[][] outputs;
+    /**Length of each keyword.*/
+    private final int[] lengths;
+
+    /**
+     * Compile the automaton for the given keywords. Empty keywords are
+     * never reported.
+     * @param keywords to be matched, a keyword is identified by its index.
+     */
+    KeywordAutomaton(List<String> keywords) {
+        List<StringBuilder> stateLabels = new ArrayList<>();
+        List<List<Integer>> stateTargets = new ArrayList<>();
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        stateLabels.add(new StringBuilder());
+        stateTargets.add(new ArrayList<>());
+        stateOutputs.add(new ArrayList<>());
+        lengths = new int[keywords.size()];
+
+        /*Build the trie of all case folded keywords.*/
+        for(int k = 0; k < keywords.size(); k++){
+            String keyword = keywords.get(k);
+            lengths[k] = keyword.length();
+            if(keyword.isEmpty()){
+                continue;
+            }
+            int state = 0;
+            for(int i = 0; i < keyword.length(); i++){
+                char c = fold(keyword.charAt(i));
+                int index = stateLabels.get(state).indexOf(String.valueOf(c));
+                if(index >= 0){
+                    state = stateTargets.get(state).get(index);
+                } else {
+                    int next = stateLabels.size();
+                    stateLabels.add(new StringBuilder());
+                    stateTargets.add(new ArrayList<>());
+                    stateOutputs.add(new ArrayList<>());
+                    stateLabels.get(state).append(c);
+                    stateTargets.get(state).add(next);
+                    state = next;
+                }
+            }
+            stateOutputs.get(state).add(k);
+        }
+
+        int states = stateLabels.size();
+        labels = new char[states][];
+        targets = new int[states][];
+        outputs = new int[states][];
+        for(int s = 0; s < states; s++){
+            sortTransitions(s, stateLabels.get(s), stateTargets.get(s));
+            List<Integer> out = stateOutputs.get(s);
+            outputs[s] = new int[out.size()];
+            for(int i = 0; i < out.size(); i++){
+                outputs[s][i] = out.get(i);
+            }
+        }
+
+        /*Breadth first assignment of failure and dictionary links.*/
+        failure = new int[states];
+        dictionary = new int[states];
+        Arrays.fill(dictionary, -1);
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for(int target : targets[0]){
+            queue[tail++] = target;
+        }
+        while(head < tail){
+            int state = queue[head++];
+            for(int i = 0; i < labels[state].length; i++){
+                char c = labels[state][i];
+                int child = targets[state][i];
+                int fail = failure[state];
+                while(fail != 0 && transition(fail, c) < 0){
+                    fail = failure[fail];
+                }
+                int next = transition(fail, c);
+                failure[child] = next < 0 ? 0 : next;
+                int link = failure[child];
+                dictionary[child] = outputs[link].length > 0 ? link : dictionary[link];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Scan the text once and find the lowest keyword index greater than
+     * the given index that occurs in the text and is accepted by the filter.
+     * @param text to be scanned.
+     * @param after only keywords with a greater index are considered.
+     * @param filter to verify each occurrence.
+     * @return lowest matching keyword index, -1 if none.
+     */
+    int firstMatch(String text, int after, Filter filter) {
+        int best = -1;
+        int state = 0;
+        for(int i = 0; i < text.length(); i++){
+            char c = fold(text.charAt(i));
+            int next = transition(state, c);
+            while(next < 0 && state != 0){
+                state = failure[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            for(int s = outputs[state].length > 0 ? state : dictionary[state]; s >= 0; s = dictionary[s]){
+                for(int keyword : outputs[s]){
+                    if(keyword > after && (best < 0 || keyword < best) &&
+                            filter.accept(keyword, i + 1 - lengths[keyword])){
+                        best = keyword;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Follow the transition for the given char.
+     * @param state to transition from.
+     * @param c case folded char.
+     * @return next state, -1 if there is no transition.
+     */
+    private int transition(int state, char c) {
+        int index = Arrays.binarySearch(labels[state], c);
+        return index < 0 ? -1 : targets[state][index];
+    }
+
+    /**
+     * Store the transitions of a state sorted by label.
+     * @param state to store transitions for.
+     * @param stateLabels labels in insertion order.
+     * @param stateTargets targets in insertion order.
+     */
+    private void sortTransitions(int state, StringBuilder stateLabels, List<Integer> stateTargets) {
+        int size = stateLabels.length();
+        Integer[] order = new Integer[size];
+        for(int i = 0; i < size; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Character.compare(stateLabels.charAt(a), stateLabels.charAt(b)));
+        labels[state] = new char[size];
+        targets[state] = new int[size];
+        for(int i = 0; i < size; i++){
+            labels[state][i] = stateLabels.charAt(order[i]);
+            targets[state][i] = stateTargets.get(order[i]);
+        }
+    }
+
+    /**
+     * Case fold a char the same way {@link String#equalsIgnoreCase(String)}
+     * compares chars.
+     * @param c to fold.
+     * @return folded char.
+     */
+    static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
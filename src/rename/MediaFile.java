@@ -3,28 +3,62 @@ package rename;
 import constants.Constants;
 import utilities.Utilities;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Representation of a media file.
+ * Season, episode and year are stored as numbers and the formatted
+ * filename is built once, then kept until one of the parsed fields changes.
+ * The filename is laid out by {@link Constants#DEFAULT_MEDIA_NAME}.
  */
 public class MediaFile {
+    /**Width of a number that has not been assigned.*/
+    private static final byte NO_NUMBER = 0;
+    /**Width of a number that could not be parsed.*/
+    private static final byte INVALID_NUMBER = -1;
+    /**Year of a movie whose filename has no year.*/
+    private static final short MOVIE_WITHOUT_YEAR = 0;
+    /**Year that has not been assigned.*/
+    private static final short NO_YEAR = -1;
+    /**Placeholder for the year in the movie layout.*/
+    private static final String YEAR = "YEAR";
+    /**Placeholders of a layout, by which the fields are found in it.*/
+    private static final String[] PLACEHOLDERS = {Constants.MEDIA_NAME, Constants.XX, Constants.YYY,
+            Constants.FILE_EXT, YEAR};
+    /**Layout of an episode, literal text at even and placeholders at odd indexes.*/
+    private static final String[] EPISODE_LAYOUT = layout(Constants.DEFAULT_MEDIA_NAME);
+    /**Layout of a movie with a year, the season and episode of the episode layout replaced by the year.*/
+    private static final String[] MOVIE_LAYOUT = layout(Constants.DEFAULT_MEDIA_NAME.replace(
+            "S" + Constants.XX + "E" + Constants.YYY, YEAR));
+
     /**Original filename of this media file.*/
     private final String originalFileName;
     /**Parsed media name of this media file.*/
     private String mediaName = null;
     /**Parsed episode number of this media file.*/
-    private String episodeNumber = null;
+    private int episodeNumber = 0;
+    /**Formatted width of the episode number, NO_NUMBER if not assigned.*/
+    private byte episodeWidth = NO_NUMBER;
     /**Parsed season number of this media file.*/
-    private String seasonNumber = null;
+    private int seasonNumber = 0;
+    /**Formatted width of the season number, NO_NUMBER if not assigned.*/
+    private byte seasonWidth = NO_NUMBER;
     /**Parsed fileExt of this media file.*/
     private String fileExt = null;
     /**Parsed year for this media file. Only used in movie cases.*/
-    private String year = null;
+    private short year = NO_YEAR;
     /**Media type of this mediaFile.*/
     private String mediaType = null;
     /**Location to copy this media file to.*/
     private String copyLocation = null;
     /**Num times renamed.*/
     private int renames = 0;
+    /**Confidence in the parsed fields.*/
+    private ParseConfidence confidence = ParseConfidence.LOW;
+    /**Formatted output with media type, null if not built since a field
+     * changed or if no output can be built.*/
+    private String formattedString = null;
 
     /**
      * Create a new MediaFile object with the original
@@ -41,6 +75,7 @@ public class MediaFile {
      */
     public void setMediaName(String mediaName) {
         this.mediaName = mediaName;
+        formattedString = null;
     }
 
     /**
@@ -48,7 +83,18 @@ public class MediaFile {
      * @param episodeNumber to be assigned to this media file.
      */
     public void setEpisodeNumber(String episodeNumber) {
-        this.episodeNumber = episodeNumber;
+        this.episodeWidth = NO_NUMBER;
+        this.episodeNumber = 0;
+        if(episodeNumber != null){
+            //three digit episode numbers keep three digits, all others are formatted as two
+            this.episodeWidth = (byte) (episodeNumber.length() == 3 ? 3 : 2);
+            try{
+                this.episodeNumber = Integer.parseInt(episodeNumber);
+            } catch (NumberFormatException e){
+                this.episodeWidth = INVALID_NUMBER;
+            }
+        }
+        formattedString = null;
     }
 
     /**
@@ -56,7 +102,17 @@ public class MediaFile {
      * @param seasonNumber to be assigned to this media file.
      */
     public void setSeasonNumber(String seasonNumber) {
-        this.seasonNumber = seasonNumber;
+        this.seasonWidth = NO_NUMBER;
+        this.seasonNumber = 0;
+        if(seasonNumber != null){
+            this.seasonWidth = 2;
+            try{
+                this.seasonNumber = Integer.parseInt(seasonNumber);
+            } catch (NumberFormatException e){
+                this.seasonWidth = INVALID_NUMBER;
+            }
+        }
+        formattedString = null;
     }
 
     /**
@@ -65,14 +121,23 @@ public class MediaFile {
      */
     public void setFileExt(String fileExt) {
         this.fileExt = fileExt;
+        formattedString = null;
     }
 
     /**
      * Assign new value to this media file's year.
-     * @param year to be assigned to this media file.
+     * An empty year marks a movie whose filename has no year.
+     * @param year to be assigned to this media file, four digits, empty or null.
      */
     void setYear(String year) {
-        this.year = year;
+        if(year == null){
+            this.year = NO_YEAR;
+        } else if(year.isEmpty()){
+            this.year = MOVIE_WITHOUT_YEAR;
+        } else {
+            this.year = Short.parseShort(year);
+        }
+        formattedString = null;
     }
 
     /**
@@ -81,6 +146,7 @@ public class MediaFile {
      */
     public void setMediaType(String mediaType) {
         this.mediaType = mediaType;
+        formattedString = null;
     }
     /**
      * Retrieve this media file's original filename.
@@ -105,15 +171,22 @@ public class MediaFile {
      * @return formatted episode number for this media file.
      */
     String getEpisodeNumber() {
-        if(episodeNumber == null){
+        if(episodeWidth == NO_NUMBER){
             return null;
         }
-        switch(episodeNumber.length()){
-            case 3:
-                return String.format("%3d", Integer.parseInt(episodeNumber)).replace(" ","0");
-            default:
-                return String.format("%2d", Integer.parseInt(episodeNumber)).replace(" ","0");
+        return formatNumber(getEpisodeNumberValue(), episodeWidth);
+    }
+
+    /**
+     * Retrieve this media file's episode number as a number.
+     * @return episode number, 0 if not assigned.
+     * @throws NumberFormatException if the assigned episode number is not a number.
+     */
+    int getEpisodeNumberValue() {
+        if(episodeWidth == INVALID_NUMBER){
+            throw new NumberFormatException("Invalid episode number of " + originalFileName);
         }
+        return episodeNumber;
     }
 
     /**
@@ -123,10 +196,22 @@ public class MediaFile {
      * @return formatted season number for this media file.
      */
     public String getSeasonNumber() {
-        if(seasonNumber == null){
+        if(seasonWidth == NO_NUMBER){
             return null;
         }
-        return String.format("%2d", Integer.parseInt(seasonNumber)).replace(" ","0");
+        return formatNumber(getSeasonNumberValue(), seasonWidth);
+    }
+
+    /**
+     * Retrieve this media file's season number as a number.
+     * @return season number, 0 if not assigned.
+     * @throws NumberFormatException if the assigned season number is not a number.
+     */
+    int getSeasonNumberValue() {
+        if(seasonWidth == INVALID_NUMBER){
+            throw new NumberFormatException("Invalid season number of " + originalFileName);
+        }
+        return seasonNumber;
     }
 
     /**
@@ -142,7 +227,13 @@ public class MediaFile {
      * @return the parsed year of this media file.
      */
     String getYear() {
-        return year;
+        if(year == NO_YEAR){
+            return null;
+        }
+        if(year == MOVIE_WITHOUT_YEAR){
+            return "";
+        }
+        return Short.toString(year);
     }
 
     /**
@@ -180,13 +271,16 @@ public class MediaFile {
      */
     @Override
     public String toString() {
-        String preBuiltMedia = toOriginalString();
-        if(getMediaType() != null){
-            String path = Utilities.removeFilenameFromPath(preBuiltMedia);
-            String filename = Utilities.parseFilenameFromPath(preBuiltMedia);
-            preBuiltMedia = path+getMediaType()+"\\"+filename;
+        if(formattedString == null){
+            String preBuiltMedia = toOriginalString();
+            if(preBuiltMedia != null && mediaType != null){
+                String path = Utilities.removeFilenameFromPath(preBuiltMedia);
+                String filename = Utilities.parseFilenameFromPath(preBuiltMedia);
+                preBuiltMedia = path + mediaType + "\\" + filename;
+            }
+            formattedString = preBuiltMedia;
         }
-        return preBuiltMedia;
+        return formattedString;
     }
 
     /**
@@ -195,26 +289,110 @@ public class MediaFile {
      * @return null or formatted output.
      */
     public String toOriginalString(){
-        String preBuiltMedia = null;
-        if(getMediaName() != null && getSeasonNumber() != null && getEpisodeNumber() != null && getFileExt() != null && getYear() == null){
-            preBuiltMedia = Constants.DEFAULT_MEDIA_NAME;
-            preBuiltMedia = preBuiltMedia.replace(Constants.MEDIA_NAME, getMediaName());
-            preBuiltMedia = preBuiltMedia.replace(Constants.XX, getSeasonNumber());
-            preBuiltMedia = preBuiltMedia.replace(Constants.YYY, getEpisodeNumber());
-            preBuiltMedia = preBuiltMedia.replace(Constants.FILE_EXT, getFileExt());
-        }
-        if(getMediaName() != null && getFileExt() != null && getYear() != null){
+        if(mediaName == null || fileExt == null){
+            return null;
+        }
+        if(year == MOVIE_WITHOUT_YEAR){
             //if year is empty string, build media name ourselves.
-            if(getYear().equals("")){
-                preBuiltMedia = getMediaName()+"."+getFileExt();
+            return mediaName + "." + fileExt;
+        }
+        if(year != NO_YEAR){
+            return format(MOVIE_LAYOUT);
+        }
+        if(seasonWidth != NO_NUMBER && episodeWidth != NO_NUMBER){
+            return format(EPISODE_LAYOUT);
+        }
+        return null;
+    }
+
+    /**
+     * Build the formatted output from a layout. Fields are filled in
+     * as they are, so a field holding placeholder text is kept as is.
+     * @param layout of the output, see {@link #layout(String)}.
+     * @return formatted output.
+     */
+    private String format(String[] layout){
+        StringBuilder builder = new StringBuilder(mediaName.length() + 16);
+        for(int i = 0; i < layout.length; i++){
+            if(i % 2 == 0){
+                builder.append(layout[i]);
+            } else if(Constants.MEDIA_NAME.equals(layout[i])){
+                builder.append(mediaName);
+            } else if(Constants.XX.equals(layout[i])){
+                builder.append(getSeasonNumber());
+            } else if(Constants.YYY.equals(layout[i])){
+                builder.append(getEpisodeNumber());
+            } else if(Constants.FILE_EXT.equals(layout[i])){
+                builder.append(fileExt);
             } else {
-                preBuiltMedia = Constants.DEFAULT_MEDIA_NAME;
-                preBuiltMedia = preBuiltMedia.replace(Constants.MEDIA_NAME, getMediaName());
-                preBuiltMedia = preBuiltMedia.replace("S" + Constants.XX + "E" + Constants.YYY, getYear());
-                preBuiltMedia = preBuiltMedia.replace(Constants.FILE_EXT, getFileExt());
+                builder.append(year);
             }
         }
-        return preBuiltMedia;
+        return builder.toString();
+    }
+
+    /**
+     * Split a media name format into its literal text and placeholders.
+     * @param format to split, such as {@link Constants#DEFAULT_MEDIA_NAME}.
+     * @return literal text at even and placeholders at odd indexes.
+     */
+    private static String[] layout(String format){
+        List<String> layout = new ArrayList<>();
+        int literalStart = 0;
+        int i = 0;
+        while(i < format.length()){
+            String placeholder = null;
+            for(String candidate : PLACEHOLDERS){
+                if(format.startsWith(candidate, i)){
+                    placeholder = candidate;
+                    break;
+                }
+            }
+            if(placeholder == null){
+                i++;
+                continue;
+            }
+            layout.add(format.substring(literalStart, i));
+            layout.add(placeholder);
+            i += placeholder.length();
+            literalStart = i;
+        }
+        layout.add(format.substring(literalStart));
+        return layout.toArray(new String[layout.size()]);
+    }
+
+    /**
+     * Format a number left padded with zeros to the given width.
+     * @param number to format.
+     * @param width minimum number of chars.
+     * @return formatted number.
+     */
+    private static String formatNumber(int number, int width){
+        String digits = Integer.toString(number);
+        if(digits.length() >= width){
+            return digits;
+        }
+        StringBuilder padded = new StringBuilder(width);
+        for(int i = digits.length(); i < width; i++){
+            padded.append('0');
+        }
+        return padded.append(digits).toString();
+    }
+
+    /**
+     * Assign the confidence in the parsed fields of this media file.
+     * @param confidence of the heuristic that parsed the fields.
+     */
+    void setConfidence(ParseConfidence confidence) {
+        this.confidence = confidence;
+    }
+
+    /**
+     * Retrieve the confidence in the parsed fields of this media file.
+     * @return confidence, LOW if never renamed.
+     */
+    public ParseConfidence getConfidence() {
+        return confidence;
     }
 
     /**
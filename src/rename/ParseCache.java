@@ -0,0 +1,313 @@
+package rename;
+
+import utilities.AppendOnlyLog;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On disk cache of rename results.
+ * Maps the original filename of a media file, along with a hash of the
+ * rules it was renamed with, to the fields the rename algorithm parsed:
+ * media name, season number, episode number, year, file ext and the
+ * confidence in them.
+ * Files that could not be renamed are cached as well so they are not
+ * parsed again on the next run.
+ * The cache file is an {@link AppendOnlyLog}, read the first time it is
+ * needed. Entries renamed with other rules or replaced by a later entry
+ * are dropped when the file is compacted, every other entry is kept.
+ */
+public final class ParseCache {
+    /**Separates the fields of a cache entry.*/
+    private static final char FIELD_SEPARATOR = '\t';
+    /**Escape char for field values.*/
+    private static final char ESCAPE = '\\';
+    /**Encoded value of a null field.*/
+    private static final String NULL_FIELD = "\\0";
+    /**Number of fields in a cache entry.*/
+    private static final int FIELD_COUNT = 9;
+
+    /**
+     * Parsed fields of a single media file.
+     */
+    private static final class Entry {
+        private final String mediaName;
+        private final String seasonNumber;
+        private final String episodeNumber;
+        private final String year;
+        private final String fileExt;
+        private final ParseConfidence confidence;
+
+        private Entry(String mediaName, String seasonNumber, String episodeNumber, String year, String fileExt,
+                      ParseConfidence confidence) {
+            this.mediaName = mediaName;
+            this.seasonNumber = seasonNumber;
+            this.episodeNumber = episodeNumber;
+            this.year = year;
+            this.fileExt = fileExt;
+            this.confidence = confidence;
+        }
+    }
+
+    /**Cached entries of the current rules keyed by renames flag and original filename.*/
+    private final AppendOnlyLog<Entry> log;
+    /**Rules version the loaded entries belong to, null until loaded.*/
+    private volatile String loadedVersion = null;
+
+    /**
+     * Create a new parse cache backed by the given file.
+     * The file is not read until the cache is first used.
+     * @param cacheFile path of the cache file, created if it does not exist.
+     */
+    public ParseCache(String cacheFile) {
+        this.log = new AppendOnlyLog<>(cacheFile, (key, entry) -> encode(loadedVersion, key, entry));
+    }
+
+    /**
+     * Assign the cached rename result to the given media file.
+     * @param ruleVersion hash of the rules the media file is renamed with.
+     * @param mediaFile to be assigned the cached result.
+     * @return true if the result was cached, false otherwise.
+     */
+    boolean restore(String ruleVersion, MediaFile mediaFile) {
+        if(!load(ruleVersion)){
+            return false;
+        }
+        String key = key(mediaFile);
+        Entry entry = log.get(key);
+        if(entry == null){
+            return false;
+        }
+        mediaFile.setMediaName(entry.mediaName);
+        mediaFile.setSeasonNumber(entry.seasonNumber);
+        mediaFile.setEpisodeNumber(entry.episodeNumber);
+        mediaFile.setYear(entry.year);
+        mediaFile.setFileExt(entry.fileExt);
+        mediaFile.setConfidence(entry.confidence);
+        return true;
+    }
+
+    /**
+     * Store the rename result of the given media file.
+     * @param ruleVersion hash of the rules the media file was renamed with.
+     * @param mediaFile that has been renamed.
+     */
+    void store(String ruleVersion, MediaFile mediaFile) {
+        if(!load(ruleVersion)){
+            return;
+        }
+        Entry entry;
+        try{
+            entry = new Entry(mediaFile.getMediaName(), mediaFile.getSeasonNumber(),
+                    mediaFile.getEpisodeNumber(), mediaFile.getYear(), mediaFile.getFileExt(),
+                    mediaFile.getConfidence());
+        } catch (NumberFormatException e){
+            return; //numbers that cannot be formatted are parsed again next time
+        }
+        log.put(key(mediaFile), entry);
+    }
+
+    /**
+     * Write the entries stored since the last save to the cache file.
+     * If most of the file is made up of entries renamed with other rules
+     * or replaced by a later entry, the file is rewritten with the current
+     * entries of the current rules.
+     */
+    public void save() {
+        log.save(key -> true);
+    }
+
+    /**
+     * Compute the hash identifying a set of rules.
+     * @param rules values that make up the rules, in a fixed order.
+     * @return hex encoded hash.
+     */
+    static String ruleVersion(List<String> rules) {
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for(String rule : rules){
+                digest.update(escape(rule).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) FIELD_SEPARATOR);
+            }
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest.digest()){
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the cache file the first time the cache is used.
+     * Only entries of the given rules version are kept, the last entry
+     * of a media file wins.
+     * @param ruleVersion hash of the current rules.
+     * @return true if the loaded entries belong to the given rules version.
+     */
+    private boolean load(String ruleVersion) {
+        if(loadedVersion == null){
+            synchronized(this){
+                if(loadedVersion == null){
+                    log.load(line -> read(ruleVersion, line));
+                    loadedVersion = ruleVersion;
+                }
+            }
+        }
+        return loadedVersion.equals(ruleVersion);
+    }
+
+    /**
+     * Read a line of the cache file.
+     * @param ruleVersion hash of the current rules.
+     * @param line to read.
+     * @return cache key and entry, null if the line is of other rules or damaged.
+     */
+    private static Map.Entry<String, Entry> read(String ruleVersion, String line) {
+        List<String> fields = decode(line);
+        if(fields.size() != FIELD_COUNT || !ruleVersion.equals(fields.get(0))){
+            return null;
+        }
+        ParseConfidence confidence;
+        try{
+            confidence = ParseConfidence.valueOf(fields.get(7));
+        } catch (IllegalArgumentException | NullPointerException e){
+            return null;
+        }
+        /*A damaged entry is parsed again instead of failing the batch it is restored in.*/
+        if(!isNumber(fields.get(3), false) || !isNumber(fields.get(4), false)
+                || !isNumber(fields.get(5), true)){
+            return null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(fields.get(1), new Entry(fields.get(2), fields.get(3),
+                fields.get(4), fields.get(5), fields.get(6), confidence));
+    }
+
+    /**
+     * Determine if a number field of a cache entry can be assigned to a
+     * media file: season and episode numbers as an int, years as a short.
+     * @param field to check, null if not assigned.
+     * @param year true if the field is a year, which may be empty.
+     * @return true if the field can be assigned, false otherwise.
+     */
+    private static boolean isNumber(String field, boolean year) {
+        if(field == null || (year && field.isEmpty())){
+            return true;
+        }
+        try{
+            if(year){
+                Short.parseShort(field);
+            } else {
+                Integer.parseInt(field);
+            }
+            return true;
+        } catch (NumberFormatException e){
+            return false;
+        }
+    }
+
+    /**
+     * Build the cache key of a media file. Media files that have already
+     * been renamed are parsed differently and are cached separately.
+     * @param mediaFile to build key for.
+     * @return cache key.
+     */
+    private static String key(MediaFile mediaFile) {
+        return (mediaFile.getRenames() > 0 ? "R" : "O") + mediaFile.getOriginalFileName();
+    }
+
+    /**
+     * Encode a cache entry as a single line.
+     * @param ruleVersion hash of the rules the entry was renamed with.
+     * @param key cache key of the entry.
+     * @param entry parsed fields.
+     * @return encoded line.
+     */
+    private static String encode(String ruleVersion, String key, Entry entry) {
+        StringBuilder line = new StringBuilder();
+        String[] fields = {ruleVersion, key, entry.mediaName, entry.seasonNumber,
+                entry.episodeNumber, entry.year, entry.fileExt, entry.confidence.name()};
+        for(String field : fields){
+            line.append(field == null ? NULL_FIELD : escape(field)).append(FIELD_SEPARATOR);
+        }
+        return line.toString();
+    }
+
+    /**
+     * Decode a line written by {@link #encode(String, String, Entry)}.
+     * @param line to decode.
+     * @return decoded fields, the last field is always empty.
+     */
+    private static List<String> decode(String line) {
+        List<String> fields = new ArrayList<>(FIELD_COUNT);
+        StringBuilder field = new StringBuilder();
+        boolean isNull = false;
+        for(int i = 0; i < line.length(); i++){
+            char c = line.charAt(i);
+            if(c == ESCAPE && i + 1 < line.length()){
+                char next = line.charAt(++i);
+                switch(next){
+                    case 't':
+                        field.append('\t');
+                        break;
+                    case 'n':
+                        field.append('\n');
+                        break;
+                    case 'r':
+                        field.append('\r');
+                        break;
+                    case '0':
+                        isNull = true;
+                        break;
+                    default:
+                        field.append(next);
+                        break;
+                }
+            } else if(c == FIELD_SEPARATOR){
+                fields.add(isNull ? null : field.toString());
+                field.setLength(0);
+                isNull = false;
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(isNull ? null : field.toString());
+        return fields;
+    }
+
+    /**
+     * Escape the chars that cannot appear in a field.
+     * @param value to escape.
+     * @return escaped value.
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch(c){
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+                    break;
+            }
+        }
+        return escaped.toString();
+    }
+}
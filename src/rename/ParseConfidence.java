@@ -0,0 +1,15 @@
+package rename;
+
+/**
+ * Confidence of the rename algorithm in the fields it parsed from a
+ * filename, scored by the heuristic that produced them.
+ */
+public enum ParseConfidence {
+    /**Guessed, by a fallback search or from few clues. Worth a review.*/
+    LOW,
+    /**Parsed from digits that could be read more than one way.*/
+    MEDIUM,
+    /**Parsed from explicit markers such as S##E##, a lone episode number,
+     * a single year or a user defined rule.*/
+    HIGH
+}
@@ -1,27 +1,114 @@
 package rename;
 
 import constants.Constants;
+import errorHandle.ErrorHandler;
 import utilities.Utilities;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Media rename core algorithms.
+ * The settings and special cases are snapshot when the rename object is
+ * created and are never modified afterwards, so a single rename object
+ * can be shared by any number of threads.
  */
 public class Rename {
-    /**Map of settings to the actual setting values.*/
-    private HashMap<String, String> settings;
-    /**Map of original media names to preferred media names.*/
-    private HashMap<String, String> specialRenameCases;
-    /**Map of special case episode values.
+    /**Filename that has already been renamed with a two digit episode number.*/
+    private static final Pattern RENAMED_2_DIGIT_EPISODE = Pattern.compile(".+S\\d{2}E\\d{2}\\..{3}");
+    /**Filename that has already been renamed with a three digit episode number.*/
+    private static final Pattern RENAMED_3_DIGIT_EPISODE = Pattern.compile(".+S\\d{2}E\\d{3}\\..{3}");
+    /**Season, episode and file extension at the end of an already renamed filename.*/
+    private static final Pattern RENAMED_SUFFIX = Pattern.compile("S\\d{2}E\\d{2,3}\\..{3}");
+    /**Keywords that relate to the word movie.*/
+    private static final Pattern MOVIE_KEYWORDS = Pattern.compile("Movie|movie|Gekijouban|gekijouban");
+    /**Two or three digit episode number.*/
+    private static final Pattern EPISODE_DIGITS = Pattern.compile("\\d{2,3}");
+    /**Season or episode markers and three or four digit numbers along with
+     * everything that follows them.*/
+    private static final Pattern TRAILING_NUMBERS = Pattern.compile("(((S|E|s|e)\\d{1,2})+|\\d{3,4})[-\\w\\s']+");
+    /**Episode keyword.*/
+    private static final Pattern EPISODE_KEYWORD = Pattern.compile("(Episode|episode)\\s*");
+    /**Keywords that denote a special episode.*/
+    private static final Pattern SPECIAL_KEYWORDS = Pattern.compile("(Special|special|OVA|OAD|ONA)\\s*");
+    /**Anything enclosed in (), [] or {}.*/
+    private static final Pattern BRACKET_GROUPS = Pattern.compile("((\\([^)]*\\))|(\\[[^]]*\\])|(\\{[^}]*\\}))");
+    /**Double space followed by anything.*/
+    private static final Pattern DOUBLE_SPACE_SUFFIX = Pattern.compile("\\s{2}.+");
+
+    /**Default maximum episode count when the user has not specified one.*/
+    private static final int DEFAULT_MAX_EPISODE_COUNT = 999;
+    /**Work budget of a file: maximum number of times a file is parsed again
+     * with a pair of brackets removed.*/
+    private static final int MAX_FALLBACK_PARSES = 8;
+    /**Work budget of a file: maximum number of digit windows searched for a year.*/
+    private static final int MAX_YEAR_WINDOWS = 4096;
+    /**Year search result when no year is found.*/
+    private static final int NO_YEAR = -1;
+    /**Year search result when no year is found but the filename is a movie.*/
+    private static final int MOVIE_WITHOUT_YEAR = -2;
+    /**Version of the rename algorithm and of the fields it parses. Part of
+     * the version of cached results, so it must be raised whenever a change
+     * to the algorithm can parse a filename differently, or results cached
+     * by the older algorithm are used as they were.*/
+    static final int PARSER_VERSION = 2;
+
+    /**
+     * State of a single parse, kept between parsing the numbers of a media
+     * file and completing its media name.
+     */
+    private static final class ParseState {
+        /**Media file being parsed.*/
+        private final MediaFile mediaFile;
+        /**True if the parse finished without a media name to complete.*/
+        private boolean complete = false;
+        /**Filename to parse again when nothing could be found, null if none.*/
+        private String fallbackFileName = null;
+        /**Path of the original filename.*/
+        private String path;
+        /**Filename with everything parsed so far removed.*/
+        private String tempFileName;
+        /**Parsed season number.*/
+        private String seasonNumber;
+
+        private ParseState(MediaFile mediaFile) {
+            this.mediaFile = mediaFile;
+        }
+    }
+
+    /**File types that are not renamed, null if none are excluded.*/
+    private final String excludeFileTypes;
+    /**Maximum episode number to account for when parsing numbers.*/
+    private final int maxEpisodeCount;
+    /**Original media names to preferred media names, compiled for matching.*/
+    private final SpecialRenameRules specialRenameRules;
+    /**Special case episode values, decoded for lookup by media name.
      * Used when show uses different numbering scheme than desired.
      * Example: SHOW S01E26 should be SHOW S02E01.
      * Offset value of 25 should be given and specified in format of
      * S01E25, giving the previous season and final episode of that season.*/
-    private HashMap<String, String> specialEpisodeCases;
+    private final SpecialEpisodeTable specialEpisodeTable;
+    /**Cache of previous rename results, null if not cached.*/
+    private final ParseCache parseCache;
+    /**Hash of the settings and special cases, identifies cached results
+     * renamed with the same rules. Null if not cached.*/
+    private final String ruleVersion;
+    /**User defined filename rules, tried around the built-in algorithm.*/
+    private final FilenameRules filenameRules;
+    /**Counts how often each fallback search fires.*/
+    private final FallbackCounters fallbackCounters = new FallbackCounters();
+    /**Times each stage of the rename algorithm, unless switched off.*/
+    private final StageTimers stageTimers;
+    /**Current year, the latest year a filename can be from.*/
+    private final int currentYear = Calendar.getInstance().get(Calendar.YEAR);
 
     /**
      * Create a new rename object, used for generating new media files to assign
@@ -31,9 +118,85 @@ public class Rename {
      * @param specialEpisodeCases special episode cases that are not as desired.
      */
     public Rename(HashMap<String, String> settings, HashMap<String, String> specialRenameCases, HashMap<String, String> specialEpisodeCases) {
-        this.settings = settings;
-        this.specialRenameCases = specialRenameCases;
-        this.specialEpisodeCases = specialEpisodeCases;
+        this(settings, specialRenameCases, specialEpisodeCases, null);
+    }
+
+    /**
+     * Create a new rename object that reuses the results of previous runs.
+     * @param settings user specified settings for media rename.
+     * @param specialRenameCases special cases for assigning user specified names to determined names.
+     * @param specialEpisodeCases special episode cases that are not as desired.
+     * @param parseCache cache of rename results, null to always rename.
+     */
+    public Rename(HashMap<String, String> settings, HashMap<String, String> specialRenameCases,
+                  HashMap<String, String> specialEpisodeCases, ParseCache parseCache) {
+        this(settings, specialRenameCases, specialEpisodeCases, parseCache, FilenameRules.defaultRules());
+    }
+
+    /**
+     * Create a new rename object with user defined filename rules.
+     * @param settings user specified settings for media rename.
+     * @param specialRenameCases special cases for assigning user specified names to determined names.
+     * @param specialEpisodeCases special episode cases that are not as desired.
+     * @param parseCache cache of rename results, null to always rename.
+     * @param filenameRules user defined filename rules.
+     */
+    public Rename(HashMap<String, String> settings, HashMap<String, String> specialRenameCases,
+                  HashMap<String, String> specialEpisodeCases, ParseCache parseCache, FilenameRules filenameRules) {
+        this.filenameRules = filenameRules;
+        this.stageTimers = new StageTimers(!Constants.FALSE.equals(settings.get(Constants.STAGE_TIMERS)));
+        this.excludeFileTypes = settings.get(Constants.EXCLUDE_FILE_TYPES);
+        this.maxEpisodeCount = parseMaxEpisodeCount(settings.get(Constants.DEFAULT_MAX_EPISODE_COUNT));
+        this.specialRenameRules = new SpecialRenameRules(specialRenameCases);
+        this.specialEpisodeTable = new SpecialEpisodeTable(specialEpisodeCases);
+        this.parseCache = parseCache;
+        if(parseCache != null){
+            List<String> rules = new ArrayList<>();
+            rules.add(Integer.toString(PARSER_VERSION));
+            //the latest year a filename can be from changes what is parsed as a year
+            rules.add(Integer.toString(currentYear));
+            rules.add(String.valueOf(excludeFileTypes));
+            rules.add(Integer.toString(maxEpisodeCount));
+            addRules(rules, specialRenameCases);
+            addRules(rules, specialEpisodeCases);
+            if(!filenameRules.isDefault()){
+                rules.addAll(filenameRules.getRules());
+            }
+            this.ruleVersion = ParseCache.ruleVersion(rules);
+        } else {
+            this.ruleVersion = null;
+        }
+    }
+
+    /**
+     * Rename every media file of the given batch. Media files are renamed
+     * in parallel and the returned list holds the renamed media files in
+     * the iteration order of the batch.
+     * @param mediaFiles to be renamed.
+     * @return renamed media files in input order.
+     */
+    public List<MediaFile> renameAll(Collection<MediaFile> mediaFiles) {
+        List<MediaFile> batch = new ArrayList<>(mediaFiles);
+        batch.parallelStream().forEach(this::rename);
+        return batch;
+    }
+
+    /**
+     * Retrieve how often each fallback search fired for the files renamed
+     * by this rename object.
+     * @return fallback counters.
+     */
+    public FallbackCounters getFallbackCounters() {
+        return fallbackCounters;
+    }
+
+    /**
+     * Retrieve the count and time of each stage of the rename algorithm
+     * for the files renamed by this rename object.
+     * @return stage timers.
+     */
+    public StageTimers getStageTimers() {
+        return stageTimers;
     }
 
     /**
@@ -43,6 +206,209 @@ public class Rename {
      * @param mediaFile to be renamed.
      */
     public void rename(MediaFile mediaFile) {
+        if(parseCache == null){
+            parse(mediaFile, true);
+            return;
+        }
+        if(parseCache.restore(ruleVersion, mediaFile)){
+            return;
+        }
+        parse(mediaFile, true);
+        parseCache.store(ruleVersion, mediaFile);
+    }
+
+    /**
+     * Rename every media file of the given batch, a series at a time.
+     * Media files of the same series, see {@link SeriesBatch}, are renamed
+     * from a template: the first file of the series is parsed in full and
+     * the others take on its media name and season number, only their
+     * episode number is read from the digits that differ between the files.
+     * This keeps the media name the same for every file of a season.
+     * The template is only used if it agrees with a full parse of the last
+     * file of the series, otherwise every file is parsed in full.
+     * Series are renamed in parallel and the returned list holds the
+     * renamed media files in the iteration order of the batch.
+     * @param mediaFiles to be renamed.
+     * @return renamed media files in input order.
+     */
+    public List<MediaFile> renameSeries(Collection<MediaFile> mediaFiles) {
+        List<MediaFile> batch = new ArrayList<>(mediaFiles);
+        List<List<MediaFile>> groups = new ArrayList<>();
+        Map<String, List<MediaFile>> series = new LinkedHashMap<>();
+        for(MediaFile mediaFile : batch){
+            //already renamed files are parsed from their formatted name
+            String key = mediaFile.getRenames() == 0 ? SeriesBatch.seriesKey(mediaFile.getOriginalFileName()) : null;
+            if(key == null){
+                groups.add(Collections.singletonList(mediaFile));
+            } else {
+                series.computeIfAbsent(key, k -> new ArrayList<>()).add(mediaFile);
+            }
+        }
+        groups.addAll(series.values());
+        groups.parallelStream().forEach(this::renameGroup);
+        return batch;
+    }
+
+    /**
+     * Parse the original filename of the given media file and assign
+     * the parsed fields, timing the parse.
+     * @param mediaFile to be renamed.
+     * @param offsetEpisodes true to apply the special episode cases.
+     */
+    private void parse(MediaFile mediaFile, boolean offsetEpisodes) {
+        long start = stageTimers.start();
+        parseWithRules(mediaFile, offsetEpisodes);
+        stageTimers.stop(StageTimers.Stage.PARSE, start);
+    }
+
+    /**
+     * Parse the original filename of the given media file and assign
+     * the parsed fields, using the user defined filename rules.
+     * Rules before the built-in algorithm are tried first, then the
+     * built-in algorithm and, if it found nothing or is not confident in
+     * what it found, the rules after it. A rule that matches is taken over
+     * a result of the built-in algorithm that is not confident.
+     * Already renamed media files are always parsed by the built-in
+     * algorithm, which recognizes its own output.
+     * @param mediaFile to be renamed.
+     * @param offsetEpisodes true to apply the special episode cases.
+     */
+    private void parseWithRules(MediaFile mediaFile, boolean offsetEpisodes) {
+        if(filenameRules.isDefault() || mediaFile.getRenames() > 0){
+            parseBuiltin(mediaFile, offsetEpisodes);
+            return;
+        }
+        String originalFileName = mediaFile.getOriginalFileName();
+        String filename = Utilities.parseFilenameFromPath(originalFileName);
+        String path = originalFileName.substring(0, originalFileName.length() - filename.length());
+        filename = filename.trim();
+        String fileExt = getFileExt(filename);
+        if(excludeFileTypes != null && fileExt != null && excludeFileTypes.contains(fileExt)){
+            mediaFile.setFileExt(fileExt);
+            return;
+        }
+        String name = fileExt == null ? filename : filename.substring(0, filename.length() - fileExt.length() - 1);
+        String withoutTags = filenameRules.dropTags(name);
+        if(applyRule(mediaFile, filenameRules.matchBeforeBuiltin(withoutTags.trim()), fileExt, offsetEpisodes)){
+            return;
+        }
+        if(!filenameRules.usesBuiltin()){
+            return;
+        }
+        if(withoutTags.equals(name)){
+            parseBuiltin(mediaFile, offsetEpisodes);
+        } else {
+            /*Parse the filename without tags, keeping the original filename
+            * of the media file for renaming purposes.*/
+            MediaFile tagsDropped = new MediaFile(path + withoutTags + (fileExt == null ? "" : "." + fileExt));
+            parseBuiltin(tagsDropped, offsetEpisodes);
+            mediaFile.setFileExt(tagsDropped.getFileExt());
+            mediaFile.setMediaName(tagsDropped.getMediaName());
+            mediaFile.setSeasonNumber(tagsDropped.getSeasonNumber());
+            mediaFile.setEpisodeNumber(tagsDropped.getEpisodeNumber());
+            mediaFile.setYear(tagsDropped.getYear());
+            mediaFile.setConfidence(tagsDropped.getConfidence());
+        }
+        if(mediaFile.toString() == null || mediaFile.getConfidence() != ParseConfidence.HIGH){
+            applyRule(mediaFile, filenameRules.matchAfterBuiltin(withoutTags.trim()), fileExt, offsetEpisodes);
+        }
+    }
+
+    /**
+     * Assign the fields matched by a filename rule to a media file.
+     * The media name is exchanged with the special rename cases as the
+     * built-in algorithm does.
+     * @param mediaFile to be renamed.
+     * @param match fields matched by a rule, null if no rule matched.
+     * @param fileExt of the media file.
+     * @param offsetEpisodes true to apply the special episode cases.
+     * @return true if a rule matched.
+     */
+    private boolean applyRule(MediaFile mediaFile, FilenameRules.Match match, String fileExt, boolean offsetEpisodes) {
+        if(match == null || fileExt == null){
+            return false;
+        }
+        String path = Utilities.removeFilenameFromPath(mediaFile.getOriginalFileName()).trim();
+        mediaFile.setFileExt(fileExt);
+        mediaFile.setMediaName(path + match.title);
+        mediaFile.setYear(match.year);
+        mediaFile.setEpisodeNumber(match.episodeNumber);
+        mediaFile.setSeasonNumber(match.episodeNumber == null ? null :
+                (match.seasonNumber == null ? "01" : match.seasonNumber));
+        mediaFile.setConfidence(ParseConfidence.HIGH);
+        exchangeFileName(mediaFile);
+        if(offsetEpisodes && match.episodeNumber != null){
+            verifyEpisodeNumber(mediaFile);
+        }
+        return true;
+    }
+
+    /**
+     * Parse the original filename of the given media file with the
+     * built-in algorithm and assign the parsed fields.
+     * If neither an episode number nor a year can be found, the filename
+     * is parsed again with a pair of () or [] removed, as the numbers may
+     * have been enclosed in them. This repeats until a parse succeeds or
+     * the work budget of the file runs out. Every parse that found nothing
+     * completes its own media name, in reverse order, unless the parse that
+     * followed it succeeded. If the budget runs out, only the original
+     * filename completes its media name.
+     * @param mediaFile to be renamed.
+     * @param offsetEpisodes true to apply the special episode cases.
+     */
+    private void parseBuiltin(MediaFile mediaFile, boolean offsetEpisodes) {
+        ParseState state = parseNumbers(mediaFile);
+        if(state.fallbackFileName == null){
+            if(!state.complete){
+                parseMediaName(state, offsetEpisodes);
+            }
+            return;
+        }
+        List<ParseState> states = new ArrayList<>();
+        states.add(state);
+        while(state.fallbackFileName != null){
+            if(states.size() > MAX_FALLBACK_PARSES){
+                /*Out of budget, none of the parses found anything, complete
+                * the media name from the original filename.*/
+                fallbackCounters.increment(FallbackCounters.Fallback.BUDGET_EXHAUSTED);
+                parseMediaName(states.get(0), offsetEpisodes);
+                mediaFile.setConfidence(ParseConfidence.LOW);
+                return;
+            }
+            fallbackCounters.increment(FallbackCounters.Fallback.BRACKET_STRIP);
+            long start = stageTimers.start();
+            state = parseNumbers(new MediaFile(state.fallbackFileName));
+            stageTimers.stop(StageTimers.Stage.FALLBACK, start);
+            states.add(state);
+        }
+        /*A parse that falls back takes on the result of the next parse if
+        * it succeeded, otherwise it completes its own media name.*/
+        MediaFile next = null;
+        for(int i = states.size()-1; i >= 0; i--){
+            ParseState current = states.get(i);
+            if(next != null && next.toString() != null){
+                current.mediaFile.setMediaName(next.getMediaName());
+                current.mediaFile.setEpisodeNumber(next.getEpisodeNumber());
+                current.mediaFile.setYear(next.getYear());
+                current.mediaFile.setSeasonNumber(next.getSeasonNumber());
+                //found only once a pair of brackets was removed
+                current.mediaFile.setConfidence(next.getConfidence() == ParseConfidence.HIGH ?
+                        ParseConfidence.MEDIUM : next.getConfidence());
+            } else if(!current.complete){
+                parseMediaName(current, offsetEpisodes);
+            }
+            next = current.mediaFile;
+        }
+    }
+
+    /**
+     * Parse the file ext, season number, episode number and year of the
+     * given media file.
+     * @param mediaFile to be renamed.
+     * @return state of the parse, used to complete the media name.
+     */
+    private ParseState parseNumbers(MediaFile mediaFile) {
+        ParseState state = new ParseState(mediaFile);
         String tempFileName = mediaFile.getOriginalFileName();
 
         //tempFileName could have path appended to filename
@@ -63,20 +429,14 @@ public class Rename {
         if(mediaFile.getRenames() > 0) {
             boolean matchFound = false;
             int numEpChars = 2;
-            Pattern renamedPattern = Pattern.compile(".+S\\d{2}E\\d{" + numEpChars + "}\\..{3}");
-            Matcher renamedMatcher = renamedPattern.matcher(filename);
-            if (renamedMatcher.matches()) {
+            if (RENAMED_2_DIGIT_EPISODE.matcher(filename).matches()) {
                 matchFound = true;
             } else {
                 numEpChars++;
-            }
-            renamedPattern = Pattern.compile(".+S\\d{2}E\\d{" + numEpChars + "}\\..{3}");
-            renamedMatcher = renamedPattern.matcher(filename);
-            if (renamedMatcher.matches()) {
-                matchFound = true;
+                matchFound = RENAMED_3_DIGIT_EPISODE.matcher(filename).matches();
             }
             if (matchFound) {
-                String mediaName = filename.replaceAll("S\\d{2}E\\d{2,3}\\..{3}", "");
+                String mediaName = RENAMED_SUFFIX.matcher(filename).replaceAll("");
                 mediaFile.setMediaName(mediaName.trim());
                 String noMediaName = filename.replace(mediaName, "");
                 noMediaName = noMediaName.replace("." + mediaFile.getFileExt(), "");
@@ -84,14 +444,16 @@ public class Rename {
                 mediaFile.setSeasonNumber(s);
                 String ep = noMediaName.substring(4, 4 + numEpChars);
                 mediaFile.setEpisodeNumber(ep);
-                return;
+                mediaFile.setConfidence(ParseConfidence.HIGH);
+                state.complete = true;
+                return state;
             }
         }
 
         /*Do not process files with excluded file types*/
-        String excludeFileTypes = settings.get(Constants.EXCLUDE_FILE_TYPES);
         if(excludeFileTypes != null && (mediaFile.getFileExt() != null && excludeFileTypes.contains(mediaFile.getFileExt()))){
-            return;
+            state.complete = true;
+            return state;
         }
 
         //remove file extension from temp filename
@@ -99,22 +461,13 @@ public class Rename {
 
         //remove prepended or trailing spaces
         tempFileName = tempFileName.trim();
-        /*Strip away everything in parentheses and brackets.*/
-        //replace everything enclosed in () or []
-        tempFileName = tempFileName.replaceAll("(\\([^)]*\\))|(\\[[^]]*\\])|(\\{[^}]*\\})","");
-        //replace all ". or _ or ;" followed by one or more spaces
-        tempFileName = tempFileName.replaceAll("[._;,!&]\\s*"," ");
-        //replace all " - " need minimum of one space on either side
-        tempFileName = tempFileName.replaceAll("\\s+(-)\\s+"," ");
-        //replace all x### {can be x264 or x265}
-        tempFileName = tempFileName.replaceAll("x\\d{3}","");
-        //replace all ####p {can be 1080p, or 720p}
-        tempFileName = tempFileName.replaceAll("\\d{3,4}p","");
-        //replace all smart quotes
-        tempFileName = tempFileName.replaceAll("`","'");
-        /*it is possible that there is an extra number somewhere in the path
-        * the is pretexted with '#'.*/
-        tempFileName = tempFileName.replaceAll("[#]\\d*","");
+        /*Tokenize the filename and rebuild it without everything enclosed
+        * in (), [] or {}, x### codecs, ####p resolutions and #numbers.
+        * ". or _ or ;" followed by spaces become a single space, as does
+        * " - " with a minimum of one space on either side.*/
+        long start = stageTimers.start();
+        tempFileName = new FilenameTokenizer(tempFileName).render();
+        stageTimers.stop(StageTimers.Stage.BRACKET_STRIP, start);
 
         /*We have parsed all the items that we do not want in our filename.*/
 
@@ -125,38 +478,19 @@ public class Rename {
         * episode and season number parser can handle the numbers properly.
         * There is possibility that the pattern is S##E###, so do not remove 'E'
         * from the filename if this is the case.*/
-        //Step 1: split filename by pattern {digit}{non-digit}{digit}
-        String[] tempRemove = tempFileName.split("(\\d+[^0-9\\s^(E|S)]\\d+)");
-        //if we have at least 1 value to remove (should be a word or set of words)
-        if(tempRemove.length > 0){
-            String numberReplacement = tempFileName;
-            //Step 2: replace all instances of the strings found in step 1
-            for(String str: tempRemove){
-                numberReplacement = numberReplacement.replaceAll(str,"");
-            }
-            numberReplacement = numberReplacement.trim();
-            //Step 3: replace all elements that are not digits with spaces
-            String newNumberToReplace = numberReplacement.replaceAll("[^0-9]"," ");
-            /*Step 4: replace first instance where the original pattern found in step 1
-            * with the new pattern that excludes the non-numerical character {# ##}*/
-            tempFileName = tempFileName.replaceFirst(numberReplacement,newNumberToReplace);
-        }
+        start = stageTimers.start();
+        tempFileName = separateNumbers(tempFileName);
+        stageTimers.stop(StageTimers.Stage.NUMBER_SEPARATION, start);
 
         /*It is possible that the show title is followed by numbers that
         * are not apart of the episode or season numbers. Search through the special
         * case settings files and determine if the show title contains numbers.
         * If so, remove the numbers found in the show title exactly from the show
         * title and continue parsing; otherwise, do not change the temporary filename.*/
-        for(String userShowTitle: specialRenameCases.keySet()){
-            //only use rename case if key and value are identical.
-            if(userShowTitle.equals(specialRenameCases.get(userShowTitle))){
-                String userNoNum = userShowTitle.replaceAll("\\d*","").trim();
-                if(tempFileName.contains(userNoNum)){
-                    String numbersInShowTitle = userShowTitle.replaceAll("[^0-9]+","");
-                    mediaFile.setMediaName(path+userShowTitle);
-                    tempFileName = tempFileName.replaceFirst(numbersInShowTitle,"");
-                }
-            }
+        int title = -1;
+        while((title = specialRenameRules.nextTitle(tempFileName, title)) >= 0){
+            mediaFile.setMediaName(path+specialRenameRules.getTitle(title));
+            tempFileName = removeFirst(tempFileName, specialRenameRules.getTitleNumbers(title));
         }
         /*Try to match the episode and season number for the format:
          *S#E#
@@ -167,33 +501,45 @@ public class Rename {
          */
         String episodeNumber;
         String seasonNumber;
+        /*Index the digits once for the episode, season and year parsers.*/
+        start = stageTimers.start();
+        DigitRuns digitRuns = new DigitRuns(tempFileName);
+        ParseConfidence confidence = ParseConfidence.HIGH;
         if(!seasonEpisodeMatcher(mediaFile, tempFileName)){
+            /*A lone episode number is explicit, more digits can be read
+            * more than one way, and with more than four the title digit
+            * fallback guessed.*/
+            confidence = scoreDigits(digitRuns.getDigitCount());
             //assign episode number to mediaFile
-            String UserMaxEpisodeCount = settings.get(Constants.DEFAULT_MAX_EPISODE_COUNT);
-            int maxNum = 999;
-            if(UserMaxEpisodeCount != null){
-                maxNum = Integer.parseInt(UserMaxEpisodeCount);
-            }
-            episodeNumber = parseEpisodeNumber(tempFileName, maxNum);
+            episodeNumber = parseEpisodeNumber(digitRuns, maxEpisodeCount);
             mediaFile.setEpisodeNumber(episodeNumber);
 
             //assign season number to mediaFile
-            seasonNumber = parseSeasonNumber(tempFileName, maxNum);
+            seasonNumber = parseSeasonNumber(digitRuns, maxEpisodeCount);
             mediaFile.setSeasonNumber(seasonNumber);
         } else{
             episodeNumber = mediaFile.getEpisodeNumber();
             seasonNumber = mediaFile.getSeasonNumber();
         }
         //assign year to mediaFile
-        String year = parseYear(tempFileName);
+        String year = parseYear(digitRuns);
         mediaFile.setYear(year);
+        if(year != null){
+            //a movie is named by its year, or lack of it
+            if("".equals(year)){
+                confidence = ParseConfidence.LOW;
+            } else {
+                confidence = digitRuns.getDigitCount() == 4 ? ParseConfidence.HIGH : ParseConfidence.MEDIUM;
+            }
+        }
+        stageTimers.stop(StageTimers.Stage.NUMBERS, start);
 
         /*Reset the year field to null as "" is effective null.*/
         if("".equals(year)) {
             year = null;
         }
         /*remove any keywords that relate to the word movie.*/
-        tempFileName = tempFileName.replaceAll("Movie|movie|Gekijouban|gekijouban","");
+        tempFileName = MOVIE_KEYWORDS.matcher(tempFileName).replaceAll("");
 
         /*It is possible that the episode number parsing failed.*/
         if(episodeNumber == null){
@@ -201,13 +547,13 @@ public class Rename {
             String[] subParts = tempFileName.split(" ");
             /*Look for 2 or 3 digit numbers separated by spaces from the
             * sub part split.*/
-            Pattern episodePattern = Pattern.compile("\\d{2,3}");
             for(String part: subParts){
-                Matcher episodeMatcher = episodePattern.matcher(part);
+                Matcher episodeMatcher = EPISODE_DIGITS.matcher(part);
                 //if we found a match, assign the episode number.
                 if(episodeMatcher.matches()){
                     episodeNumber = part;
                     mediaFile.setEpisodeNumber(episodeNumber);
+                    confidence = ParseConfidence.LOW;
                     break;
                 }
             }
@@ -222,10 +568,10 @@ public class Rename {
         * ###{stuff}
         * ####{stuff}
         */
-        tempFileName = tempFileName.replaceAll("(((S|E|s|e)\\d{1,2})+|\\d{3,4})[-\\w\\s']+","");
+        tempFileName = TRAILING_NUMBERS.matcher(tempFileName).replaceAll("");
 
         /*Replace all instances of the keyword "Episode "*/
-        tempFileName = tempFileName.replaceAll("(Episode|episode)\\s*","");
+        tempFileName = EPISODE_KEYWORD.matcher(tempFileName).replaceAll("");
 
         /*If the filename contains the keyword special or Special,
         * then season number must be 0.
@@ -237,57 +583,67 @@ public class Rename {
                 tempFileName.contains("OAD") ||
                 tempFileName.contains("ONA")){
             mediaFile.setSeasonNumber("0");
-            tempFileName = tempFileName.replaceAll("(Special|special|OVA|OAD|ONA)\\s*","");
+            tempFileName = SPECIAL_KEYWORDS.matcher(tempFileName).replaceAll("");
         }
 
         /*Attempt to replace instance of episode number*/
         if(episodeNumber != null){
-            tempFileName = tempFileName.replaceAll(episodeNumber,"");
+            tempFileName = tempFileName.replace(episodeNumber,"");
         }else if(year == null){
             /*It is possible that episode number could not be found because one of the
             * previous parsing algorithm components removed the numbers.
             * It is most likely that the numbers could have been a year and was
             * bound within (). So remove the first instance of ( and ).
-            * Create a new temporary mediaFile and re run the algorithm.
-            * A new mediaFile is created to preserve the original filepath
-            * for renaming purposes of the original MediaFile. After the algorithm
-            * passes these set of checks, assign the new mediaName, SeasonNum, EpisodeNum,
-            * and Year to the original mediaFile.*/
+            * A new mediaFile is parsed with the updated filename to preserve the
+            * original filepath for renaming purposes of the original MediaFile.
+            * If the new mediaFile is renamed, its mediaName, SeasonNum, EpisodeNum,
+            * and Year are assigned to the original mediaFile.*/
             String originalFileName = mediaFile.getOriginalFileName();
-            originalFileName = originalFileName.replaceFirst("\\(","");
-            originalFileName = originalFileName.replaceFirst("\\)","");
+            originalFileName = removeFirst(originalFileName, '(');
+            originalFileName = removeFirst(originalFileName, ')');
             if(originalFileName.equals(mediaFile.getOriginalFileName())){
-                originalFileName = originalFileName.replaceFirst("\\[","");
-                originalFileName = originalFileName.replaceFirst("\\]","");
+                originalFileName = removeFirst(originalFileName, '[');
+                originalFileName = removeFirst(originalFileName, ']');
             }
             /*it is possible that the file extension contains a number as in the case
             * of *.mp4 contains a 4.*/
             String fileExt = getFileExt(originalFileName);
-            originalFileName = originalFileName.replaceAll(fileExt,"");
+            if(fileExt != null){
+                originalFileName = originalFileName.replace(fileExt,"");
+            }
             //remove anything in [] or () and only leave numbers 0-9
-            String numbers = originalFileName.replaceAll("((\\([^)]*\\))|(\\[[^]]*\\])|(\\{[^}]*\\}))","").replaceAll("[^0-9]+","").trim();
+            String numbers = BRACKET_GROUPS.matcher(originalFileName).replaceAll("");
+            int numberCount = new DigitRuns(numbers).getDigitCount();
 
             //add file extension back for rest of algorithm
             originalFileName+="."+fileExt;
 
             /*it is possible that there are no numbers in the case that a movie title has no
              * year.*/
-            if(numbers.length() != 0 && !tempFileName.equals(originalFileName)) {
-                MediaFile tempMediaFile = new MediaFile(originalFileName);
-                rename(tempMediaFile);
-                if (tempMediaFile.toString() != null) {
-                    mediaFile.setMediaName(tempMediaFile.getMediaName());
-                    mediaFile.setEpisodeNumber(tempMediaFile.getEpisodeNumber());
-                    mediaFile.setYear(tempMediaFile.getYear());
-                    mediaFile.setSeasonNumber(tempMediaFile.getSeasonNumber());
-                    /*Safe to return here as the media algorithm has finished
-                    * from the recursive call.*/
-                    return;
-                }
+            if(fileExt != null && numberCount != 0 && !tempFileName.equals(originalFileName)) {
+                state.fallbackFileName = originalFileName;
             }
         }
+        mediaFile.setConfidence(confidence);
+        state.path = path;
+        state.tempFileName = tempFileName;
+        state.seasonNumber = seasonNumber;
+        return state;
+    }
+
+    /**
+     * Complete the media name of a media file once its numbers are parsed.
+     * @param state of the parse of the media file.
+     * @param offsetEpisodes true to apply the special episode cases.
+     */
+    private void parseMediaName(ParseState state, boolean offsetEpisodes) {
+        MediaFile mediaFile = state.mediaFile;
+        String path = state.path;
+        String tempFileName = state.tempFileName;
+        String filename;
+
         /*Attempt to replace instance of season number*/
-        tempFileName = tempFileName.replaceAll(seasonNumber, "");
+        tempFileName = tempFileName.replace(state.seasonNumber, "");
 
         //remove prepended or trailing spaces
         tempFileName = tempFileName.trim();
@@ -313,16 +669,150 @@ public class Rename {
             filename = filename.trim();
             /*if there is a "  " {double space} followed by a character and
             * other characters, remove everything following the "  "{Alpha}*/
-            filename = filename.replaceAll("\\s{2}.+","");
+            filename = DOUBLE_SPACE_SUFFIX.matcher(filename).replaceAll("");
             mediaFile.setMediaName(path+filename);
             //attempt to re-exchange the filename
             exchangeFileName(mediaFile);
         }
 
         /*Attempt to replace current episode number with user specified one.*/
+        if(offsetEpisodes) {
+            verifyEpisodeNumber(mediaFile);
+        }
+    }
+
+    /**
+     * Rename the media files of a single series, or a single media file.
+     * Cached results are restored first, the remaining files are renamed
+     * from a template if possible and parsed in full otherwise.
+     * @param group media files of the same series.
+     */
+    private void renameGroup(List<MediaFile> group) {
+        List<MediaFile> remaining = group;
+        if(parseCache != null){
+            remaining = new ArrayList<>(group.size());
+            for(MediaFile mediaFile : group){
+                if(!parseCache.restore(ruleVersion, mediaFile)){
+                    remaining.add(mediaFile);
+                }
+            }
+        }
+        if(remaining.size() < SeriesBatch.MIN_SERIES_FILES || !renameFromTemplate(remaining)){
+            for(MediaFile mediaFile : remaining){
+                parse(mediaFile, true);
+            }
+        }
+        if(parseCache != null){
+            for(MediaFile mediaFile : remaining){
+                parseCache.store(ruleVersion, mediaFile);
+            }
+        }
+    }
+
+    /**
+     * Rename the media files of a series from a template parsed from the
+     * first file. The template applies if exactly one run of digits differs
+     * between the files and the first file has that run as its episode number.
+     * @param series media files with the same series key.
+     * @return true if the files were renamed, false if the template does not apply.
+     */
+    private boolean renameFromTemplate(List<MediaFile> series) {
+        List<DigitRuns> digitRuns = new ArrayList<>(series.size());
+        for(MediaFile mediaFile : series){
+            digitRuns.add(SeriesBatch.digitRuns(mediaFile.getOriginalFileName()));
+        }
+        int varying = SeriesBatch.varyingRun(digitRuns);
+        if(varying < 0){
+            return false;
+        }
+        /*Parse the template without the special episode cases, they are
+        * applied to the episode number of each file.*/
+        MediaFile template = new MediaFile(series.get(0).getOriginalFileName());
+        parse(template, false);
+        if(template.toString() == null || template.getYear() != null ||
+                !digitRuns.get(0).run(varying).equals(template.getEpisodeNumber())){
+            return false;
+        }
+        /*Verify the template against a full parse of the last file.*/
+        int last = series.size() - 1;
+        MediaFile sample = new MediaFile(series.get(last).getOriginalFileName());
+        parse(sample, true);
+        MediaFile derived = new MediaFile(sample.getOriginalFileName());
+        applyTemplate(template, derived, digitRuns.get(last).run(varying));
+        if(!derived.toString().equals(sample.toString())){
+            return false;
+        }
+        for(int i = 0; i < series.size(); i++){
+            String episodeNumber = digitRuns.get(i).run(varying);
+            if(episodeNumber.length() == 3 && Integer.parseInt(episodeNumber) >= maxEpisodeCount){
+                //not an episode number on its own
+                parse(series.get(i), true);
+            } else {
+                applyTemplate(template, series.get(i), episodeNumber);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assign the media name and season number of a template to a media file
+     * along with its own episode number and apply the special episode cases.
+     * @param template parsed from the first file of the series.
+     * @param mediaFile to be renamed.
+     * @param episodeNumber of the media file.
+     */
+    private void applyTemplate(MediaFile template, MediaFile mediaFile, String episodeNumber) {
+        mediaFile.setFileExt(template.getFileExt());
+        mediaFile.setMediaName(template.getMediaName());
+        mediaFile.setSeasonNumber(template.getSeasonNumber());
+        mediaFile.setEpisodeNumber(episodeNumber);
+        mediaFile.setConfidence(template.getConfidence());
         verifyEpisodeNumber(mediaFile);
     }
 
+    /**
+     * Helper method to add the entries of a special cases map to the
+     * rules that identify cached results.
+     * @param rules to add to.
+     * @param specialCases map of special cases.
+     */
+    private static void addRules(List<String> rules, HashMap<String, String> specialCases){
+        rules.add(Integer.toString(specialCases.size()));
+        for(Map.Entry<String, String> entry : specialCases.entrySet()){
+            rules.add(entry.getKey());
+            rules.add(entry.getValue());
+        }
+    }
+
+    /**
+     * Score the confidence in numbers parsed from the digits of a filename.
+     * @param digits number of digits in the filename.
+     * @return HIGH for up to two digits, MEDIUM for three or four, LOW for more.
+     */
+    private static ParseConfidence scoreDigits(int digits){
+        if(digits <= 2){
+            return ParseConfidence.HIGH;
+        }
+        return digits <= 4 ? ParseConfidence.MEDIUM : ParseConfidence.LOW;
+    }
+
+    /**
+     * Helper method to read the user specified maximum episode count.
+     * @param userMaxEpisodeCount setting value, may be null.
+     * @return maximum episode count, default if not given or not a number.
+     */
+    private static int parseMaxEpisodeCount(String userMaxEpisodeCount){
+        if(userMaxEpisodeCount == null){
+            return DEFAULT_MAX_EPISODE_COUNT;
+        }
+        try{
+            return Integer.parseInt(userMaxEpisodeCount);
+        } catch (NumberFormatException e){
+            ErrorHandler.printError(e.getClass().getName() + ": " + e.getMessage());
+            return DEFAULT_MAX_EPISODE_COUNT;
+        }
+    }
+
     /**
      * Helper method to locate the file extension.
      * @param fileName to search for file ext in.
@@ -343,177 +833,273 @@ public class Rename {
 
     /**
      * Episode parsing from given filename.
-     * @param filename to search for episodeNumber.
+     * @param digitRuns index of the digits in the filename to search for episodeNumber.
      * @return parsed episode number if exists, otherwise null.
      */
-    private static String parseEpisodeNumber(String filename, int maxEpisode){
-        filename = Utilities.parseFilenameFromPath(filename);
-        /*Remove all alphabetic characters and replace with empty space*/
-        String numbersOnly = filename.replaceAll("[^0-9]+","");
-        numbersOnly = numbersOnly.replaceAll(" ","");   //remove all spaces
-        numbersOnly = numbersOnly.trim();   //remove leading/trailing spaces
-        /*The episode number will be the last 2-3 digits in the filename*/
-        //if the length is 1 or 2, then we know we only have episodeNumber
-        if(numbersOnly.length() == 2 || numbersOnly.length() == 1){
-            return numbersOnly;
-        }
-        /*if the length is 3, then we know we have 3 digit episodeNumber or
-        * season number and 2 digit episodeNumber.
-        * To determine this, we can look at the original filename and see if this
-        * exact sequence exists in the original.
-        * If the exact sequence exists, then we know we have only episode number*/
-        if(numbersOnly.length() == 3){
-            /*If the current parsed digits are less than maximum  allowed for episode*/
-            if(Integer.parseInt(numbersOnly) < maxEpisode){
-                if(filename.contains(numbersOnly)){
-                    return numbersOnly;
-                }
+    private String parseEpisodeNumber(DigitRuns digitRuns, int maxEpisode){
+        while(true) {
+            int digits = digitRuns.getDigitCount();
+            /*The episode number will be the last 2-3 digits in the filename*/
+            //if the length is 1 or 2, then we know we only have episodeNumber
+            if(digits == 2 || digits == 1){
+                return digitRuns.digits(0, digits);
             }
-            return numbersOnly.substring(1);
-        }
-        /*if the length is 4, we have 2 digit episode & 2 digit season or
-        * 3 digit episode & 1 digit season*/
-        if(numbersOnly.length() == 4){
-            //check 3 digit first
-            String potentialEpisode = numbersOnly.substring(1);
-            if(filename.contains(potentialEpisode)){
-                if(Integer.parseInt(potentialEpisode) < maxEpisode) {
-                    return potentialEpisode;
+            /*if the length is 3, then we know we have 3 digit episodeNumber or
+            * season number and 2 digit episodeNumber.
+            * To determine this, we can look at the original filename and see if this
+            * exact sequence exists in the original.
+            * If the exact sequence exists, then we know we have only episode number*/
+            if(digits == 3){
+                /*If the current parsed digits are less than maximum  allowed for episode*/
+                if(digitRuns.value(0, 3) < maxEpisode){
+                    if(digitRuns.contains(0, 3)){
+                        return digitRuns.digits(0, 3);
+                    }
                 }
+                return digitRuns.digits(1, 2);
             }
-            //check 2 digit next
-            potentialEpisode = numbersOnly.substring(2);
-            if(filename.contains(potentialEpisode)){
-                return potentialEpisode;
+            /*if the length is 4, we have 2 digit episode & 2 digit season or
+            * 3 digit episode & 1 digit season*/
+            if(digits == 4){
+                //check 3 digit first
+                if(digitRuns.contains(1, 3)){
+                    if(digitRuns.value(1, 3) < maxEpisode) {
+                        return digitRuns.digits(1, 3);
+                    }
+                }
+                //check 2 digit next
+                if(digitRuns.contains(2, 2)){
+                    return digitRuns.digits(2, 2);
+                }
             }
-        }
-        /*If we reached this far, the format is not normal, there are too
-        * many numbers in the string. Using some simple predictive knowledge,
-        * if the first character of the numbers found exists by itself (with
-        * space following), it is
-        * possible that this number belongs to the title. If we act on this assumption
-        * that the first character belongs to the title, reprocess the last digits
-        * through this algorithm.*/
-        if(numbersOnly.length() > 4){
-            if(filename.contains(numbersOnly.substring(0,1)+" ")){
-                //replace first in case actual number is part of episode
-                String temp = filename.replaceFirst(numbersOnly.substring(0,1)+" ","").trim();
-                return parseEpisodeNumber(temp,maxEpisode);
+            /*If we reached this far, the format is not normal, there are too
+            * many numbers in the string. Using some simple predictive knowledge,
+            * if the first character of the numbers found exists by itself (with
+            * space following), it is
+            * possible that this number belongs to the title. If we act on this assumption
+            * that the first character belongs to the title, reprocess the last digits.
+            * Every pass removes a digit, so the number of passes is bound by the digits.*/
+            if(digits > 4){
+                DigitRuns withoutTitleDigit = removeTitleDigit(digitRuns);
+                if(withoutTitleDigit != null){
+                    fallbackCounters.increment(FallbackCounters.Fallback.EPISODE_TITLE_DIGIT);
+                    digitRuns = withoutTitleDigit;
+                    continue;
+                }
             }
+            //any other set of numbers and something went wrong.
+            return null;
         }
-        //any other set of numbers and something went wrong.
-        return null;
     }
 
     /**
      * Season parsing from given filename.
      * Worst case, parsing could not determine season number, therefore
      * we use default case of "01"
-     * @param filename to search for seasonNumber.
+     * @param digitRuns index of the digits in the filename to search for seasonNumber.
      * @return parsed season number if exists, otherwise null.
      */
-    private static String parseSeasonNumber(String filename, int maxEpisode){
-        filename = Utilities.parseFilenameFromPath(filename);
+    private String parseSeasonNumber(DigitRuns digitRuns, int maxEpisode){
         String defaultSeasonNumber = "01";
-        String numbersOnly = filename.replaceAll("[^0-9]+","");
-        numbersOnly = numbersOnly.trim();
-        /*If only two numbers found, we have only episode
-        * default season is "01"*/
-        if(numbersOnly.length() == 2){
-            return defaultSeasonNumber;
-        }
-        /*If three numbers found, we have single digit season & 2 digit ep
-        * or 3 digit episode number.
-        * If 3 digit episode, then use default season number.*/
-        if(numbersOnly.length() == 3){
-            /*If the current parsed digits are less than maximum allowed for episode*/
-            if(Integer.parseInt(numbersOnly) < maxEpisode) {
-                if (filename.contains(numbersOnly)) {
-                    return defaultSeasonNumber;
+        while(true) {
+            int digits = digitRuns.getDigitCount();
+            /*If only two numbers found, we have only episode
+            * default season is "01"*/
+            if(digits == 2){
+                return defaultSeasonNumber;
+            }
+            /*If three numbers found, we have single digit season & 2 digit ep
+            * or 3 digit episode number.
+            * If 3 digit episode, then use default season number.*/
+            if(digits == 3){
+                /*If the current parsed digits are less than maximum allowed for episode*/
+                if(digitRuns.value(0, 3) < maxEpisode) {
+                    if (digitRuns.contains(0, 3)) {
+                        return defaultSeasonNumber;
+                    }
                 }
+                return digitRuns.digits(0, 1);
             }
-            return numbersOnly.substring(0,1);
-        }
-        /*If four numbers found, we have 2 digit season & 2 digit episode
-        * or 1 digit season & 3 digit episode.
-        * If 3 digit episode, return first number as season number.
-        * If 2 digit episode, return first two numbers as season.*/
-        if(numbersOnly.length() == 4){
-            //check 3 digit first
-            String potentialEpisode = numbersOnly.substring(1);
-            if(filename.contains(potentialEpisode)){
-                if(Integer.parseInt(potentialEpisode) < maxEpisode) {
-                    return numbersOnly.substring(0, 1);
+            /*If four numbers found, we have 2 digit season & 2 digit episode
+            * or 1 digit season & 3 digit episode.
+            * If 3 digit episode, return first number as season number.
+            * If 2 digit episode, return first two numbers as season.*/
+            if(digits == 4){
+                //check 3 digit first
+                if(digitRuns.contains(1, 3)){
+                    if(digitRuns.value(1, 3) < maxEpisode) {
+                        return digitRuns.digits(0, 1);
+                    }
+                }
+                //check 2 digit next
+                if(digitRuns.contains(2, 2)){
+                    return digitRuns.digits(0, 2);
                 }
             }
-            //check 2 digit next
-            potentialEpisode = numbersOnly.substring(2);
-            if(filename.contains(potentialEpisode)){
-                return numbersOnly.substring(0,2);
+            /*If we reached this far, the format is not normal, there are too
+            * many numbers in the string. Using some simple predictive knowledge,
+            * if the first character of the numbers found exists by itself, it is
+            * possible that this number belongs to the title. If we act on this assumption
+            * that the first character belongs to the title, reprocess the last digits.
+            * Every pass removes a digit, so the number of passes is bound by the digits.*/
+            if(digits > 4){
+                DigitRuns withoutTitleDigit = removeTitleDigit(digitRuns);
+                if(withoutTitleDigit != null){
+                    fallbackCounters.increment(FallbackCounters.Fallback.SEASON_TITLE_DIGIT);
+                    digitRuns = withoutTitleDigit;
+                    continue;
+                }
             }
+            //could not be determined so use default.
+            return defaultSeasonNumber;
         }
-        /*If we reached this far, the format is not normal, there are too
-        * many numbers in the string. Using some simple predictive knowledge,
-        * if the first character of the numbers found exists by itself, it is
-        * possible that this number belongs to the title. If we act on this assumption
-        * that the first character belongs to the title, reprocess the last digits
-        * through this algorithm.*/
-        if(numbersOnly.length() > 4){
-            if(filename.contains(numbersOnly.substring(0,1)+" ")){
-                //replace first in case actual number is part of season
-                String temp = filename.replaceFirst(numbersOnly.substring(0,1)+" ","").trim();
-                return parseSeasonNumber(temp,maxEpisode);
+    }
+
+    /**
+     * Helper method to remove the first digit of the filename when it
+     * belongs to the title. The first occurrence of that digit followed by
+     * a space is removed from the filename and the filename is indexed again.
+     * @param digitRuns index of the digits in the filename.
+     * @return index of the filename without the title digit, null if the
+     * digit is never followed by a space.
+     */
+    private static DigitRuns removeTitleDigit(DigitRuns digitRuns){
+        String filename = digitRuns.getFilename();
+        char titleDigit = filename.charAt(digitRuns.getPosition(0));
+        for(int i = 0; i + 1 < filename.length(); i++){
+            if(filename.charAt(i) == titleDigit && filename.charAt(i + 1) == ' '){
+                //replace first in case actual number is part of episode or season
+                return new DigitRuns((filename.substring(0, i) + filename.substring(i + 2)).trim());
             }
         }
-        //could not be determined so use default.
-        return defaultSeasonNumber;
+        return null;
     }
 
     /**
      * Helper method to parse the year from a given filename.
-     * @param filename to have year parsed from.
+     * If there are more than four digits in the filename, a number may be
+     * buried within the filename that does not belong. The year is then
+     * searched for by chopping off the first digit and by chopping off the
+     * last digit, repeatedly, until four digits remain. A year found by only
+     * one of the two chops wins. Every run of remaining digits is searched
+     * once, shortest first, instead of once per way of reaching it.
+     * @param digitRuns index of the digits in the filename to have year parsed from.
      * @return year parsed from the filename.
      */
-    private static String parseYear(String filename){
-        filename = Utilities.parseFilenameFromPath(filename);
-        String numbersOnly = filename.replaceAll("[^0-9]+","");
-        numbersOnly = numbersOnly.trim();
-        /*All numbers in filename equal to 4, we have potentially found a year.*/
-        if(numbersOnly.length() == 4){
-            if(filename.contains(numbersOnly)){
-                if(validateYear(numbersOnly)) {
-                    return numbersOnly;
+    private String parseYear(DigitRuns digitRuns){
+        int count = digitRuns.getDigitCount();
+        int result;
+        if(count == 4){
+            result = yearWindow(digitRuns, 0);
+        } else if(count > 4){
+            result = searchYear(digitRuns);
+        } else {
+            result = movieWithoutYear(digitRuns, 0, count);
+        }
+        if(result == NO_YEAR){
+            return null;
+        }
+        if(result == MOVIE_WITHOUT_YEAR){
+            return "";
+        }
+        return digitRuns.digits(result, 4);
+    }
+
+    /**
+     * Search every run of digits that remains after chopping digits off
+     * the front and back of the filename for a year.
+     * @param digitRuns index of the digits in the filename, more than four.
+     * @return index of the first digit of the year, NO_YEAR or MOVIE_WITHOUT_YEAR.
+     */
+    private int searchYear(DigitRuns digitRuns) {
+        fallbackCounters.increment(FallbackCounters.Fallback.YEAR_SEARCH);
+        int count = digitRuns.getDigitCount();
+        long windows = (long)(count - 3) * (count - 2) / 2;
+        if(windows > MAX_YEAR_WINDOWS){
+            fallbackCounters.increment(FallbackCounters.Fallback.BUDGET_EXHAUSTED);
+            return movieWithoutYear(digitRuns, 0, count);
+        }
+        /*results[i] holds the result of the digits starting at digit i,
+        * for the number of digits currently being searched.*/
+        int[] results = new int[count - 3];
+        for(int i = 0; i + 4 <= count; i++){
+            results[i] = yearWindow(digitRuns, i);
+        }
+        for(int length = 5; length <= count; length++){
+            for(int i = 0; i + length <= count; i++){
+                int front = results[i + 1];
+                int back = results[i];
+                if(front == NO_YEAR && back != NO_YEAR){
+                    results[i] = back;
+                } else if(front != NO_YEAR && back == NO_YEAR){
+                    results[i] = front;
+                } else {
+                    results[i] = movieWithoutYear(digitRuns, i, i + length);
+                }
+            }
+        }
+        return results[0];
+    }
+
+    /**
+     * Check exactly four remaining digits for a year. The four digits are
+     * a year if they are adjacent in the filename and form a valid year.
+     * @param digitRuns index of the digits in the filename.
+     * @param start index of the first remaining digit.
+     * @return start, NO_YEAR or MOVIE_WITHOUT_YEAR.
+     */
+    private int yearWindow(DigitRuns digitRuns, int start) {
+        if(digitRuns.isAdjacent(start, 4) && validateYear(digitRuns.value(start, 4))){
+            return start;
+        }
+        return movieWithoutYear(digitRuns, start, start + 4);
+    }
+
+    /**
+     * There is a chance that there is no year value but the filename contains
+     * the word movie in either english or japanese. These cases return an
+     * empty year so that they are properly handled.
+     * Only the digits from start to end remain in the filename that is checked.
+     * @param digitRuns index of the digits in the filename.
+     * @param start index of the first remaining digit.
+     * @param end index after the last remaining digit.
+     * @return MOVIE_WITHOUT_YEAR if a movie keyword is found, NO_YEAR otherwise.
+     */
+    private static int movieWithoutYear(DigitRuns digitRuns, int start, int end) {
+        String filename = digitRuns.getFilename();
+        if(containsMovieKeyword(filename)){
+            return MOVIE_WITHOUT_YEAR;
+        }
+        int count = digitRuns.getDigitCount();
+        if(start == 0 && end == count){
+            return NO_YEAR;
+        }
+        //removing digits can join the letters around them into a keyword
+        StringBuilder remaining = new StringBuilder(filename.length());
+        int digit = 0;
+        for(int i = 0; i < filename.length(); i++){
+            if(digit < count && digitRuns.getPosition(digit) == i){
+                if(digit >= start && digit < end){
+                    remaining.append(filename.charAt(i));
                 }
+                digit++;
+            } else {
+                remaining.append(filename.charAt(i));
             }
         }
-        /*If the length of numbers found is more than four, then a number may be buried within
-        * the filename that does not belong. Chop off the first and recheck, chop off the last and recheck.*/
-        if(numbersOnly.length() > 4){
-            //continue to chop off front to determine year.
-            String tempFileName = filename.replaceFirst(numbersOnly.substring(0,1),"");
-            String tempYearFront = parseYear(tempFileName);
-            //continue to chop off back to determine year.
-            String reverseString = new StringBuilder(filename).reverse().toString();
-            tempFileName = reverseString.replaceFirst(numbersOnly.substring(numbersOnly.length()-1),"");
-            tempFileName = new StringBuilder(tempFileName).reverse().toString();
-            String tempYearBack = parseYear(tempFileName);
-            if(tempYearFront == null && tempYearBack != null){
-                return tempYearBack;
-            }
-            if(tempYearFront != null && tempYearBack == null){
-                return tempYearFront;
-            }
-        }
-        /*There is a chance that there is no year value but the filename contains
-        * the word movie in either english or japanese. Return empty string
-        * so that these cases are properly handled.*/
-        if(filename.contains("Movie") ||
+        return containsMovieKeyword(remaining.toString()) ? MOVIE_WITHOUT_YEAR : NO_YEAR;
+    }
+
+    /**
+     * Determine if the filename contains a keyword that relates to the word movie.
+     * @param filename to check.
+     * @return true if a movie keyword is found.
+     */
+    private static boolean containsMovieKeyword(String filename) {
+        return filename.contains("Movie") ||
                 filename.contains("movie") ||
                 filename.contains("Gekijouban") ||
-                filename.contains("gekijouban")){
-            return "";
-        }
-        return null;
+                filename.contains("gekijouban");
     }
 
     /**
@@ -522,11 +1108,8 @@ public class Rename {
      * @param year to validate.
      * @return true if 1950 < year <= currentYear; false otherwise
      */
-    private static boolean validateYear(String year){
-        int yearVal = Integer.parseInt(year);
-        Calendar now = Calendar.getInstance();
-        int currentYear = now.get(Calendar.YEAR);
-        return yearVal > 1950 && yearVal <= currentYear;
+    private boolean validateYear(int year){
+        return year > 1950 && year <= currentYear;
     }
 
     /**
@@ -535,22 +1118,25 @@ public class Rename {
      * @param mediaFile to exchange filenames with.
      */
     private void exchangeFileName(MediaFile mediaFile){
-        for(String originalName: specialRenameCases.keySet()){
+        if(specialRenameRules.isEmpty()){
+            return;
+        }
+        /*A rule applies when the filename equals the original name ignoring case,
+        * or when the user wants to replace a filename that contains the original
+        * name with something different. Every rule that applies is applied
+        * in turn, each one against the name left by the previous one.*/
+        long start = stageTimers.start();
+        int rule = -1;
+        while(true){
             String filename = Utilities.parseFilenameFromPath(mediaFile.getMediaName());
-            String path = "";
-            String tempPath = Utilities.removeFilenameFromPath(mediaFile.getMediaName());
-            if(tempPath.length()>0){
-                path = tempPath;
-            }
-            if(originalName.equalsIgnoreCase(filename)){
-                mediaFile.setMediaName(path+specialRenameCases.get(originalName));
-            }
-            /*The case where the user wants to replace a portion of the filename with
-            * something different.*/
-            else if(filename.contains(originalName)){
-                mediaFile.setMediaName(path+filename.replaceFirst(filename,specialRenameCases.get(originalName)));
+            rule = specialRenameRules.nextExchange(filename, rule);
+            if(rule < 0){
+                break;
             }
+            String path = Utilities.removeFilenameFromPath(mediaFile.getMediaName());
+            mediaFile.setMediaName(path+specialRenameRules.getNewName(rule));
         }
+        stageTimers.stop(StageTimers.Stage.SPECIAL_CASE_EXCHANGE, start);
     }
 
     /**
@@ -562,59 +1148,10 @@ public class Rename {
      * @param mediaFile to verify episode number with.
      */
     private void verifyEpisodeNumber(MediaFile mediaFile){
-        for(String originalName: specialEpisodeCases.keySet()){
-            String filename = Utilities.parseFilenameFromPath(mediaFile.getMediaName());
-            if(originalName.equals(filename)){
-                String episodeNumber = mediaFile.getEpisodeNumber();
-                if(episodeNumber == null){
-                    return; //cant continue if episode number not defined.
-                }
-                //get int representation of episode number
-                int epNum = Integer.parseInt(episodeNumber);
-                String seasonNumber = mediaFile.getSeasonNumber();
-                //should never be null, reason why unit tests do not hit this return
-                if(seasonNumber == null){
-                    return; //cant continue if season number not defined.
-                }
-                int sNum = Integer.parseInt(seasonNumber);
-                String userSpecialCase = specialEpisodeCases.get(originalName);
-                String seasonNum = userSpecialCase.replaceAll("E\\d{2}","");
-                String episodeNum = userSpecialCase.replaceAll("S\\d{2}","");
-                seasonNum = seasonNum.replaceAll("S","");
-                episodeNum = episodeNum.replaceAll("E","");
-                /*Special syntax notation for notating that we want an episode offset
-                * and use the given season number.*/
-                boolean userSpecifiedOffsetAndSeason = false;
-                if(userSpecialCase.contains("##")){
-                    userSpecifiedOffsetAndSeason = true;
-                    seasonNum = seasonNum.replaceAll("#","");
-                    episodeNum = episodeNum.replaceAll("#","");
-                }
-                /*Account for when S## is given for a specific title in the config settings.*/
-                if(episodeNum.equals("") && !seasonNum.equals("")){
-                    mediaFile.setSeasonNumber(seasonNum);
-                    return;
-                }
-                int userEp = Integer.parseInt(episodeNum);
-                int userS = Integer.parseInt(seasonNum);
-                /*If we have determined that the parsed season number is equal to
-                * one + the user season number,
-                * and
-                * the parsed episode number is greater than the user defined episode
-                * decrement the current defined parsed ep by the user ep*/
-                if(epNum > userEp){
-                    mediaFile.setEpisodeNumber(Integer.toString(epNum - userEp));
-                }
-                if(sNum == userS){
-                    mediaFile.setSeasonNumber(Integer.toString(userS+1));
-                }
-                /*Special case to assign season number as user gave it.
-                * Episode offset has already been conducted by previous check.*/
-                if(userSpecifiedOffsetAndSeason){
-                    mediaFile.setSeasonNumber(Integer.toString(userS));
-                }
-            }
-        }
+        long start = stageTimers.start();
+        String filename = Utilities.parseFilenameFromPath(mediaFile.getMediaName());
+        specialEpisodeTable.apply(mediaFile, filename);
+        stageTimers.stop(StageTimers.Stage.EPISODE_VERIFICATION, start);
     }
 
     /**
@@ -627,30 +1164,150 @@ public class Rename {
      * @return true if match found, false otherwise.
      */
     private static boolean seasonEpisodeMatcher(MediaFile mediaFile, String tempFilename){
-        /*Split the filename by spaces and evaluate each portion,
+        /*Evaluate each space separated portion of the filename,
         * compare against S##E## where # can be any length of numbers.*/
-        String[] subParts = tempFilename.split(" ");
-        Pattern seasonEpisodePattern = Pattern.compile("S\\d+E\\d+");
-        boolean seasonEpisodeMatch = false;
-        for(String part: subParts) {
-            Matcher matcher = seasonEpisodePattern.matcher(part);
-            if(matcher.matches()){
-                seasonEpisodeMatch = true;
-                tempFilename = part;
-                break;
+        int partStart = 0;
+        int length = tempFilename.length();
+        while(partStart <= length){
+            int partEnd = tempFilename.indexOf(' ', partStart);
+            if(partEnd < 0){
+                partEnd = length;
             }
-        }
-        /*If the pattern has been matched, the we can successfully
-        * determine what the season number and episode number are.*/
-        if(seasonEpisodeMatch){
-            String seasonNumber = tempFilename.replaceAll("E\\d+","");
-            String episodeNumber = tempFilename.replaceAll("S\\d+","");
-            seasonNumber = seasonNumber.replaceAll("S","");
-            episodeNumber = episodeNumber.replaceAll("E","");
-            mediaFile.setEpisodeNumber(episodeNumber);
-            mediaFile.setSeasonNumber(seasonNumber);
-            return true;
+            /*If the pattern has been matched, the we can successfully
+            * determine what the season number and episode number are.*/
+            if(partEnd - partStart >= 4 && tempFilename.charAt(partStart) == 'S'){
+                int seasonEnd = skipDigits(tempFilename, partStart + 1, partEnd);
+                if(seasonEnd > partStart + 1 && seasonEnd < partEnd && tempFilename.charAt(seasonEnd) == 'E'){
+                    int episodeEnd = skipDigits(tempFilename, seasonEnd + 1, partEnd);
+                    if(episodeEnd > seasonEnd + 1 && episodeEnd == partEnd){
+                        mediaFile.setEpisodeNumber(tempFilename.substring(seasonEnd + 1, partEnd));
+                        mediaFile.setSeasonNumber(tempFilename.substring(partStart + 1, seasonEnd));
+                        return true;
+                    }
+                }
+            }
+            partStart = partEnd + 1;
         }
         return false;
     }
+
+    /**
+     * Replace the {char} of the pattern {digit}{char}{digit} with a space.
+     * Step 1: find every instance of the pattern.
+     * Step 2: remove every portion of the filename between instances (should
+     * be a word or set of words) from the filename.
+     * Step 3: replace all elements of what remains that are not digits with spaces.
+     * Step 4: replace the first instance of what remained in step 2 with the
+     * new value from step 3, if it is still found in the filename.
+     * @param filename to separate numbers in.
+     * @return filename with the separating char replaced by a space.
+     */
+    private static String separateNumbers(String filename){
+        int length = filename.length();
+        //Step 1: locate pattern {digit}{non-digit}{digit}
+        StringBuilder numberReplacement = null;
+        int previousEnd = 0;
+        int i = 0;
+        while(i < length){
+            if(!FilenameTokenizer.isDigit(filename.charAt(i))){
+                i++;
+                continue;
+            }
+            int digitsEnd = skipDigits(filename, i, length);
+            if(digitsEnd + 1 < length && isNumberSeparator(filename.charAt(digitsEnd)) &&
+                    FilenameTokenizer.isDigit(filename.charAt(digitsEnd + 1))){
+                if(numberReplacement == null){
+                    numberReplacement = new StringBuilder(filename);
+                }
+                //Step 2: remove the portion found before this instance
+                removeAll(numberReplacement, filename.substring(previousEnd, i));
+                previousEnd = skipDigits(filename, digitsEnd + 1, length);
+                i = previousEnd;
+            } else {
+                i = digitsEnd;
+            }
+        }
+        if(numberReplacement == null){
+            return filename;
+        }
+        removeAll(numberReplacement, filename.substring(previousEnd));
+        String oldNumbers = numberReplacement.toString().trim();
+        //Step 3: replace all elements that are not digits with spaces
+        char[] newNumbers = oldNumbers.toCharArray();
+        for(int j = 0; j < newNumbers.length; j++){
+            if(!FilenameTokenizer.isDigit(newNumbers[j])){
+                newNumbers[j] = ' ';
+            }
+        }
+        //Step 4: replace first instance of the original pattern
+        int index = filename.indexOf(oldNumbers);
+        if(index < 0){
+            return filename;
+        }
+        return filename.substring(0, index) + new String(newNumbers) + filename.substring(index + oldNumbers.length());
+    }
+
+    /**
+     * Remove every instance of the given target.
+     * @param builder to remove target from.
+     * @param target to be removed.
+     */
+    private static void removeAll(StringBuilder builder, String target){
+        if(target.length() == 0){
+            return;
+        }
+        int index = builder.indexOf(target);
+        while(index >= 0){
+            builder.delete(index, index + target.length());
+            index = builder.indexOf(target, index);
+        }
+    }
+
+    /**
+     * Determine if the char can separate a season number from an episode number.
+     * @param c to check.
+     * @return true if not a digit, whitespace or one of "^(E|S)".
+     */
+    private static boolean isNumberSeparator(char c){
+        return !FilenameTokenizer.isDigit(c) && !FilenameTokenizer.isWhitespace(c) &&
+                "^(E|S)".indexOf(c) < 0;
+    }
+
+    /**
+     * Advance past a run of digits.
+     * @param str to scan.
+     * @param index to start at.
+     * @param end to stop at, exclusive.
+     * @return index of the first non digit char, or end.
+     */
+    private static int skipDigits(String str, int index, int end){
+        while(index < end && FilenameTokenizer.isDigit(str.charAt(index))){
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Remove the first instance of the given char.
+     * @param str to remove the char from.
+     * @param c to remove.
+     * @return str without the first instance of c.
+     */
+    private static String removeFirst(String str, char c){
+        return removeFirst(str, String.valueOf(c));
+    }
+
+    /**
+     * Remove the first instance of the given target.
+     * @param str to remove the target from.
+     * @param target to remove.
+     * @return str without the first instance of target.
+     */
+    private static String removeFirst(String str, String target){
+        int index = str.indexOf(target);
+        if(index < 0 || target.isEmpty()){
+            return str;
+        }
+        return str.substring(0, index) + str.substring(index + target.length());
+    }
 }
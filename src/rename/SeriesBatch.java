@@ -0,0 +1,103 @@
+package rename;
+
+import java.io.File;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Grouping of media files that belong to the same series.
+ * Files of a season usually share a directory, title and release group
+ * tags and only differ in the episode number. Such files get the same
+ * series key: their directory along with the filename outside of any
+ * (), [] or {} with every digit replaced by '#'. Tags such as CRC
+ * checksums that differ from file to file are enclosed in brackets and
+ * do not split a series.
+ */
+final class SeriesBatch {
+    /**Minimum number of files of a series before it is renamed from a template.*/
+    static final int MIN_SERIES_FILES = 3;
+    /**Anything enclosed in (), [] or {}.*/
+    private static final Pattern BRACKET_GROUPS = Pattern.compile("((\\([^)]*\\))|(\\[[^]]*\\])|(\\{[^}]*\\}))");
+    /**Placeholder of a digit in a series key.*/
+    private static final char DIGIT = '#';
+
+    private SeriesBatch() {
+    }
+
+    /**
+     * Build the series key of an original filename.
+     * @param originalFileName to build key for.
+     * @return series key, null if the brackets of the filename are not balanced.
+     */
+    static String seriesKey(String originalFileName) {
+        File file = new File(originalFileName);
+        String outside = outsideBrackets(file.getName());
+        if(outside == null){
+            return null;
+        }
+        StringBuilder key = new StringBuilder(originalFileName.length());
+        if(file.getParent() != null){
+            key.append(file.getParent());
+        }
+        key.append(File.separatorChar);
+        for(int i = 0; i < outside.length(); i++){
+            char c = outside.charAt(i);
+            key.append(FilenameTokenizer.isDigit(c) ? DIGIT : c);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Index the digits of an original filename outside of any brackets.
+     * @param originalFileName to index, with balanced brackets.
+     * @return index of the digits.
+     */
+    static DigitRuns digitRuns(String originalFileName) {
+        return new DigitRuns(outsideBrackets(new File(originalFileName).getName()));
+    }
+
+    /**
+     * Find the single run of digits that differs between the files of a series.
+     * @param series digit indexes of the files of a series, all with the same key.
+     * @return index of the run, -1 if no run or more than one run differs.
+     */
+    static int varyingRun(List<DigitRuns> series) {
+        DigitRuns first = series.get(0);
+        int varying = -1;
+        for(int run = 0; run < first.getRunCount(); run++){
+            for(int i = 1; i < series.size(); i++){
+                if(!first.runEquals(run, series.get(i), run)){
+                    if(varying >= 0){
+                        return -1;
+                    }
+                    varying = run;
+                    break;
+                }
+            }
+        }
+        return varying;
+    }
+
+    /**
+     * Remove everything enclosed in (), [] or {} from a filename.
+     * @param filename to remove bracket groups from.
+     * @return filename outside of brackets, null if a bracket is left unmatched.
+     */
+    private static String outsideBrackets(String filename) {
+        String outside = BRACKET_GROUPS.matcher(filename).replaceAll("");
+        for(int i = 0; i < outside.length(); i++){
+            switch(outside.charAt(i)){
+                case '(':
+                case ')':
+                case '[':
+                case ']':
+                case '{':
+                case '}':
+                    return null;
+                default:
+                    break;
+            }
+        }
+        return outside;
+    }
+}
@@ -0,0 +1,175 @@
+package rename;
+
+import errorHandle.ErrorHandler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Special episode cases decoded once into a table of show titles to
+ * season and episode offsets.
+ * Each title is given one or more offsets in the format S##E##, where
+ * S## is a season and E## is the last episode of that season. Several
+ * offsets are separated by ',' and are cumulative, which allows a show
+ * that uses absolute episode numbering to be split into seasons:
+ * "S01E25, S02E50" moves episode 60 to S03E10.
+ * S##, without an episode, assigns the season as given and ## between the
+ * season and the episode keeps the given season after the episode offset.
+ * Entries that do not follow this format are reported once when the table
+ * is built and are ignored.
+ */
+final class SpecialEpisodeTable {
+    /**A single offset, S## followed by an optional E## and optional ## marker.*/
+    private static final Pattern OFFSET = Pattern.compile("S(\\d{1,4})(##)?(?:E(\\d{1,6}))?(##)?");
+    /**Separator between cumulative offsets of a title.*/
+    private static final String OFFSET_SEPARATOR = ",";
+
+    /**
+     * Decoded offsets of a single title.
+     */
+    private static final class Offsets {
+        /**Season of each offset.*/
+        private final int[] seasons;
+        /**Last episode of the season of each offset, strictly ascending.
+         * Null when only a season is given.*/
+        private final int[] episodes;
+        /**True for each offset where the given season is kept.*/
+        private final boolean[] keepSeason;
+
+        private Offsets(int[] seasons, int[] episodes, boolean[] keepSeason) {
+            this.seasons = seasons;
+            this.episodes = episodes;
+            this.keepSeason = keepSeason;
+        }
+    }
+
+    /**Show title to decoded offsets.*/
+    private final HashMap<String, Offsets> table;
+
+    /**
+     * Decode the given special episode cases.
+     * @param specialEpisodeCases map of show titles to S##E## offsets.
+     */
+    SpecialEpisodeTable(Map<String, String> specialEpisodeCases) {
+        table = new HashMap<>();
+        for(Map.Entry<String, String> entry : specialEpisodeCases.entrySet()){
+            //blank lines of the settings file load as an empty entry
+            if(entry.getKey().isEmpty()){
+                continue;
+            }
+            Offsets offsets = decode(entry.getValue());
+            if(offsets == null){
+                ErrorHandler.printError("Malformed special episode case, ignored: " +
+                        entry.getKey() + ": " + entry.getValue());
+                continue;
+            }
+            table.put(entry.getKey(), offsets);
+        }
+    }
+
+    /**
+     * Offset the season and episode number of the given media file if its
+     * media name has a special episode case. Season and episode number must
+     * already be assigned.
+     * @param mediaFile to offset.
+     * @param filename media name of the media file without its path.
+     */
+    void apply(MediaFile mediaFile, String filename) {
+        Offsets offsets = table.get(filename);
+        if(offsets == null){
+            return;
+        }
+        if(mediaFile.getEpisodeNumber() == null){
+            return; //cant continue if episode number not defined.
+        }
+        if(mediaFile.getSeasonNumber() == null){
+            return; //cant continue if season number not defined.
+        }
+        /*Account for when S## is given for a specific title in the config settings.*/
+        if(offsets.episodes == null){
+            mediaFile.setSeasonNumber(Integer.toString(offsets.seasons[0]));
+            return;
+        }
+        int epNum = mediaFile.getEpisodeNumberValue();
+        int sNum = mediaFile.getSeasonNumberValue();
+        int offset = lastOffsetBelow(offsets.episodes, epNum);
+        if(offset < 0){
+            if(offsets.episodes.length > 1){
+                return; //episode is within the first season given.
+            }
+            offset = 0;
+        }
+        int userEp = offsets.episodes[offset];
+        int userS = offsets.seasons[offset];
+        /*If the parsed episode number is greater than the user defined episode
+        * decrement the current defined parsed ep by the user ep.
+        * If the parsed season is the first user season, the episode number
+        * counts from that season and the season following the offset applies.*/
+        if(epNum > userEp){
+            mediaFile.setEpisodeNumber(Integer.toString(epNum - userEp));
+        }
+        if(sNum == offsets.seasons[0]){
+            mediaFile.setSeasonNumber(Integer.toString(userS+1));
+        }
+        /*Special case to assign season number as user gave it.
+        * Episode offset has already been conducted by previous check.*/
+        if(offsets.keepSeason[offset]){
+            mediaFile.setSeasonNumber(Integer.toString(userS));
+        }
+    }
+
+    /**
+     * Find the offset with the greatest last episode that is below the
+     * given episode number.
+     * @param episodes last episode of each offset, strictly ascending.
+     * @param epNum parsed episode number.
+     * @return index of the offset, -1 if every offset is at or above epNum.
+     */
+    private static int lastOffsetBelow(int[] episodes, int epNum) {
+        int low = 0;
+        int high = episodes.length - 1;
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            if(episodes[mid] < epNum){
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Decode the user offsets of a single title.
+     * @param userSpecialCase offsets in the format S##E##, S##E##...
+     * @return decoded offsets, null if malformed.
+     */
+    private static Offsets decode(String userSpecialCase) {
+        String[] parts = userSpecialCase.split(OFFSET_SEPARATOR, -1);
+        int[] seasons = new int[parts.length];
+        int[] episodes = new int[parts.length];
+        boolean[] keepSeason = new boolean[parts.length];
+        for(int i = 0; i < parts.length; i++){
+            Matcher matcher = OFFSET.matcher(parts[i].trim());
+            if(!matcher.matches()){
+                return null;
+            }
+            seasons[i] = Integer.parseInt(matcher.group(1));
+            keepSeason[i] = matcher.group(2) != null || matcher.group(4) != null;
+            if(matcher.group(3) == null){
+                //season only, valid as the single offset of a title
+                if(parts.length != 1){
+                    return null;
+                }
+                return new Offsets(seasons, null, keepSeason);
+            }
+            episodes[i] = Integer.parseInt(matcher.group(3));
+            if(i > 0 && episodes[i] <= episodes[i-1]){
+                return null; //offsets are cumulative
+            }
+        }
+        return new Offsets(seasons, episodes, keepSeason);
+    }
+}
@@ -0,0 +1,178 @@
+package rename;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Special rename cases compiled for matching.
+ * All original names are compiled once into a {@link KeywordAutomaton}
+ * so that a filename is matched against every rule in a single pass.
+ * Rules keep the order they had in the map they were loaded from, and
+ * when several rules match the rule that comes first in that order is
+ * applied first.
+ */
+final class SpecialRenameRules {
+    /**Original names in map order.*/
+    private final String[] originalNames;
+    /**User specified names, parallel to originalNames.*/
+    private final String[] newNames;
+    /**Automaton over all original names.*/
+    private final KeywordAutomaton exchangeAutomaton;
+    /**Indexes of empty original names, which are contained in every filename.*/
+    private final int[] emptyNames;
+
+    /**Show titles that contain numbers, identical key and value rules in map order.*/
+    private final String[] titles;
+    /**Show titles with every number removed, parallel to titles.*/
+    private final String[] titlesWithoutNumbers;
+    /**Numbers found in each show title, parallel to titles.*/
+    private final String[] titleNumbers;
+    /**Automaton over all titles without numbers.*/
+    private final KeywordAutomaton titleAutomaton;
+    /**Indexes of titles that are empty once numbers are removed.*/
+    private final int[] emptyTitles;
+
+    /**
+     * Compile the given special rename cases.
+     * @param specialRenameCases map of original names to user specified names.
+     */
+    SpecialRenameRules(Map<String, String> specialRenameCases) {
+        int size = specialRenameCases.size();
+        originalNames = new String[size];
+        newNames = new String[size];
+        List<String> titleList = new ArrayList<>();
+        List<Integer> emptyNameList = new ArrayList<>();
+        int index = 0;
+        for(Map.Entry<String, String> entry : specialRenameCases.entrySet()){
+            originalNames[index] = entry.getKey();
+            newNames[index] = entry.getValue();
+            if(entry.getKey().isEmpty()){
+                emptyNameList.add(index);
+            }
+            //only use rename case for titles if key and value are identical.
+            if(entry.getKey().equals(entry.getValue())){
+                titleList.add(entry.getKey());
+            }
+            index++;
+        }
+        exchangeAutomaton = new KeywordAutomaton(Arrays.asList(originalNames));
+        emptyNames = toArray(emptyNameList);
+
+        titles = titleList.toArray(new String[0]);
+        titlesWithoutNumbers = new String[titles.length];
+        titleNumbers = new String[titles.length];
+        List<Integer> emptyTitleList = new ArrayList<>();
+        for(int i = 0; i < titles.length; i++){
+            StringBuilder withoutNumbers = new StringBuilder();
+            StringBuilder numbers = new StringBuilder();
+            for(char c : titles[i].toCharArray()){
+                if(FilenameTokenizer.isDigit(c)){
+                    numbers.append(c);
+                } else {
+                    withoutNumbers.append(c);
+                }
+            }
+            titlesWithoutNumbers[i] = withoutNumbers.toString().trim();
+            titleNumbers[i] = numbers.toString();
+            if(titlesWithoutNumbers[i].isEmpty()){
+                emptyTitleList.add(i);
+            }
+        }
+        titleAutomaton = new KeywordAutomaton(Arrays.asList(titlesWithoutNumbers));
+        emptyTitles = toArray(emptyTitleList);
+    }
+
+    /**
+     * Determine if there are no special rename cases.
+     * @return true if there are no rules.
+     */
+    boolean isEmpty() {
+        return originalNames.length == 0;
+    }
+
+    /**
+     * Find the next rule that exchanges the given filename. A rule applies
+     * if its original name equals the filename ignoring case, or if the
+     * filename contains the original name.
+     * @param filename to be exchanged.
+     * @param after index of the last rule applied, -1 to start with the first rule.
+     * @return index of the next rule that applies, -1 if none.
+     */
+    int nextExchange(String filename, int after) {
+        int rule = exchangeAutomaton.firstMatch(filename, after, (keyword, start) ->
+                (start == 0 && originalNames[keyword].length() == filename.length()) ||
+                        filename.startsWith(originalNames[keyword], start));
+        return lowest(rule, emptyNames, after);
+    }
+
+    /**
+     * Retrieve the user specified name of a rule.
+     * @param rule index returned by {@link #nextExchange(String, int)}.
+     * @return user specified name.
+     */
+    String getNewName(int rule) {
+        return newNames[rule];
+    }
+
+    /**
+     * Find the next show title, followed by numbers, contained in the
+     * given filename once the numbers are removed from the title.
+     * @param filename to search.
+     * @param after index of the last title found, -1 to start with the first title.
+     * @return index of the next title, -1 if none.
+     */
+    int nextTitle(String filename, int after) {
+        int title = titleAutomaton.firstMatch(filename, after, (keyword, start) ->
+                filename.startsWith(titlesWithoutNumbers[keyword], start));
+        return lowest(title, emptyTitles, after);
+    }
+
+    /**
+     * Retrieve a show title.
+     * @param title index returned by {@link #nextTitle(String, int)}.
+     * @return show title.
+     */
+    String getTitle(int title) {
+        return titles[title];
+    }
+
+    /**
+     * Retrieve the numbers in a show title.
+     * @param title index returned by {@link #nextTitle(String, int)}.
+     * @return numbers in the show title.
+     */
+    String getTitleNumbers(int title) {
+        return titleNumbers[title];
+    }
+
+    /**
+     * Combine a match with the entries that match every filename.
+     * @param match index found by an automaton, -1 if none.
+     * @param always sorted indexes that always match.
+     * @param after only indexes greater than this are considered.
+     * @return lowest index, -1 if none.
+     */
+    private static int lowest(int match, int[] always, int after) {
+        for(int index : always){
+            if(index > after){
+                return match < 0 ? index : Math.min(match, index);
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Convert a list of indexes to an array.
+     * @param list of indexes.
+     * @return array of indexes.
+     */
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for(int i = 0; i < array.length; i++){
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,186 @@
+package rename;
+
+import errorHandle.ErrorHandler;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often each stage of the rename algorithm runs and the
+ * cumulative nanoseconds spent in it, to find which stage makes a batch slow.
+ * Stages nest: PARSE holds the time of every other stage of a file and
+ * FALLBACK holds the stages of the filenames it parses again.
+ * Timers are shared by every thread renaming with the same rename object
+ * and are striped, so parallel renames do not contend on a single counter.
+ * When switched off, no clock is read and nothing is counted.
+ */
+public final class StageTimers implements StageTimersMBean {
+    /**Name the timers are registered under with the platform MBean server.*/
+    public static final String OBJECT_NAME = "rename:type=StageTimers";
+
+    /**
+     * Stages of the rename algorithm.
+     */
+    public enum Stage {
+        /**Complete parse of a file, by rules or by the built-in algorithm.*/
+        PARSE,
+        /**Tags enclosed in brackets, codecs and resolutions stripped from the filename.*/
+        BRACKET_STRIP,
+        /**Season and episode numbers separated by a letter split apart.*/
+        NUMBER_SEPARATION,
+        /**Season, episode number and year parsed from the digits.*/
+        NUMBERS,
+        /**Media name exchanged with the special rename cases.*/
+        SPECIAL_CASE_EXCHANGE,
+        /**Episode number offset by the special episode cases.*/
+        EPISODE_VERIFICATION,
+        /**Filename parsed again with a pair of () or [] removed.*/
+        FALLBACK
+    }
+
+    /**True if the stages are timed.*/
+    private final boolean enabled;
+    /**Count of each stage, indexed by ordinal.*/
+    private final LongAdder[] counts = new LongAdder[Stage.values().length];
+    /**Nanoseconds of each stage, indexed by ordinal.*/
+    private final LongAdder[] nanos = new LongAdder[Stage.values().length];
+
+    /**
+     * Create the timers of a rename object.
+     * @param enabled true to time the stages, false to switch the timers off.
+     */
+    StageTimers(boolean enabled) {
+        this.enabled = enabled;
+        for(int i = 0; i < counts.length; i++){
+            counts[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Mark the start of a stage.
+     * @return start time to pass to {@link #stop}, 0 if switched off.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record that a stage ran since the given start time.
+     * @param stage that ran.
+     * @param start time returned by {@link #start}.
+     */
+    void stop(Stage stage, long start) {
+        if(!enabled){
+            return;
+        }
+        counts[stage.ordinal()].increment();
+        nanos[stage.ordinal()].add(System.nanoTime() - start);
+    }
+
+    /**
+     * Retrieve how often a stage ran.
+     * @param stage to retrieve count of.
+     * @return number of times the stage ran.
+     */
+    public long getCount(Stage stage) {
+        return counts[stage.ordinal()].sum();
+    }
+
+    /**
+     * Retrieve the cumulative time spent in a stage.
+     * @param stage to retrieve time of.
+     * @return nanoseconds spent in the stage.
+     */
+    public long getNanos(Stage stage) {
+        return nanos[stage.ordinal()].sum();
+    }
+
+    /**
+     * Register the timers with the platform MBean server, so they can be
+     * read with JConsole while a batch runs. Timers registered before are
+     * replaced, one registration at a time. Does nothing if switched off.
+     */
+    public void register() {
+        if(!enabled){
+            return;
+        }
+        synchronized(StageTimers.class){
+            try{
+                ObjectName name = new ObjectName(OBJECT_NAME);
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if(server.isRegistered(name)){
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+            } catch (JMException e){
+                ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String[] getStages() {
+        String[] stages = new String[Stage.values().length];
+        for(Stage stage : Stage.values()){
+            stages[stage.ordinal()] = stage.name();
+        }
+        return stages;
+    }
+
+    @Override
+    public long[] getCounts() {
+        long[] values = new long[counts.length];
+        for(int i = 0; i < counts.length; i++){
+            values[i] = counts[i].sum();
+        }
+        return values;
+    }
+
+    @Override
+    public long[] getNanos() {
+        long[] values = new long[nanos.length];
+        for(int i = 0; i < nanos.length; i++){
+            values[i] = nanos[i].sum();
+        }
+        return values;
+    }
+
+    @Override
+    public String getSummary() {
+        return toString();
+    }
+
+    @Override
+    public void reset() {
+        for(int i = 0; i < counts.length; i++){
+            counts[i].reset();
+            nanos[i].reset();
+        }
+    }
+
+    /**
+     * Format every stage as name=count/milliseconds pairs.
+     * @return formatted stages.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for(Stage stage : Stage.values()){
+            if(out.length() > 0){
+                out.append(", ");
+            }
+            out.append(stage.name()).append('=').append(getCount(stage)).append('/')
+                    .append(String.format("%.3fms", getNanos(stage) / 1e6));
+        }
+        return out.toString();
+    }
+}
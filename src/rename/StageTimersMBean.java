@@ -0,0 +1,43 @@
+package rename;
+
+/**
+ * Management interface of the per stage timers of the rename algorithm,
+ * see {@link StageTimers}.
+ */
+public interface StageTimersMBean {
+
+    /**
+     * Determine if the stages are timed.
+     * @return true if timed, false if the timers are switched off.
+     */
+    boolean isEnabled();
+
+    /**
+     * Retrieve the names of the stages, in the order of the counts and times.
+     * @return names of the stages.
+     */
+    String[] getStages();
+
+    /**
+     * Retrieve how often each stage ran.
+     * @return count of each stage.
+     */
+    long[] getCounts();
+
+    /**
+     * Retrieve the cumulative time spent in each stage.
+     * @return nanoseconds of each stage.
+     */
+    long[] getNanos();
+
+    /**
+     * Format every stage as name=count/milliseconds.
+     * @return formatted stages.
+     */
+    String getSummary();
+
+    /**
+     * Reset every count and time to zero.
+     */
+    void reset();
+}
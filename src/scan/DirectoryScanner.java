@@ -0,0 +1,225 @@
+package scan;
+
+import errorHandle.ErrorHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy scanner of every file under a directory tree.
+ * Files are read from one {@link DirectoryStream} at a time and handed out
+ * as they are found, along with their attributes, so processing starts
+ * with the first file and memory does not grow with the size of the tree.
+ * Only the paths of the directories still to be visited are kept.
+ * Every file of a directory is handed out before any file of its
+ * subdirectories, so the files of a directory are consecutive.
+ * Directories that cannot be read are reported and skipped.
+ */
+public final class DirectoryScanner implements Iterator<DirectoryScanner.ScannedFile>, Closeable {
+
+    /**
+     * A file found by the scanner.
+     */
+    public static final class ScannedFile {
+        /**Path of the file.*/
+        private final Path path;
+        /**Attributes of the file, read when it was found.*/
+        private final BasicFileAttributes attributes;
+
+        private ScannedFile(Path path, BasicFileAttributes attributes) {
+            this.path = path;
+            this.attributes = attributes;
+        }
+
+        /**
+         * Retrieve the path of the file.
+         * @return path.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Retrieve the attributes of the file, read when it was found.
+         * @return attributes.
+         */
+        public BasicFileAttributes getAttributes() {
+            return attributes;
+        }
+    }
+
+    /**Directories still to be scanned, the next one first.*/
+    private final Deque<Path> pending = new ArrayDeque<>();
+    /**Subdirectories found in the directory being scanned.*/
+    private final List<Path> subdirectories = new ArrayList<>();
+    /**Stream of the directory being scanned, null if none is open.*/
+    private DirectoryStream<Path> stream = null;
+    /**Entries of the directory being scanned.*/
+    private Iterator<Path> entries = null;
+    /**Next file to hand out, null if not found yet.*/
+    private ScannedFile next = null;
+
+    /**
+     * Create a scanner of every file under the given directory.
+     * Nothing is read until the first file is asked for.
+     * @param root directory to scan.
+     */
+    public DirectoryScanner(Path root) {
+        pending.add(root);
+    }
+
+    /**
+     * Group directories by the file store they are on, so the directories
+     * of a store can be scanned one after the other and different stores
+     * in parallel, without two scanners seeking on the same disk.
+     * A directory whose file store cannot be determined, such as one that
+     * does not exist, is a group of its own.
+     * @param roots directories to group.
+     * @return groups, in the order of their first directory, each in the given order.
+     */
+    public static List<List<Path>> groupByFileStore(List<Path> roots) {
+        Map<FileStore, List<Path>> stores = new LinkedHashMap<>();
+        List<List<Path>> groups = new ArrayList<>();
+        for(Path root : roots){
+            FileStore store;
+            try{
+                store = Files.getFileStore(root);
+            } catch (IOException e){
+                groups.add(new ArrayList<>(Collections.singletonList(root)));
+                continue;
+            }
+            List<Path> group = stores.get(store);
+            if(group == null){
+                group = new ArrayList<>();
+                stores.put(store, group);
+                groups.add(group);
+            }
+            group.add(root);
+        }
+        return groups;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(next == null){
+            Path entry = nextEntry();
+            if(entry != null){
+                next = scan(entry);
+            } else if(!openNextDirectory()){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public ScannedFile next() {
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        ScannedFile file = next;
+        next = null;
+        return file;
+    }
+
+    /**
+     * Close the directory being scanned. Directories not yet scanned are dropped.
+     */
+    @Override
+    public void close() {
+        closeStream();
+        pending.clear();
+        subdirectories.clear();
+    }
+
+    /**
+     * Read the next entry of the directory being scanned.
+     * @return next entry, null if the directory is done or cannot be read further.
+     */
+    private Path nextEntry() {
+        if(entries == null){
+            return null;
+        }
+        try{
+            return entries.hasNext() ? entries.next() : null;
+        } catch (DirectoryIteratorException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the attributes of a directory entry. Subdirectories are
+     * remembered to be scanned once the current directory is done.
+     * @param entry of the directory being scanned.
+     * @return file found, null if the entry is not a file.
+     */
+    private ScannedFile scan(Path entry) {
+        BasicFileAttributes attributes;
+        try{
+            attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            return null;
+        }
+        if(attributes.isDirectory()){
+            subdirectories.add(entry);
+            return null;
+        }
+        return new ScannedFile(entry, attributes);
+    }
+
+    /**
+     * Close the directory being scanned and open the next one, depth first.
+     * @return true if a directory was opened, false if none are left.
+     */
+    private boolean openNextDirectory() {
+        closeStream();
+        for(int i = subdirectories.size() - 1; i >= 0; i--){
+            pending.addFirst(subdirectories.get(i));
+        }
+        subdirectories.clear();
+        while(!pending.isEmpty()){
+            Path directory = pending.removeFirst();
+            try{
+                stream = Files.newDirectoryStream(directory);
+                entries = stream.iterator();
+                return true;
+            } catch (IOException e){
+                ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Close the stream of the directory being scanned.
+     */
+    private void closeStream() {
+        if(stream == null){
+            return;
+        }
+        try{
+            stream.close();
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+        }
+        stream = null;
+        entries = null;
+    }
+}
@@ -0,0 +1,436 @@
+package scan;
+
+import errorHandle.ErrorHandler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watcher of the files changing under one or more directory trees.
+ * A file is only handed out once it has settled: no event was seen for it
+ * during the settle time, and its size and last modified time are the same
+ * as when it was last seen. A file still being written, such as a download,
+ * keeps being held back until it is complete.
+ * Every file already under the tree when the watcher is created is handed
+ * out as well, once settled. Directories created later are watched along
+ * with the files in them.
+ * Changes of a set of other files, such as settings files, are reported
+ * apart, settled the same way.
+ */
+public final class DirectoryWatcher implements Closeable {
+
+    /**
+     * Files that settled since the last changes were handed out.
+     */
+    public static final class Changes {
+        /**Settled files under the tree, the files of a directory consecutive.*/
+        private final List<Path> files;
+        /**Watched files that changed.*/
+        private final Set<Path> watchedFiles;
+
+        private Changes(List<Path> files, Set<Path> watchedFiles) {
+            this.files = files;
+            this.watchedFiles = watchedFiles;
+        }
+
+        /**
+         * Retrieve the settled files under the tree. The files of a
+         * directory are consecutive.
+         * @return settled files, empty if none.
+         */
+        public List<Path> getFiles() {
+            return files;
+        }
+
+        /**
+         * Retrieve the watched files that changed.
+         * @return changed watched files, empty if none.
+         */
+        public Set<Path> getWatchedFiles() {
+            return watchedFiles;
+        }
+    }
+
+    /**
+     * A file waiting to settle.
+     */
+    private static final class Candidate {
+        /**Size of the file when last seen, -1 if it did not exist.*/
+        private long size;
+        /**Last modified time of the file when last seen.*/
+        private long modified;
+        /**Time of the last event of the file, in nanos.*/
+        private long lastEvent;
+
+        private Candidate(Path path, long lastEvent) {
+            observe(path, lastEvent);
+        }
+
+        /**
+         * Remember the size and last modified time of the file.
+         * @param path of the file.
+         * @param time of the event, in nanos.
+         */
+        private void observe(Path path, long time) {
+            BasicFileAttributes attributes = attributes(path);
+            size = attributes == null ? -1 : attributes.size();
+            modified = attributes == null ? 0 : attributes.lastModifiedTime().toMillis();
+            lastEvent = time;
+        }
+
+        /**
+         * Determine if the file is as it was last seen.
+         * @param attributes of the file now, null if it does not exist.
+         * @return true if unchanged, false otherwise.
+         */
+        private boolean matches(BasicFileAttributes attributes) {
+            if(attributes == null){
+                return size == -1;
+            }
+            return size == attributes.size() && modified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**Directory trees watched.*/
+    private final List<Path> roots = new ArrayList<>();
+    /**Other files watched, outside or inside the tree.*/
+    private final Set<Path> watchedFiles = new HashSet<>();
+    /**Time without events for a file to settle, in nanos.*/
+    private final long settleNanos;
+    /**Service the directories are registered with.*/
+    private final WatchService service;
+    /**Registered directories, by key.*/
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /**Files under the tree waiting to settle.*/
+    private final Map<Path, Candidate> pending = new HashMap<>();
+    /**Watched files waiting to settle.*/
+    private final Map<Path, Candidate> pendingWatched = new HashMap<>();
+    /**Files not to be handed out while unchanged, see {@link #ignore(Path)}.*/
+    private final Map<Path, Candidate> ignored = new ConcurrentHashMap<>();
+
+    /**
+     * Create a watcher of the files under a directory tree and start
+     * watching. Every file already under the tree is waiting to settle.
+     * @param root directory tree to watch.
+     * @param watchedFiles other files to report changes of.
+     * @param settleMillis time without events for a file to settle.
+     * @throws IOException if the watch service cannot be created.
+     */
+    public DirectoryWatcher(Path root, Collection<Path> watchedFiles, long settleMillis) throws IOException {
+        this(Collections.singletonList(root), watchedFiles, settleMillis);
+    }
+
+    /**
+     * Create a watcher of the files under several directory trees and
+     * start watching. Every file already under the trees is waiting to settle.
+     * @param roots directory trees to watch.
+     * @param watchedFiles other files to report changes of.
+     * @param settleMillis time without events for a file to settle.
+     * @throws IOException if the watch service cannot be created.
+     */
+    public DirectoryWatcher(List<Path> roots, Collection<Path> watchedFiles, long settleMillis) throws IOException {
+        for(Path root : roots){
+            this.roots.add(root.toAbsolutePath().normalize());
+        }
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.service = FileSystems.getDefault().newWatchService();
+        for(Path file : watchedFiles){
+            Path watchedFile = file.toAbsolutePath().normalize();
+            this.watchedFiles.add(watchedFile);
+            if(watchedFile.getParent() != null && !isUnderRoot(watchedFile)){
+                register(watchedFile.getParent());
+            }
+        }
+        long now = System.nanoTime();
+        for(Path root : this.roots){
+            addTree(root, now);
+        }
+    }
+
+    /**
+     * Wait for files to settle.
+     * @return changes, with at least one file.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws java.nio.file.ClosedWatchServiceException if the watcher is closed.
+     */
+    public Changes take() throws InterruptedException {
+        Changes changes;
+        do{
+            changes = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } while(changes == null);
+        return changes;
+    }
+
+    /**
+     * Wait for files to settle, up to the given time.
+     * @param timeout to wait for.
+     * @param unit of the timeout.
+     * @return changes, with at least one file, null if none settled in time.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws java.nio.file.ClosedWatchServiceException if the watcher is closed.
+     */
+    public Changes poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        long now = start;
+        long timeoutNanos = unit.toNanos(timeout);
+        while(true){
+            Changes changes = settle(now);
+            if(changes != null){
+                return changes;
+            }
+            long remaining = timeoutNanos - (now - start);
+            if(remaining <= 0){
+                return null;
+            }
+            long wait = Math.min(remaining, untilNextSettle(now));
+            WatchKey key = wait <= 0 ? service.poll() : service.poll(wait, TimeUnit.NANOSECONDS);
+            while(key != null){
+                handle(key);
+                key = service.poll();
+            }
+            now = System.nanoTime();
+        }
+    }
+
+    /**
+     * Do not hand out a file while it is as it is now, such as a file the
+     * caller just renamed or created itself.
+     * @param path of the file.
+     */
+    public void ignore(Path path) {
+        Path file = path.toAbsolutePath().normalize();
+        Candidate candidate = new Candidate(file, 0);
+        if(candidate.size != -1){
+            ignored.put(file, candidate);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        service.close();
+    }
+
+    /**
+     * Take in the events of a registered directory.
+     * @param key of the directory.
+     */
+    private void handle(WatchKey key) {
+        Path directory = directories.get(key);
+        long now = System.nanoTime();
+        for(WatchEvent<?> event : key.pollEvents()){
+            if(event.kind() == StandardWatchEventKinds.OVERFLOW){
+                /*Events were lost, every file may have changed.*/
+                for(Path watchedFile : watchedFiles){
+                    observe(pendingWatched, watchedFile, now);
+                }
+                for(Path root : roots){
+                    addTree(root, now);
+                }
+                continue;
+            }
+            if(directory == null){
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if(watchedFiles.contains(path)){
+                observe(pendingWatched, path, now);
+            } else if(isUnderRoot(path)){
+                if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE){
+                    pending.remove(path);
+                } else if(Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)){
+                    if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE){
+                        addTree(path, now);
+                    }
+                } else {
+                    observe(pending, path, now);
+                }
+            }
+        }
+        if(!key.reset()){
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Hand out every file that settled, if any.
+     * @param now current time, in nanos.
+     * @return changes, null if no file settled.
+     */
+    private Changes settle(long now) {
+        List<Path> files = new ArrayList<>();
+        Iterator<Map.Entry<Path, Candidate>> candidates = pending.entrySet().iterator();
+        while(candidates.hasNext()){
+            Map.Entry<Path, Candidate> entry = candidates.next();
+            Path path = entry.getKey();
+            Candidate candidate = entry.getValue();
+            if(now - candidate.lastEvent < settleNanos){
+                continue;
+            }
+            BasicFileAttributes attributes = attributes(path);
+            if(attributes == null || !attributes.isRegularFile()){
+                candidates.remove();
+            } else if(!candidate.matches(attributes)){
+                /*Still being written without events, wait again.*/
+                candidate.observe(path, now);
+            } else {
+                candidates.remove();
+                Candidate skip = ignored.remove(path);
+                if(skip == null || !skip.matches(attributes)){
+                    files.add(path);
+                }
+            }
+        }
+        Set<Path> changedWatchedFiles = new HashSet<>();
+        candidates = pendingWatched.entrySet().iterator();
+        while(candidates.hasNext()){
+            Map.Entry<Path, Candidate> entry = candidates.next();
+            Candidate candidate = entry.getValue();
+            if(now - candidate.lastEvent < settleNanos){
+                continue;
+            }
+            if(!candidate.matches(attributes(entry.getKey()))){
+                candidate.observe(entry.getKey(), now);
+            } else {
+                candidates.remove();
+                changedWatchedFiles.add(entry.getKey());
+            }
+        }
+        if(files.isEmpty() && changedWatchedFiles.isEmpty()){
+            return null;
+        }
+        /*Sorted by directory, so the files of a directory are consecutive.*/
+        files.sort((first, second) -> {
+            int compare = String.valueOf(first.getParent()).compareTo(String.valueOf(second.getParent()));
+            return compare != 0 ? compare : first.compareTo(second);
+        });
+        return new Changes(files, Collections.unmodifiableSet(changedWatchedFiles));
+    }
+
+    /**
+     * Determine how long until the next file can settle.
+     * @param now current time, in nanos.
+     * @return time to wait, in nanos, {@link Long#MAX_VALUE} if no file is waiting.
+     */
+    private long untilNextSettle(long now) {
+        long wait = Long.MAX_VALUE;
+        for(Candidate candidate : pending.values()){
+            wait = Math.min(wait, candidate.lastEvent + settleNanos - now);
+        }
+        for(Candidate candidate : pendingWatched.values()){
+            wait = Math.min(wait, candidate.lastEvent + settleNanos - now);
+        }
+        return wait;
+    }
+
+    /**
+     * Note an event of a file, the file has to settle again.
+     * @param candidates the file waits in.
+     * @param path of the file.
+     * @param now time of the event, in nanos.
+     */
+    private static void observe(Map<Path, Candidate> candidates, Path path, long now) {
+        Candidate candidate = candidates.get(path);
+        if(candidate == null){
+            candidates.put(path, new Candidate(path, now));
+        } else {
+            candidate.observe(path, now);
+        }
+    }
+
+    /**
+     * Register every directory of a tree, and note every file in it.
+     * Directories that cannot be read are reported and skipped.
+     * @param directory top of the tree.
+     * @param now time the tree was found, in nanos.
+     */
+    private void addTree(Path directory, long now) {
+        try{
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if(attributes.isRegularFile() && !watchedFiles.contains(file)){
+                        observe(pending, file, now);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * Determine if a path is under one of the watched trees.
+     * @param path to check.
+     * @return true if under a tree, false otherwise.
+     */
+    private boolean isUnderRoot(Path path) {
+        for(Path root : roots){
+            if(path.startsWith(root)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Register a directory with the watch service.
+     * @param directory to register.
+     */
+    private void register(Path directory) {
+        try{
+            WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            directories.put(key, directory);
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * Read the attributes of a file.
+     * @param path of the file.
+     * @return attributes, null if the file does not exist.
+     */
+    private static BasicFileAttributes attributes(Path path) {
+        try{
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e){
+            return null;
+        }
+    }
+}
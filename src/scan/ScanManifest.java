@@ -0,0 +1,200 @@
+package scan;
+
+import utilities.AppendOnlyLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On disk manifest of the files handled by earlier runs.
+ * Maps the path of a file left in place by a run to its size and last
+ * modified time at the time, along with what the run did with it, so
+ * the next run can skip the file as long as it is unchanged, from its
+ * attributes alone. Files moved away by a run, such as copied files,
+ * are not recorded, there is nothing left to skip.
+ * Entries are only valid for the settings and rule files they were
+ * handled with, see {@link #version(List)}, every file is handled again
+ * once any of them changes.
+ * The manifest file is an {@link AppendOnlyLog}, read the first time it
+ * is needed. Entries of other versions, replaced
+ * by a later entry, or of files that no longer exist are dropped when the
+ * file is compacted. Entries of files a run did not come across, such as
+ * files under other roots, are kept.
+ */
+public final class ScanManifest {
+    /**Separates the fields of a manifest entry.*/
+    private static final String FIELD_SEPARATOR = "\t";
+    /**Number of fields in a manifest entry, the path is the last one.*/
+    private static final int FIELD_COUNT = 5;
+
+    /**
+     * What a run did with a file it left in place.
+     */
+    public enum Outcome {
+        /**The file was renamed, and not copied.*/
+        RENAMED,
+        /**The file kept its name, no name was determined or the user declined it.*/
+        NOT_RENAMED,
+        /**The file was queued for review.*/
+        QUEUED
+    }
+
+    /**
+     * Attributes of a single handled file.
+     */
+    private static final class Entry {
+        private final long size;
+        private final long modified;
+        private final Outcome outcome;
+
+        private Entry(long size, long modified, Outcome outcome) {
+            this.size = size;
+            this.modified = modified;
+            this.outcome = outcome;
+        }
+    }
+
+    /**Hash of the settings and rule files the entries are valid for.*/
+    private final String version;
+    /**Entries of the current version keyed by path.*/
+    private final AppendOnlyLog<Entry> log;
+
+    /**
+     * Create a new manifest backed by the given file.
+     * The file is not read until the manifest is first used.
+     * @param manifestFile path of the manifest file, created if it does not exist.
+     * @param version hash of the settings and rule files files are handled with.
+     */
+    public ScanManifest(String manifestFile, String version) {
+        this.version = version;
+        this.log = new AppendOnlyLog<>(manifestFile, this::encode);
+    }
+
+    /**
+     * Determine if a file was handled by an earlier run and has not
+     * changed since.
+     * @param path of the file.
+     * @param attributes of the file now.
+     * @return true if the file can be skipped, false otherwise.
+     */
+    public boolean isUnchanged(Path path, BasicFileAttributes attributes) {
+        load();
+        String key = path.toString();
+        Entry entry = log.get(key);
+        if(entry == null || entry.size != attributes.size()
+                || entry.modified != attributes.lastModifiedTime().toMillis()){
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record what was done with a file left in place, along with its
+     * attributes now. Files that no longer exist are not recorded.
+     * @param path of the file, after it was renamed.
+     * @param outcome what was done with the file.
+     */
+    public void record(String path, Outcome outcome) {
+        /*A path split over lines cannot be written as an entry, such a
+        * file is handled on every run.*/
+        if(path.contains("\n") || path.contains("\r")){
+            return;
+        }
+        BasicFileAttributes attributes;
+        try{
+            attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+        } catch (IOException | RuntimeException e){
+            return;
+        }
+        load();
+        log.put(path, new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), outcome));
+    }
+
+    /**
+     * Write the entries recorded since the last save to the manifest file.
+     * If most of the file is made up of entries of other versions or
+     * replaced by a later entry, the file is rewritten with only the
+     * current entries of the files that still exist.
+     */
+    public void save() {
+        log.save(path -> Files.exists(Paths.get(path)));
+    }
+
+    /**
+     * Compute the hash identifying the contents of a set of files, such
+     * as the settings and rule files a run handles files with.
+     * @param files to hash, in a fixed order. Missing files hash as empty.
+     * @return hex encoded hash.
+     */
+    public static String version(List<Path> files) {
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for(Path file : files){
+                digest.update(file.toString().getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                try{
+                    digest.update(Files.readAllBytes(file));
+                } catch (IOException e){
+                    //hashed as empty
+                }
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for(byte b : digest.digest()){
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read the manifest file the first time the manifest is used.
+     * Only entries of the current version are kept, the last entry of a
+     * path wins.
+     */
+    private void load() {
+        if(!log.isLoaded()){
+            log.load(this::read);
+        }
+    }
+
+    /**
+     * Read a line of the manifest file.
+     * @param line to read.
+     * @return path and entry, null if the line is of another version or damaged.
+     */
+    private Map.Entry<String, Entry> read(String line) {
+        String[] fields = line.split(FIELD_SEPARATOR, FIELD_COUNT);
+        if(fields.length != FIELD_COUNT || !version.equals(fields[0])){
+            return null;
+        }
+        try{
+            return new AbstractMap.SimpleImmutableEntry<>(fields[4], new Entry(Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]), Outcome.valueOf(fields[3])));
+        } catch (IllegalArgumentException e){
+            return null; //damaged entry, the file is handled again
+        }
+    }
+
+    /**
+     * Encode a manifest entry as a single line.
+     * @param path of the file.
+     * @param entry attributes of the file.
+     * @return encoded line.
+     */
+    private String encode(String path, Entry entry) {
+        return version + FIELD_SEPARATOR + entry.size + FIELD_SEPARATOR + entry.modified + FIELD_SEPARATOR
+                + entry.outcome.name() + FIELD_SEPARATOR + path;
+    }
+}
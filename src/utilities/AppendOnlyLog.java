@@ -0,0 +1,175 @@
+package utilities;
+
+import errorHandle.ErrorHandler;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Keyed entries kept in an append only log file, one entry per line.
+ * The file is read once, the last entry of a key wins. Entries put
+ * afterwards are appended on save. Once most of the file is made up of
+ * lines that are replaced by a later entry or not read back, such as
+ * entries of another version, the file is rewritten with the current
+ * entries alone.
+ * @param <E> type of the entries.
+ */
+public final class AppendOnlyLog<E> {
+    /**Location of the log file.*/
+    private final File logFile;
+    /**Encodes an entry along with its key as a single line.*/
+    private final BiFunction<String, E, String> encoder;
+    /**Current entries keyed as they are read and put.*/
+    private final ConcurrentHashMap<String, E> entries = new ConcurrentHashMap<>();
+    /**Encoded entries put since the last save.*/
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    /**True once the log file has been read.*/
+    private volatile boolean loaded = false;
+    /**Number of lines in the log file.*/
+    private int fileLines = 0;
+
+    /**
+     * Create a new log backed by the given file.
+     * The file is not read until {@link #load(Function)} is called.
+     * @param logFile path of the log file, created if it does not exist.
+     * @param encoder encodes an entry along with its key as a single line.
+     */
+    public AppendOnlyLog(String logFile, BiFunction<String, E, String> encoder) {
+        this.logFile = new File(logFile);
+        this.encoder = encoder;
+    }
+
+    /**
+     * Read the log file unless it has been read already.
+     * @param decoder decodes a line to its key and entry, null if the
+     *                line is to be skipped.
+     */
+    public synchronized void load(Function<String, Map.Entry<String, E>> decoder) {
+        if(loaded){
+            return;
+        }
+        if(logFile.exists()){
+            try(BufferedReader reader = Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)){
+                String line;
+                while((line = reader.readLine()) != null){
+                    fileLines++;
+                    Map.Entry<String, E> entry = decoder.apply(line);
+                    if(entry != null){
+                        entries.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            } catch (IOException e){
+                ErrorHandler.printError(e.getClass().getName() + ": " + e.getMessage());
+                entries.clear();
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * Determine if the log file has been read.
+     * @return true if read, false otherwise.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Retrieve the current entry of a key.
+     * @param key of the entry.
+     * @return entry, null if there is none.
+     */
+    public E get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Replace the entry of a key, the line of the entry is written on the next save.
+     * @param key of the entry.
+     * @param entry new entry.
+     */
+    public void put(String key, E entry) {
+        entries.put(key, entry);
+        pending.add(encoder.apply(key, entry));
+    }
+
+    /**
+     * Write the entries put since the last save to the log file, or
+     * rewrite the file if most of it is out of date.
+     * @param keep determines if the entry of a key is still wanted when
+     *             the file is rewritten, entries not wanted are dropped.
+     */
+    public synchronized void save(Predicate<String> keep) {
+        if(!loaded){
+            return; //never used
+        }
+        try{
+            if(fileLines + pending.size() > 2 * entries.size()){
+                compact(keep);
+            } else {
+                append();
+            }
+        } catch (IOException e){
+            ErrorHandler.printError(e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Append the pending entries to the log file.
+     * @throws IOException if the log file cannot be written.
+     */
+    private void append() throws IOException {
+        if(pending.isEmpty()){
+            return;
+        }
+        try(BufferedWriter writer = Files.newBufferedWriter(logFile.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)){
+            String line;
+            while((line = pending.poll()) != null){
+                writer.write(line);
+                writer.newLine();
+                fileLines++;
+            }
+        }
+    }
+
+    /**
+     * Rewrite the log file with only the current entries that are still wanted.
+     * @param keep determines if the entry of a key is still wanted.
+     * @throws IOException if the log file cannot be written.
+     */
+    private void compact(Predicate<String> keep) throws IOException {
+        /*Pending entries are in the entries already, entries put from
+        * here on stay pending and are appended by the next save.*/
+        while(pending.poll() != null){
+            //written with the entries
+        }
+        File temp = new File(logFile.getPath() + ".tmp");
+        int lines = 0;
+        try(BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8)){
+            for(Map.Entry<String, E> entry : entries.entrySet()){
+                if(!keep.test(entry.getKey())){
+                    entries.remove(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                writer.write(encoder.apply(entry.getKey(), entry.getValue()));
+                writer.newLine();
+                lines++;
+            }
+        }
+        Files.move(temp.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        fileLines = lines;
+    }
+}
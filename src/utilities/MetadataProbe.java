@@ -0,0 +1,125 @@
+package utilities;
+
+import errorHandle.ErrorHandler;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Existence checks of files, issued together.
+ * On a network share every check is a round trip. With a concurrency
+ * greater than one, the checks of a lookup are all sent at once to a
+ * shared pool of threads, so a file waits on its slowest check instead of
+ * the sum of them. The pool is shared by every lookup, its size caps how
+ * many checks are in flight at any time.
+ * With the default concurrency of one, a check is only made when its
+ * result is asked for, exactly as if it was made in place.
+ */
+public final class MetadataProbe {
+
+    /**
+     * Existence of a set of paths, read in any order.
+     */
+    public static final class Lookup {
+        /**Paths to check.*/
+        private final String[] paths;
+        /**Pending checks, null if checked on demand.*/
+        private final Future<Boolean>[] pending;
+        /**Checked existence of each path, null until asked for.*/
+        private final Boolean[] results;
+
+        @SuppressWarnings("unchecked")
+        private Lookup(String[] paths, ExecutorService pool) {
+            this.paths = paths;
+            this.results = new Boolean[paths.length];
+            if(pool == null){
+                this.pending = null;
+                return;
+            }
+            this.pending = (Future<Boolean>[]) new Future<?>[paths.length];
+            for(int i = 0; i < paths.length; i++){
+                String path = paths[i];
+                pending[i] = pool.submit(() -> Utilities.fileExists(path));
+            }
+        }
+
+        /**
+         * Determine if a path of the lookup exists.
+         * @param index of the path in the lookup.
+         * @return true if exists, false if not exists.
+         */
+        public boolean exists(int index) {
+            if(results[index] == null){
+                results[index] = pending == null ? Utilities.fileExists(paths[index]) : await(index);
+            }
+            return results[index];
+        }
+
+        /**
+         * Wait for a pending check.
+         * @param index of the path in the lookup.
+         * @return true if exists, false if not exists or the check failed.
+         */
+        private boolean await(int index) {
+            try{
+                return pending[index].get();
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e){
+                ErrorHandler.printError(e.getClass().getName()+": "+e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /**Seconds an idle thread of a pool is kept.*/
+    private static final long IDLE_SECONDS = 30;
+
+    /**Pool the checks are sent to, null if checked on demand.*/
+    private static volatile ExecutorService pool = null;
+    /**Maximum checks in flight of the current pool.*/
+    private static int concurrency = 1;
+
+    private MetadataProbe() {
+    }
+
+    /**
+     * Set how many existence checks can be in flight at once.
+     * The pool is only replaced if the concurrency changed. A replaced pool
+     * is not shut down, lookups made by a batch still running may send
+     * their checks to it; its threads end once they are idle.
+     * @param concurrency maximum checks in flight, one or less to check on demand.
+     */
+    public static synchronized void setConcurrency(int concurrency) {
+        concurrency = Math.max(concurrency, 1);
+        if(concurrency == MetadataProbe.concurrency){
+            return;
+        }
+        MetadataProbe.concurrency = concurrency;
+        if(concurrency == 1){
+            pool = null;
+            return;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, IDLE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "metadata");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        pool = executor;
+    }
+
+    /**
+     * Check the existence of every given path.
+     * @param paths to check.
+     * @return lookup to read the existence of each path from.
+     */
+    public static Lookup exists(String... paths) {
+        return new Lookup(paths, pool);
+    }
+}
@@ -6,7 +6,9 @@ import errorHandle.ErrorHandler;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -46,6 +48,24 @@ public class Utilities {
         return map;
     }
 
+    /**
+     * Helper routine to split the rename directories that are specified
+     * by the settings file input from {@link Constants#DEFAULT_RENAME_DIRECTORY}.
+     * @param input String value that is pulled from the settings file,
+     *              this value should be in the following format:
+     *              #Location#;...
+     * @return every location, in the given order.
+     */
+    public static List<String> determineRenameDirs(String input){
+        List<String> directories = new ArrayList<>();
+        for(String directory : input.split(";")){
+            if(!directory.trim().isEmpty()){
+                directories.add(directory.trim());
+            }
+        }
+        return directories;
+    }
+
     /**
      * Generate hashMap that has all the loaded settings for
      * this application.
@@ -0,0 +1,107 @@
+import junit.framework.TestCase;
+import scan.DirectoryScanner;
+import utilities.Utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Set of tests to test the streaming directory scanner.
+ */
+public class TestDirectoryScannerTest extends TestCase {
+    /**Directory tree scanned by these tests.*/
+    private static final String SCAN_DIRECTORY = "scanTest";
+
+    public void setUp() throws Exception{
+        Utilities.deleteFolder(SCAN_DIRECTORY);
+        super.setUp();
+    }
+
+    public void tearDown() throws Exception{
+        Utilities.deleteFolder(SCAN_DIRECTORY);
+        super.tearDown();
+    }
+
+    /**
+     * Create an empty file, along with its directories.
+     * @param path of the file under the scanned directory.
+     * @throws IOException if the file cannot be created.
+     */
+    private static void createFile(String path) throws IOException {
+        File file = new File(SCAN_DIRECTORY, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[file.getName().length()]);
+    }
+
+    /**
+     * Every file of the tree is found once along with its attributes,
+     * and the files of a directory come before its subdirectories.
+     */
+    public void testScanFindsEveryFileDirectoryByDirectory() throws IOException {
+        createFile("Show/Show - 01.mkv");
+        createFile("Show/Show - 02.mkv");
+        createFile("Show/Extras/Show - OVA.mkv");
+        createFile("Movies/Movie (2016).mkv");
+        createFile("top.mkv");
+        new File(SCAN_DIRECTORY, "Empty").mkdirs();
+
+        List<Path> found = new ArrayList<>();
+        try(DirectoryScanner scanner = new DirectoryScanner(new File(SCAN_DIRECTORY).toPath())){
+            while(scanner.hasNext()){
+                DirectoryScanner.ScannedFile file = scanner.next();
+                assertTrue(file.getAttributes().isRegularFile());
+                assertEquals(file.getPath().getFileName().toString().length(), file.getAttributes().size());
+                found.add(file.getPath());
+            }
+        }
+        assertEquals(5, found.size());
+        assertEquals(5, new HashSet<>(found).size());
+        assertEquals(new File(SCAN_DIRECTORY, "top.mkv").toPath(), found.get(0));
+
+        /*Files of the same directory are consecutive.*/
+        List<Path> directories = new ArrayList<>();
+        for(Path path : found){
+            Path parent = path.getParent();
+            if(directories.isEmpty() || !directories.get(directories.size() - 1).equals(parent)){
+                assertFalse(parent.toString(), directories.contains(parent));
+                directories.add(parent);
+            }
+        }
+        assertEquals(4, directories.size());
+        assertTrue(directories.indexOf(new File(SCAN_DIRECTORY, "Show").toPath()) <
+                directories.indexOf(new File(SCAN_DIRECTORY, "Show/Extras").toPath()));
+    }
+
+    /**
+     * A directory that does not exist has no files.
+     */
+    public void testScanMissingDirectory() {
+        DirectoryScanner scanner = new DirectoryScanner(new File(SCAN_DIRECTORY, "missing").toPath());
+        assertFalse(scanner.hasNext());
+        scanner.close();
+    }
+
+    /**
+     * Directories on the same file store are one group, in the given order,
+     * and a directory whose file store is unknown is a group of its own.
+     */
+    public void testGroupByFileStore() throws IOException {
+        createFile("First/Show - 01.mkv");
+        createFile("Second/Show - 02.mkv");
+        Path first = new File(SCAN_DIRECTORY, "First").toPath();
+        Path second = new File(SCAN_DIRECTORY, "Second").toPath();
+        Path missing = new File(SCAN_DIRECTORY, "missing").toPath();
+
+        List<List<Path>> groups = DirectoryScanner.groupByFileStore(Arrays.asList(second, missing, first));
+        assertEquals(2, groups.size());
+        assertEquals(Arrays.asList(second, first), groups.get(0));
+        assertEquals(Collections.singletonList(missing), groups.get(1));
+    }
+}
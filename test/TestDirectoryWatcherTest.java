@@ -0,0 +1,150 @@
+import junit.framework.TestCase;
+import scan.DirectoryWatcher;
+import utilities.Utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Set of tests to test the directory watcher of the watch mode.
+ */
+public class TestDirectoryWatcherTest extends TestCase {
+    /**Directory tree watched by these tests.*/
+    private static final String WATCH_DIRECTORY = "watchTest";
+    /**Settings file watched by these tests.*/
+    private static final String SETTINGS_FILE = "watchTestSettings.txt";
+    /**Time a file has to go unchanged in these tests.*/
+    private static final long SETTLE_MILLIS = 200;
+
+    public void setUp() throws Exception{
+        Utilities.deleteFolder(WATCH_DIRECTORY);
+        Utilities.deleteFile(SETTINGS_FILE);
+        new File(WATCH_DIRECTORY).mkdirs();
+        super.setUp();
+    }
+
+    public void tearDown() throws Exception{
+        Utilities.deleteFolder(WATCH_DIRECTORY);
+        Utilities.deleteFile(SETTINGS_FILE);
+        super.tearDown();
+    }
+
+    /**
+     * Create a file with some content, along with its directories.
+     * @param path of the file under the watched directory.
+     * @return path of the file.
+     * @throws IOException if the file cannot be created.
+     */
+    private static Path createFile(String path) throws IOException {
+        File file = new File(WATCH_DIRECTORY, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[file.getName().length()]);
+        return file.toPath().toAbsolutePath().normalize();
+    }
+
+    /**
+     * Files already in the tree and files created later, in new
+     * directories as well, are handed out once settled.
+     */
+    public void testExistingAndNewFilesSettle() throws Exception {
+        Path existing = createFile("Show/Show - 01.mkv");
+        try(DirectoryWatcher watcher = new DirectoryWatcher(new File(WATCH_DIRECTORY).toPath(),
+                Collections.emptyList(), SETTLE_MILLIS)){
+            DirectoryWatcher.Changes changes = watcher.poll(5, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertEquals(Collections.singletonList(existing), changes.getFiles());
+            assertTrue(changes.getWatchedFiles().isEmpty());
+
+            Path created = createFile("Other/Other - 01.mkv");
+            changes = watcher.poll(5, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertEquals(Collections.singletonList(created), changes.getFiles());
+
+            /*Nothing changed since.*/
+            assertNull(watcher.poll(2 * SETTLE_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Files of every watched tree are handed out.
+     */
+    public void testSeveralTrees() throws Exception {
+        Path first = createFile("First/Show - 05.mkv");
+        new File(WATCH_DIRECTORY, "Second").mkdirs();
+        try(DirectoryWatcher watcher = new DirectoryWatcher(Arrays.asList(new File(WATCH_DIRECTORY, "First").toPath(),
+                new File(WATCH_DIRECTORY, "Second").toPath()), Collections.emptyList(), SETTLE_MILLIS)){
+            assertEquals(Collections.singletonList(first), watcher.poll(5, TimeUnit.SECONDS).getFiles());
+            Path second = createFile("Second/Show - 06.mkv");
+            DirectoryWatcher.Changes changes = watcher.poll(5, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertEquals(Collections.singletonList(second), changes.getFiles());
+        }
+    }
+
+    /**
+     * A file still being written is held back until it stops changing.
+     */
+    public void testGrowingFileIsHeldBack() throws Exception {
+        try(DirectoryWatcher watcher = new DirectoryWatcher(new File(WATCH_DIRECTORY).toPath(),
+                Collections.emptyList(), SETTLE_MILLIS)){
+            File download = new File(WATCH_DIRECTORY, "Show - 02.mkv");
+            Thread writer = new Thread(() -> {
+                try(OutputStream out = Files.newOutputStream(download.toPath())){
+                    for(int i = 0; i < 8; i++){
+                        out.write(new byte[1024]);
+                        out.flush();
+                        Thread.sleep(SETTLE_MILLIS / 2);
+                    }
+                } catch (IOException | InterruptedException e){
+                    throw new IllegalStateException(e);
+                }
+            });
+            writer.start();
+            DirectoryWatcher.Changes changes = watcher.poll(10, TimeUnit.SECONDS);
+            assertFalse(writer.isAlive());
+            assertNotNull(changes);
+            assertEquals(1, changes.getFiles().size());
+            assertEquals(8 * 1024, Files.size(changes.getFiles().get(0)));
+        }
+    }
+
+    /**
+     * Changes of a watched file are reported apart from the files of the tree.
+     */
+    public void testWatchedFileChange() throws Exception {
+        Files.write(new File(SETTINGS_FILE).toPath(), "UserInteraction: TRUE".getBytes());
+        try(DirectoryWatcher watcher = new DirectoryWatcher(new File(WATCH_DIRECTORY).toPath(),
+                Collections.singletonList(new File(SETTINGS_FILE).toPath()), SETTLE_MILLIS)){
+            Files.write(new File(SETTINGS_FILE).toPath(), "UserInteraction: FALSE".getBytes());
+            DirectoryWatcher.Changes changes = watcher.poll(5, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertTrue(changes.getFiles().isEmpty());
+            assertEquals(Collections.singleton(new File(SETTINGS_FILE).toPath().toAbsolutePath().normalize()),
+                    changes.getWatchedFiles());
+        }
+    }
+
+    /**
+     * A file the caller renamed itself is not handed out again.
+     */
+    public void testIgnoredFileIsNotHandedOut() throws Exception {
+        Path original = createFile("Show - 03.mkv");
+        try(DirectoryWatcher watcher = new DirectoryWatcher(new File(WATCH_DIRECTORY).toPath(),
+                Collections.emptyList(), SETTLE_MILLIS)){
+            assertEquals(Collections.singletonList(original), watcher.poll(5, TimeUnit.SECONDS).getFiles());
+            Path renamed = original.resolveSibling("Show S01E03.mkv");
+            Files.move(original, renamed);
+            watcher.ignore(renamed);
+            Path created = createFile("Show - 04.mkv");
+            DirectoryWatcher.Changes changes = watcher.poll(5, TimeUnit.SECONDS);
+            assertNotNull(changes);
+            assertEquals(Collections.singletonList(created), changes.getFiles());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import junit.framework.TestCase;
+import rename.FilenameRules;
+import rename.MediaFile;
+import rename.Rename;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Set of tests to test the user defined filename rules.
+ */
+public class TestFilenameRulesTest extends TestCase {
+    /**Rule for "Title - Part # of #" filenames.*/
+    private static final String PART_OF_RULE = "PartOf: (?<title>.+?) - Part (?<episode>\\d+) of \\d+";
+    /*Settings without any special cases.*/
+    private HashMap<String, String> settings = new HashMap<>();
+    private HashMap<String, String> specialRenameCases = new HashMap<>();
+    private HashMap<String, String> specialEpisodeCases = new HashMap<>();
+
+    /**
+     * Rename a single file with the given rule lines.
+     * @param originalFileName to rename.
+     * @param rules lines of the filename rules file.
+     * @return formatted output of the renamed file.
+     */
+    private String renameWithRules(String originalFileName, String... rules){
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases, null,
+                new FilenameRules(Arrays.asList(rules)));
+        MediaFile mediaFile = new MediaFile(originalFileName);
+        renameModule.rename(mediaFile);
+        return mediaFile.toString();
+    }
+
+    /**
+     * The default rule set renames as the built-in algorithm does.
+     */
+    public void testDefaultRulesMatchBuiltin(){
+        String originalFileName = "Nature Doc - Part 7 of 12.mkv";
+        MediaFile mediaFile = new MediaFile(originalFileName);
+        new Rename(settings, specialRenameCases, specialEpisodeCases).rename(mediaFile);
+        assertEquals(mediaFile.toString(), renameWithRules(originalFileName, FilenameRules.DEFAULT_BUILTIN_RULE));
+        assertEquals("Nature Doc Part S07E12.mkv", mediaFile.toString());
+    }
+
+    /**
+     * A rule before the built-in algorithm takes precedence over it,
+     * with season 01 when the rule has no season.
+     */
+    public void testRuleBeforeBuiltin(){
+        assertEquals("Nature Doc S01E07.mkv", renameWithRules("Nature Doc - Part 7 of 12.mkv",
+                PART_OF_RULE, FilenameRules.DEFAULT_BUILTIN_RULE));
+    }
+
+    /**
+     * A rule after the built-in algorithm is only tried when the
+     * built-in algorithm finds nothing or is not confident in what it
+     * found, and then is taken over the built-in result.
+     */
+    public void testRuleAfterBuiltin(){
+        String lectureRule = "Lecture: (?<title>Lecture \\d+) Part (?<episode>\\d+)";
+        assertEquals("Lecture 1234567 S01E12345.mkv", renameWithRules("Lecture 1234567 Part 12345.mkv",
+                FilenameRules.DEFAULT_BUILTIN_RULE, lectureRule));
+        assertEquals("Nature Doc S01E07.mkv", renameWithRules("Nature Doc - Part 7 of 12.mkv",
+                FilenameRules.DEFAULT_BUILTIN_RULE, PART_OF_RULE));
+        assertEquals("Nature Doc S01E05.mkv", renameWithRules("Nature Doc 05.mkv",
+                FilenameRules.DEFAULT_BUILTIN_RULE, "Digits: (?<title>.+?) (?<season>\\d)(?<episode>\\d)"));
+    }
+
+    /**
+     * Drop rules remove tags before the rules are tried, and the title
+     * of a rule is exchanged with the special rename cases.
+     */
+    public void testDropRuleAndSpecialRename(){
+        specialRenameCases.put("Nature Doc", "Nature Documentary");
+        assertEquals("Nature Documentary S01E07.mkv", renameWithRules("Nature Doc - Part 7 of 12 REPACK-GRP.mkv",
+                FilenameRules.DROP + ": \\s*REPACK-\\w+", PART_OF_RULE));
+    }
+
+    /**
+     * Without the built-in rule, files that no rule matches are not renamed.
+     */
+    public void testRulesWithoutBuiltin(){
+        assertNull(renameWithRules("Show.Name.S02E05.1080p.WEB.mkv", PART_OF_RULE));
+        assertEquals("Show Name S02E05.mkv", renameWithRules("Show.Name.S02E05.1080p.WEB.mkv",
+                "Dotted: (?<title>.+?)\\.S(?<season>\\d{2})E(?<episode>\\d{2,3})\\..*"));
+    }
+
+    /**
+     * Malformed rules are ignored.
+     */
+    public void testMalformedRulesIgnored(){
+        assertEquals("Nature Doc Part S07E12.mkv", renameWithRules("Nature Doc - Part 7 of 12.mkv",
+                "NoTitle: (?<name>.+?) - Part (?<episode>\\d+) of \\d+",
+                "Unclosed: (?<title>.+ - Part (?<episode>\\d+)",
+                "NoDelimiter",
+                FilenameRules.DEFAULT_BUILTIN_RULE));
+    }
+
+    /**
+     * Rules with numbered back references are ignored, named back
+     * references work as they do in a rule on its own.
+     */
+    public void testNumberedBackReferenceIgnored(){
+        String originalFileName = "Show-12-12 E05.mkv";
+        assertNull(renameWithRules(originalFileName, PART_OF_RULE,
+                "Numbered: (?<title>\\w+)-(\\d+)-\\2 E(?<episode>\\d+)"));
+        assertEquals("Show S01E05.mkv", renameWithRules(originalFileName, PART_OF_RULE,
+                "Named: (?<title>\\w+)-(?<number>\\d+)-\\k<number> E(?<episode>\\d+)"));
+    }
+
+    /**
+     * A rule that matches without a title or a valid number gives way
+     * to the rules after it.
+     */
+    public void testLaterRuleTriedAfterInvalidMatch(){
+        assertEquals("Nature Doc S01E05.mkv", renameWithRules("05 Nature Doc.mkv",
+                "NoTitle: (?<title>\\W*)(?<episode>\\d+) .+",
+                "Leading: (?<episode>\\d+) (?<title>.+)"));
+    }
+}
@@ -124,4 +124,37 @@ public class TestMediaFileTest extends TestCase{
         assertEquals(expectedOriginalName, testFile.getOriginalFileName());
     }
 
+    /**
+     * Test that the formatted output is rebuilt after a
+     * parsed field is assigned a new value.
+     */
+    public void testFormattedOutputFollowsSetters(){
+        MediaFile testFile = new MediaFile(HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "01"));
+        testFile.setMediaName("Tokyo Ghoul");
+        testFile.setSeasonNumber("1");
+        testFile.setEpisodeNumber("01");
+        testFile.setFileExt("mkv");
+        assertEquals("Tokyo Ghoul S01E01.mkv", testFile.toString());
+        testFile.setEpisodeNumber("012");
+        assertEquals("Tokyo Ghoul S01E012.mkv", testFile.toString());
+        testFile.setMediaType("Anime");
+        assertEquals("Anime\\Tokyo Ghoul S01E012.mkv", testFile.toString());
+        assertEquals("Tokyo Ghoul S01E012.mkv", testFile.toOriginalString());
+        testFile.setEpisodeNumber(null);
+        assertNull(testFile.toString());
+    }
+
+    /**
+     * Test that a media name containing the placeholders of the
+     * formatted output is kept as is.
+     */
+    public void testMediaNameWithPlaceholderText(){
+        MediaFile testFile = new MediaFile(HelperMethodsTest.buildHorribleSubsOriginalName("Foxxy yyy", "01"));
+        testFile.setMediaName("Foxxy yyy");
+        testFile.setSeasonNumber("1");
+        testFile.setEpisodeNumber("01");
+        testFile.setFileExt("mkv");
+        assertEquals("Foxxy yyy S01E01.mkv", testFile.toString());
+    }
+
 }
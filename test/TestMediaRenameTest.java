@@ -1,10 +1,15 @@
 import constants.Constants;
 import junit.framework.TestCase;
+import rename.FallbackCounters;
 import rename.MediaFile;
+import rename.ParseConfidence;
 import rename.Rename;
+import rename.StageTimers;
 import utilities.Utilities;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * Set of tests to test the rename module.
@@ -190,6 +195,34 @@ public class TestMediaRenameTest extends TestCase{
         assertEquals(expectedFormattedMediaFile, testMediaFile.toString());
     }
 
+    /**
+     * Rename media file with several cumulative offsets for a show
+     * that uses absolute episode numbering.
+     */
+    public void testHorribleSubsWithCumulativeEpisodeOffsets(){
+        String mediaName = "One Piece";
+        String originalFileName = HelperMethodsTest.buildHorribleSubsOriginalName(mediaName, "070");
+        specialEpisodeCases.put(mediaName,"S01E25, S02E50, S03E75");
+        MediaFile testMediaFile = new MediaFile(originalFileName);
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        renameModule.rename(testMediaFile);
+        assertEquals(mediaName+" S03E20.mkv", testMediaFile.toString());
+    }
+
+    /**
+     * Malformed episode offset is ignored rather than failing the rename.
+     */
+    public void testHorribleSubsWithMalformedEpisodeOffset(){
+        String mediaName = "Mobile Suit Gundam";
+        String episodeNumber = "26";
+        String originalFileName = HelperMethodsTest.buildHorribleSubsOriginalName(mediaName, episodeNumber);
+        specialEpisodeCases.put(mediaName,"Season 1 Episode 25");
+        MediaFile testMediaFile = new MediaFile(originalFileName);
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        renameModule.rename(testMediaFile);
+        assertEquals(mediaName+" S01E"+episodeNumber+".mkv", testMediaFile.toString());
+    }
+
     /**
      * Sample Law and Order SVU ettv case to rename.
      */
@@ -915,4 +948,119 @@ public class TestMediaRenameTest extends TestCase{
         renameModule.rename(testMediaFile);
         assertEquals("The Big Bang Theory S01E01.mp4", testMediaFile.toString());
     }
+
+    /**
+     * Batch rename gives the same result as renaming one file at a time
+     * and keeps the order of the batch.
+     */
+    public void testRenameAllKeepsInputOrder(){
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        List<MediaFile> batch = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for(int i = 1; i <= 200; i++){
+            String episodeNumber = String.format("%02d", i % 100);
+            String originalFileName = HelperMethodsTest.buildHorribleSubsOriginalName("Show "+(char)('A'+i%26), episodeNumber);
+            batch.add(new MediaFile(originalFileName));
+            MediaFile single = new MediaFile(originalFileName);
+            renameModule.rename(single);
+            expected.add(single.toString());
+        }
+        List<MediaFile> renamed = renameModule.renameAll(batch);
+        assertEquals(batch.size(), renamed.size());
+        for(int i = 0; i < renamed.size(); i++){
+            assertSame(batch.get(i), renamed.get(i));
+            assertEquals(expected.get(i), renamed.get(i).toString());
+        }
+    }
+
+    /**
+     * Series batch rename gives the same result as renaming one file at a
+     * time, with the special episode cases applied to every file of the
+     * series, and keeps the order of the batch.
+     */
+    public void testRenameSeriesMatchesRename(){
+        specialEpisodeCases.put("One Piece","S01E12");
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        List<MediaFile> batch = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for(int i = 1; i <= 24; i++){
+            String episodeNumber = String.format("%02d", i);
+            String crc = String.format("[%08X]", i * 7919);
+            String originalFileName = HelperMethodsTest.buildHorribleSubsOriginalName("One Piece", episodeNumber);
+            batch.add(new MediaFile(originalFileName.replace(".mkv", crc + ".mkv")));
+            batch.add(new MediaFile(HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", episodeNumber)));
+        }
+        batch.add(new MediaFile("Gladiator.2000.480p.BRRip.AAC-DEFLATE.mkv"));
+        for(MediaFile mediaFile : batch){
+            MediaFile single = new MediaFile(mediaFile.getOriginalFileName());
+            renameModule.rename(single);
+            expected.add(single.toString());
+        }
+        List<MediaFile> renamed = renameModule.renameSeries(batch);
+        assertEquals(batch.size(), renamed.size());
+        for(int i = 0; i < renamed.size(); i++){
+            assertSame(batch.get(i), renamed.get(i));
+            assertEquals(expected.get(i), renamed.get(i).toString());
+        }
+        assertEquals("One Piece S02E12.mkv", renamed.get(46).toString());
+    }
+
+    /**
+     * Rename results are scored by the heuristic that produced them.
+     */
+    public void testConfidenceScoring(){
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        String[][] cases = {
+                {"Brooklyn Nine-Nine S01E22.mkv", "HIGH"},
+                {HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "01"), "HIGH"},
+                {HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "101"), "MEDIUM"},
+                {"Zootopia (2016) [720p].mkv", "MEDIUM"},
+                {"[HorribleSubs] Attack on Titan Movie (8C127EE1).mkv", "LOW"}
+        };
+        for(String[] testCase : cases){
+            MediaFile mediaFile = new MediaFile(testCase[0]);
+            renameModule.rename(mediaFile);
+            assertNotNull(testCase[0], mediaFile.toString());
+            assertEquals(testCase[0], ParseConfidence.valueOf(testCase[1]), mediaFile.getConfidence());
+        }
+    }
+
+    /**
+     * Movie without a year whose brackets hold no usable numbers is parsed
+     * again a bounded number of times before the original name is used.
+     */
+    public void testMovieWithoutYearFallbackIsBounded(){
+        String originalFileName = "[HorribleSubs] Attack on Titan Movie (8C127EE1).mkv";
+        MediaFile testMediaFile = new MediaFile(originalFileName);
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        renameModule.rename(testMediaFile);
+        assertEquals("Attack on Titan.mkv", testMediaFile.toString());
+        assertEquals(1, renameModule.getFallbackCounters().get(FallbackCounters.Fallback.BUDGET_EXHAUSTED));
+    }
+
+    /**
+     * Stages of the rename algorithm are counted while renaming, and
+     * nothing is counted once the timers are switched off.
+     */
+    public void testStageTimers(){
+        String originalFileName = "[HorribleSubs] Attack on Titan Movie (8C127EE1).mkv";
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases);
+        renameModule.rename(new MediaFile(originalFileName));
+        StageTimers stageTimers = renameModule.getStageTimers();
+        assertTrue(stageTimers.isEnabled());
+        assertEquals(1, stageTimers.getCount(StageTimers.Stage.PARSE));
+        assertTrue(stageTimers.getCount(StageTimers.Stage.FALLBACK) > 0);
+        assertEquals(stageTimers.getCount(StageTimers.Stage.FALLBACK) + 1,
+                stageTimers.getCount(StageTimers.Stage.BRACKET_STRIP));
+        assertTrue(stageTimers.getNanos(StageTimers.Stage.PARSE) > 0);
+
+        HashMap<String, String> disabled = new HashMap<>(settings);
+        disabled.put(Constants.STAGE_TIMERS, Constants.FALSE);
+        renameModule = new Rename(disabled, specialRenameCases, specialEpisodeCases);
+        renameModule.rename(new MediaFile(originalFileName));
+        assertFalse(renameModule.getStageTimers().isEnabled());
+        for(long count : renameModule.getStageTimers().getCounts()){
+            assertEquals(0, count);
+        }
+    }
 }
@@ -0,0 +1,137 @@
+import constants.Constants;
+import junit.framework.TestCase;
+import rename.MediaFile;
+import rename.ParseCache;
+import rename.Rename;
+import utilities.Utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.HashMap;
+
+/**
+ * Set of tests to test the rename result cache.
+ */
+public class TestParseCacheTest extends TestCase {
+    /**Cache file used by these tests.*/
+    private static final String CACHE_FILE = "parseCacheTest.txt";
+    /*Read in settings values.*/
+    private HashMap<String, String> settings = Utilities.loadSettingsFile(Constants.SETTINGS_FILE);
+    private HashMap<String, String> specialRenameCases = Utilities.loadSettingsFile(Constants.SPECIAL_RENAME_CASES_FILE);
+    private HashMap<String, String> specialEpisodeCases = Utilities.loadSettingsFile(Constants.SPECIAL_EP_CASES_FILE);
+
+    public void setUp() throws Exception{
+        new File(CACHE_FILE).delete();
+        settings.put(Constants.DEFAULT_MAX_EPISODE_COUNT, "100");
+        super.setUp();
+    }
+
+    public void tearDown() throws Exception{
+        new File(CACHE_FILE).delete();
+        super.tearDown();
+    }
+
+    /**
+     * Rename files as a single run with a new cache and persist the cache.
+     * @param originalFileNames to rename.
+     * @return first renamed media file.
+     */
+    private MediaFile renameCached(String... originalFileNames){
+        ParseCache parseCache = new ParseCache(CACHE_FILE);
+        Rename renameModule = new Rename(settings, specialRenameCases, specialEpisodeCases, parseCache);
+        MediaFile first = null;
+        for(String originalFileName : originalFileNames){
+            MediaFile mediaFile = new MediaFile(originalFileName);
+            renameModule.rename(mediaFile);
+            if(first == null){
+                first = mediaFile;
+            }
+        }
+        parseCache.save();
+        return first;
+    }
+
+    /**
+     * Cached result of a later run is identical to the parsed result.
+     */
+    public void testCachedResultMatchesRename() throws IOException {
+        String originalFileName = HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "001");
+        MediaFile parsed = renameCached(originalFileName);
+        assertEquals("Tokyo Ghoul S01E001.mkv", parsed.toString());
+        assertEquals(1, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+        MediaFile cached = renameCached(originalFileName);
+        assertEquals(parsed.toString(), cached.toString());
+        assertEquals(parsed.getConfidence(), cached.getConfidence());
+        assertEquals(1, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+    }
+
+    /**
+     * Files that cannot be renamed are cached as well.
+     */
+    public void testFailedRenameIsCached() throws IOException {
+        settings.put(Constants.EXCLUDE_FILE_TYPES, "txt");
+        MediaFile parsed = renameCached("Tokyo Ghoul S01E01.txt");
+        assertNull(parsed.toString());
+        MediaFile cached = renameCached("Tokyo Ghoul S01E01.txt");
+        assertNull(cached.toString());
+        assertEquals(1, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+    }
+
+    /**
+     * Results cached with other rules are not used.
+     */
+    public void testChangedRulesAreNotRestored(){
+        String originalFileName = HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "01");
+        assertEquals("Tokyo Ghoul S01E01.mkv", renameCached(originalFileName).toString());
+        specialRenameCases.put("Tokyo Ghoul", "Tokyo Ghoul Root A");
+        assertEquals("Tokyo Ghoul Root A S01E01.mkv", renameCached(originalFileName).toString());
+    }
+
+    /**
+     * A later run over a few files keeps the results of every other file.
+     */
+    public void testResultsNotUsedAreKept() throws IOException {
+        renameCached(HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "01"),
+                HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "02"),
+                HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "03"));
+        assertEquals(3, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+        renameCached(HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "01"));
+        assertEquals(3, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+        renameCached(HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "04"));
+        assertEquals(4, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+    }
+
+    /**
+     * Cache file is rewritten with only the results of the current rules
+     * once most of its entries are of other rules.
+     */
+    public void testOtherRulesAreCompacted() throws IOException {
+        renameCached(HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "01"),
+                HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "02"),
+                HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "03"));
+        assertEquals(3, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+        specialRenameCases.put("Tokyo Ghoul", "Tokyo Ghoul Root A");
+        renameCached(HelperMethodsTest.buildHorribleSubsOriginalName("Tokyo Ghoul", "01"));
+        assertEquals(1, Files.readAllLines(new File(CACHE_FILE).toPath()).size());
+    }
+
+    /**
+     * Entries with a damaged number field are parsed again instead of restored.
+     */
+    public void testDamagedEntryIsParsedAgain() throws IOException {
+        String originalFileName = "Interstellar.2014.1080p.BluRay.x264.mkv";
+        assertEquals("Interstellar 2014.mkv", renameCached(originalFileName).toString());
+        Path cacheFile = new File(CACHE_FILE).toPath();
+        List<String> damaged = new ArrayList<>();
+        for(String line : Files.readAllLines(cacheFile)){
+            damaged.add(line.replace("\t2014\t", "\t20x4\t"));
+        }
+        assertFalse(damaged.equals(Files.readAllLines(cacheFile)));
+        Files.write(cacheFile, damaged);
+        assertEquals("Interstellar 2014.mkv", renameCached(originalFileName).toString());
+    }
+}
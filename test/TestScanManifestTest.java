@@ -0,0 +1,158 @@
+import junit.framework.TestCase;
+import scan.ScanManifest;
+import utilities.Utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+/**
+ * Set of tests to test the manifest of handled files.
+ */
+public class TestScanManifestTest extends TestCase {
+    /**Manifest file used by these tests.*/
+    private static final String MANIFEST_FILE = "scanManifestTest.txt";
+    /**Directory of the files handled by these tests.*/
+    private static final String MEDIA_DIRECTORY = "scanManifestMedia";
+    /**Version of the settings the files are handled with.*/
+    private static final String VERSION = "first";
+
+    public void setUp() throws Exception{
+        new File(MANIFEST_FILE).delete();
+        Utilities.deleteFolder(MEDIA_DIRECTORY);
+        new File(MEDIA_DIRECTORY).mkdirs();
+        super.setUp();
+    }
+
+    public void tearDown() throws Exception{
+        new File(MANIFEST_FILE).delete();
+        Utilities.deleteFolder(MEDIA_DIRECTORY);
+        super.tearDown();
+    }
+
+    /**
+     * Create a file with some content.
+     * @param name of the file.
+     * @return path of the file.
+     * @throws IOException if the file cannot be created.
+     */
+    private static Path createFile(String name) throws IOException {
+        Path path = new File(MEDIA_DIRECTORY, name).toPath();
+        Files.write(path, new byte[name.length()]);
+        return path;
+    }
+
+    /**
+     * Determine if a file can be skipped by a later run with the given version.
+     * @param version of the later run.
+     * @param path of the file.
+     * @return true if the file can be skipped.
+     * @throws IOException if the file cannot be read.
+     */
+    private static boolean isUnchanged(String version, Path path) throws IOException {
+        return new ScanManifest(MANIFEST_FILE, version).isUnchanged(path,
+                Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    /**
+     * A recorded file is skipped by a later run while it is unchanged.
+     */
+    public void testRecordedFileIsSkippedByLaterRun() throws IOException {
+        Path handled = createFile("Show S01E01.mkv");
+        Path other = createFile("Show S01E02.mkv");
+        ScanManifest manifest = new ScanManifest(MANIFEST_FILE, VERSION);
+        manifest.record(handled.toString(), ScanManifest.Outcome.RENAMED);
+        manifest.save();
+
+        assertTrue(isUnchanged(VERSION, handled));
+        assertFalse(isUnchanged(VERSION, other));
+    }
+
+    /**
+     * A file changed since it was recorded is handled again.
+     */
+    public void testChangedFileIsNotSkipped() throws IOException {
+        Path handled = createFile("Show S01E01.mkv");
+        ScanManifest manifest = new ScanManifest(MANIFEST_FILE, VERSION);
+        manifest.record(handled.toString(), ScanManifest.Outcome.NOT_RENAMED);
+        manifest.save();
+
+        Files.setLastModifiedTime(handled, FileTime.fromMillis(Files.getLastModifiedTime(handled).toMillis() - 60000));
+        assertFalse(isUnchanged(VERSION, handled));
+    }
+
+    /**
+     * Files handled with other settings are handled again.
+     */
+    public void testOtherVersionIsNotSkipped() throws IOException {
+        Path handled = createFile("Show S01E01.mkv");
+        ScanManifest manifest = new ScanManifest(MANIFEST_FILE, VERSION);
+        manifest.record(handled.toString(), ScanManifest.Outcome.QUEUED);
+        manifest.save();
+
+        assertFalse(isUnchanged("second", handled));
+    }
+
+    /**
+     * The version follows the contents of the given files.
+     */
+    public void testVersionFollowsFileContents() throws IOException {
+        Path settings = createFile("settings.txt");
+        String version = ScanManifest.version(Collections.singletonList(settings));
+        assertEquals(version, ScanManifest.version(Collections.singletonList(settings)));
+        Files.write(settings, "UserInteraction: FALSE".getBytes());
+        assertFalse(version.equals(ScanManifest.version(Collections.singletonList(settings))));
+    }
+
+    /**
+     * A run that comes across a few files keeps the entries of every
+     * other file recorded by earlier runs.
+     */
+    public void testSaveKeepsEntriesNotSeen() throws IOException {
+        ScanManifest manifest = new ScanManifest(MANIFEST_FILE, VERSION);
+        Path[] handled = new Path[10];
+        for(int i = 0; i < handled.length; i++){
+            handled[i] = createFile("Show - " + (char) ('a' + i) + ".mkv");
+            manifest.record(handled[i].toString(), ScanManifest.Outcome.RENAMED);
+        }
+        manifest.save();
+
+        manifest = new ScanManifest(MANIFEST_FILE, VERSION);
+        manifest.record(createFile("Movie.mkv").toString(), ScanManifest.Outcome.NOT_RENAMED);
+        manifest.save();
+        assertEquals(11, Files.readAllLines(new File(MANIFEST_FILE).toPath()).size());
+        for(Path path : handled){
+            assertTrue(isUnchanged(VERSION, path));
+        }
+    }
+
+    /**
+     * Entries replaced by a later entry, and entries of files that no
+     * longer exist, are dropped once most of the file is out of date.
+     */
+    public void testCompactDropsReplacedAndMissingEntries() throws IOException {
+        ScanManifest manifest = new ScanManifest(MANIFEST_FILE, VERSION);
+        for(int i = 0; i < 4; i++){
+            manifest.record(createFile("Show - " + (char) ('a' + i) + ".mkv").toString(), ScanManifest.Outcome.RENAMED);
+        }
+        manifest.save();
+        assertEquals(4, Files.readAllLines(new File(MANIFEST_FILE).toPath()).size());
+
+        Path kept = new File(MEDIA_DIRECTORY, "Show - a.mkv").toPath();
+        Path other = new File(MEDIA_DIRECTORY, "Show - b.mkv").toPath();
+        Files.delete(new File(MEDIA_DIRECTORY, "Show - c.mkv").toPath());
+        Files.delete(new File(MEDIA_DIRECTORY, "Show - d.mkv").toPath());
+        manifest = new ScanManifest(MANIFEST_FILE, VERSION);
+        for(int i = 0; i < 5; i++){
+            manifest.record(kept.toString(), ScanManifest.Outcome.RENAMED);
+        }
+        manifest.save();
+        assertEquals(2, Files.readAllLines(new File(MANIFEST_FILE).toPath()).size());
+        assertTrue(isUnchanged(VERSION, kept));
+        assertTrue(isUnchanged(VERSION, other));
+    }
+}
@@ -1,6 +1,7 @@
 import constants.Constants;
 import errorHandle.ErrorHandler;
 import junit.framework.TestCase;
+import utilities.MetadataProbe;
 import utilities.Utilities;
 
 import java.util.HashMap;
@@ -83,4 +84,25 @@ public class TestUtilityStaticMethodTests extends TestCase {
         Utilities.copyWithProgress(srcFile,destFile);
         assertTrue(Utilities.fileExists(destFile));
     }
+
+    /**
+     * Existence checks give the same answers whether they are checked
+     * on demand or sent out together.
+     */
+    public void testMetadataProbeLookup(){
+        String existing = "metadataProbe.txt";
+        ErrorHandler.printOutToFile(existing, "Test");
+        try {
+            for (int concurrency : new int[]{1, 4}) {
+                MetadataProbe.setConcurrency(concurrency);
+                MetadataProbe.Lookup lookup = MetadataProbe.exists(existing, "metadataProbeMissing.txt", existing);
+                assertTrue(lookup.exists(2));
+                assertFalse(lookup.exists(1));
+                assertTrue(lookup.exists(0));
+            }
+        } finally {
+            MetadataProbe.setConcurrency(1);
+            Utilities.deleteFile(existing);
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package launch;
+
+import junit.framework.TestCase;
+import utilities.Utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Set of tests to test the journal of the operations of a plan.
+ */
+public class TestOperationJournalTest extends TestCase {
+    /**Temp directory of the plan and its journal.*/
+    private String root;
+    /**Plan file the journal belongs to.*/
+    private String planFile;
+    /**Journal file of the plan.*/
+    private String journalFile;
+
+    public void setUp() throws Exception{
+        root = Files.createTempDirectory("journal").toString();
+        planFile = root + File.separator + "plan.jsonl";
+        journalFile = planFile + ".journal";
+        Files.write(Paths.get(planFile), "{\"op\":\"MKDIR\",\"target\":\"first\"}\n".getBytes(StandardCharsets.UTF_8));
+        super.setUp();
+    }
+
+    public void tearDown() throws Exception{
+        Utilities.deleteFolder(root);
+        super.tearDown();
+    }
+
+    /**
+     * Open the journal of the plan.
+     * @return opened journal.
+     * @throws IOException if the journal cannot be opened.
+     */
+    private OperationJournal open() throws IOException {
+        return OperationJournal.open(journalFile, planFile, OperationJournal.Sync.ALWAYS);
+    }
+
+    /**
+     * Operations done are known to a later apply, operations begun and not
+     * done are known to have been cut short.
+     */
+    public void testRecordsAreReadByLaterApply() throws IOException {
+        try(OperationJournal journal = open()){
+            journal.begin(1);
+            journal.done(1);
+            journal.begin(2);
+        }
+
+        try(OperationJournal journal = open()){
+            assertTrue(journal.isDone(1));
+            assertFalse(journal.wasInterrupted(1));
+            assertFalse(journal.isDone(2));
+            assertTrue(journal.wasInterrupted(2));
+            assertEquals(1, journal.getDone());
+        }
+    }
+
+    /**
+     * The journal is started over once the plan file changes.
+     */
+    public void testChangedPlanStartsOver() throws IOException {
+        try(OperationJournal journal = open()){
+            journal.begin(1);
+            journal.done(1);
+            journal.begin(2);
+        }
+        Files.write(Paths.get(planFile), "{\"op\":\"MKDIR\",\"target\":\"second\"}\n".getBytes(StandardCharsets.UTF_8));
+
+        try(OperationJournal journal = open()){
+            assertFalse(journal.isDone(1));
+            assertFalse(journal.wasInterrupted(2));
+            assertEquals(0, journal.getDone());
+        }
+    }
+
+    /**
+     * A line torn by a crash is skipped, and the next record starts on a
+     * line of its own.
+     */
+    public void testTornLineIsSkipped() throws IOException {
+        try(OperationJournal journal = open()){
+            journal.done(1);
+        }
+        Path path = Paths.get(journalFile);
+        Files.write(path, "DONE\t".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try(OperationJournal journal = open()){
+            assertTrue(journal.isDone(1));
+            assertEquals(1, journal.getDone());
+            journal.done(3);
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals("DONE\t3", lines.get(lines.size() - 1));
+        try(OperationJournal journal = open()){
+            assertTrue(journal.isDone(3));
+            assertEquals(2, journal.getDone());
+        }
+    }
+
+    /**
+     * The sync setting is read ignoring case, unknown values fall back to INTERVAL.
+     */
+    public void testParseSync(){
+        assertEquals(OperationJournal.Sync.ALWAYS, OperationJournal.parseSync(" always "));
+        assertEquals(OperationJournal.Sync.INTERVAL, OperationJournal.parseSync("sometimes"));
+        assertEquals(OperationJournal.Sync.INTERVAL, OperationJournal.parseSync(null));
+    }
+}
@@ -0,0 +1,208 @@
+package launch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import junit.framework.TestCase;
+import utilities.Utilities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Set of tests to test resuming a plan that was not applied in full.
+ */
+public class TestPlanApplierTest extends TestCase {
+    /**Writes the operations of a plan.*/
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**Temp directory of the plan and its files.*/
+    private String root;
+    /**Plan file applied by these tests.*/
+    private String planFile;
+
+    public void setUp() throws Exception{
+        root = Files.createTempDirectory("applier").toString();
+        planFile = path("plan.jsonl");
+        super.setUp();
+    }
+
+    public void tearDown() throws Exception{
+        Utilities.deleteFolder(root);
+        super.tearDown();
+    }
+
+    /**
+     * Build the path of a file in the temp directory.
+     * @param name of the file.
+     * @return path of the file.
+     */
+    private String path(String name) {
+        return root + File.separator + name;
+    }
+
+    /**
+     * Create a file with the given content.
+     * @param name of the file.
+     * @param content of the file.
+     * @return path of the file.
+     * @throws IOException if the file cannot be written.
+     */
+    private String createFile(String name, String content) throws IOException {
+        String path = path(name);
+        Files.write(Paths.get(path), content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    /**
+     * Read the content of a file.
+     * @param path of the file.
+     * @return content of the file.
+     * @throws IOException if the file cannot be read.
+     */
+    private static String read(String path) throws IOException {
+        return new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the plan file.
+     * @param operations of the plan in order.
+     * @throws IOException if the plan file cannot be written.
+     */
+    private void writePlan(PlanOperation... operations) throws IOException {
+        try(BufferedWriter writer = Files.newBufferedWriter(Paths.get(planFile), StandardCharsets.UTF_8)){
+            for(PlanOperation operation : operations){
+                writer.write(MAPPER.writeValueAsString(operation));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Open the journal of the plan, to record or read what an apply did.
+     * @return opened journal.
+     * @throws IOException if the journal cannot be opened.
+     */
+    private OperationJournal journal() throws IOException {
+        return OperationJournal.open(planFile + ".journal", planFile, OperationJournal.Sync.ALWAYS);
+    }
+
+    /**
+     * Determine which operations of the plan are done.
+     * @param operations line numbers of the operations in the plan.
+     * @return done flag of each operation.
+     * @throws IOException if the journal cannot be read.
+     */
+    private boolean[] done(long... operations) throws IOException {
+        boolean[] done = new boolean[operations.length];
+        try(OperationJournal journal = journal()){
+            for(int i = 0; i < operations.length; i++){
+                done[i] = journal.isDone(operations[i]);
+            }
+        }
+        return done;
+    }
+
+    /**
+     * A rename cut short after its file was renamed is done as it is.
+     */
+    public void testInterruptedRenameCountedAsDone() throws IOException {
+        String source = path("Show.S01E01.mkv");
+        String target = createFile("Show S01E01.mkv", "renamed");
+        writePlan(new PlanOperation(PlanOperation.Type.RENAME, source, target));
+        try(OperationJournal journal = journal()){
+            journal.begin(1);
+        }
+
+        new PlanApplier(1, 1, OperationJournal.Sync.ALWAYS, 0).apply(planFile);
+        assertTrue(Arrays.equals(new boolean[]{true}, done(1)));
+        assertEquals("renamed", read(target));
+    }
+
+    /**
+     * A copy cut short by an earlier apply has its partial target removed
+     * and is copied again, along with the delete that follows it.
+     */
+    public void testPartialCopyRemoved() throws IOException {
+        String source = createFile("Show S01E01.mkv", "the whole episode");
+        String target = createFile("copied.mkv", "the who");
+        writePlan(new PlanOperation(PlanOperation.Type.COPY, source, target),
+                new PlanOperation(PlanOperation.Type.DELETE, source, target));
+        try(OperationJournal journal = journal()){
+            journal.begin(1);
+            journal.begin(2);
+        }
+
+        new PlanApplier(1, 1, OperationJournal.Sync.ALWAYS, 0).apply(planFile);
+        assertTrue(Arrays.equals(new boolean[]{true, true}, done(1, 2)));
+        assertEquals("the whole episode", read(target));
+        assertFalse(Utilities.fileExists(source));
+    }
+
+    /**
+     * A copy that fails part way, leaving a target shorter than its source,
+     * is not done: its target is removed, its source kept, and the next
+     * apply copies it again.
+     */
+    public void testFailedCopyIsNotDone() throws IOException {
+        String source = createFile("Show S01E01.mkv", "the whole episode");
+        String target = path("copied.mkv");
+        writePlan(new PlanOperation(PlanOperation.Type.COPY, source, target),
+                new PlanOperation(PlanOperation.Type.DELETE, source, target));
+        PlanApplier.FileCopier halfCopier = (from, to, delete) -> {
+            try{
+                byte[] content = Files.readAllBytes(Paths.get(from));
+                Files.write(Paths.get(to), Arrays.copyOf(content, content.length / 2));
+            } catch (IOException e){
+                fail(e.getMessage());
+            }
+        };
+
+        new PlanApplier(1, 1, OperationJournal.Sync.ALWAYS, 0, System::nanoTime, halfCopier).apply(planFile);
+        assertTrue(Arrays.equals(new boolean[]{false, false}, done(1, 2)));
+        assertFalse(Utilities.fileExists(target));
+        assertEquals("the whole episode", read(source));
+
+        new PlanApplier(1, 1, OperationJournal.Sync.ALWAYS, 0).apply(planFile);
+        assertTrue(Arrays.equals(new boolean[]{true, true}, done(1, 2)));
+        assertEquals("the whole episode", read(target));
+        assertFalse(Utilities.fileExists(source));
+    }
+
+    /**
+     * Once the time budget is spent no operation is started, the next
+     * apply resumes with the first operation left.
+     */
+    public void testTimeBudgetStopsAndResumes() throws IOException {
+        String[] sources = new String[3];
+        String[] targets = new String[3];
+        PlanOperation[] operations = new PlanOperation[3];
+        for(int i = 0; i < 3; i++){
+            sources[i] = createFile("Show.S01E0" + (i + 1) + ".mkv", "episode " + i);
+            targets[i] = path("Show S01E0" + (i + 1) + ".mkv");
+            operations[i] = new PlanOperation(PlanOperation.Type.RENAME, sources[i], targets[i]);
+        }
+        writePlan(operations);
+        /*Every reading of the clock is a millisecond later, with a budget
+        * of two milliseconds each apply renames a single file.*/
+        AtomicLong now = new AtomicLong();
+        LongSupplier clock = () -> now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+
+        for(int applied = 1; applied <= 3; applied++){
+            new PlanApplier(1, 1, OperationJournal.Sync.ALWAYS, 2, clock, (from, to, delete) -> fail())
+                    .apply(planFile);
+            boolean[] done = done(1, 2, 3);
+            for(int i = 0; i < 3; i++){
+                assertEquals(i < applied, done[i]);
+                assertEquals(i < applied, Utilities.fileExists(targets[i]));
+                assertEquals(i >= applied, Utilities.fileExists(sources[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package launch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import constants.Constants;
+import copy.Copy;
+import junit.framework.TestCase;
+import rename.MediaFile;
+import utilities.Utilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Set of tests to test writing a plan over a tree of media files and
+ * applying it.
+ */
+public class TestPlannerTest extends TestCase {
+    /**Reads the operations of a written plan.*/
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**Temp tree the media files are planned in.*/
+    private String root;
+    /**Prefix of the paths of the media files, in the form the rename module gives them.*/
+    private String mediaPrefix;
+    /**Plan file written by these tests.*/
+    private String planFile;
+
+    public void setUp() throws Exception{
+        root = Files.createTempDirectory("planner").toString();
+        new File(root, "media").mkdirs();
+        mediaPrefix = root + File.separator + "media\\";
+        planFile = root + File.separator + Constants.PLAN_FILE;
+        super.setUp();
+    }
+
+    public void tearDown() throws Exception{
+        Utilities.deleteFolder(root);
+        super.tearDown();
+    }
+
+    /**
+     * Create a media file on disk along with its renamed fields.
+     * @param originalName filename of the file on disk.
+     * @param mediaName parsed media name.
+     * @param episodeNumber parsed episode number of season one.
+     * @return media file of the created file.
+     * @throws IOException if the file cannot be created.
+     */
+    private MediaFile mediaFile(String originalName, String mediaName, String episodeNumber) throws IOException {
+        String path = mediaPrefix + originalName;
+        Files.write(Paths.get(path), path.getBytes(StandardCharsets.UTF_8));
+        MediaFile mediaFile = new MediaFile(path);
+        mediaFile.setMediaName(mediaPrefix + mediaName);
+        mediaFile.setSeasonNumber("01");
+        mediaFile.setEpisodeNumber(episodeNumber);
+        mediaFile.setFileExt("mkv");
+        return mediaFile;
+    }
+
+    /**
+     * Write the plan of the given media files.
+     * @param copyModule to plan copies with, null if files are not copied.
+     * @param reviewQueue true if low confidence renames are held for review.
+     * @param mediaFiles renamed media files.
+     * @return operations of the written plan in order.
+     * @throws IOException if the plan cannot be written or read.
+     */
+    private List<PlanOperation> plan(Copy copyModule, boolean reviewQueue, MediaFile... mediaFiles)
+            throws IOException {
+        try(Planner planner = new Planner(planFile, copyModule, false, null, reviewQueue)){
+            planner.plan(Arrays.asList(mediaFiles));
+        }
+        List<PlanOperation> operations = new ArrayList<>();
+        for(String line : Files.readAllLines(Paths.get(planFile), StandardCharsets.UTF_8)){
+            operations.add(MAPPER.readValue(line, PlanOperation.class));
+        }
+        return operations;
+    }
+
+    /**
+     * Apply the written plan.
+     * @throws IOException if the plan cannot be applied.
+     */
+    private void apply() throws IOException {
+        new PlanApplier(2, 4, OperationJournal.Sync.NEVER, 0).apply(planFile);
+    }
+
+    /**
+     * Create a copy module copying to a directory of the temp tree.
+     * @return copy module.
+     */
+    private Copy copyModule() {
+        HashMap<String, String> settings = new HashMap<>();
+        settings.put(Constants.DEFAULT_COPY_DIRECTORY, root + File.separator + "copy");
+        return new Copy(settings, new HashMap<>());
+    }
+
+    /**
+     * Assert the type, source and target of a planned operation.
+     */
+    private static void assertOperation(PlanOperation.Type type, String source, String target,
+                                        PlanOperation operation) {
+        assertEquals(type, operation.getType());
+        assertEquals(source, operation.getSource());
+        assertEquals(target, operation.getTarget());
+    }
+
+    /**
+     * Files of a show are renamed, their directory is created once and
+     * each file is copied there and deleted as a pair.
+     */
+    public void testPlanAndApplyCopies() throws IOException {
+        MediaFile first = mediaFile("Nature.Doc.S01E01.mkv", "Nature Doc", "01");
+        MediaFile second = mediaFile("Nature.Doc.S01E02.mkv", "Nature Doc", "02");
+        String firstSource = first.getOriginalFileName();
+        String secondSource = second.getOriginalFileName();
+        List<PlanOperation> operations = plan(copyModule(), false, first, second);
+
+        String directory = root + File.separator + "copy\\Nature Doc\\";
+        String firstRenamed = mediaPrefix + "Nature Doc S01E01.mkv";
+        String secondRenamed = mediaPrefix + "Nature Doc S01E02.mkv";
+        String firstCopy = directory + "Nature Doc S01E01.mkv";
+        String secondCopy = directory + "Nature Doc S01E02.mkv";
+        assertEquals(7, operations.size());
+        assertOperation(PlanOperation.Type.RENAME, firstSource, firstRenamed, operations.get(0));
+        assertOperation(PlanOperation.Type.MKDIR, null, directory, operations.get(1));
+        assertOperation(PlanOperation.Type.COPY, firstRenamed, firstCopy, operations.get(2));
+        assertOperation(PlanOperation.Type.DELETE, firstRenamed, firstCopy, operations.get(3));
+        assertOperation(PlanOperation.Type.RENAME, secondSource, secondRenamed, operations.get(4));
+        assertOperation(PlanOperation.Type.COPY, secondRenamed, secondCopy, operations.get(5));
+        assertOperation(PlanOperation.Type.DELETE, secondRenamed, secondCopy, operations.get(6));
+
+        apply();
+        assertFalse(Utilities.fileExists(firstSource));
+        assertFalse(Utilities.fileExists(firstRenamed));
+        assertFalse(Utilities.fileExists(secondRenamed));
+        assertEquals(firstSource, new String(Files.readAllBytes(Paths.get(firstCopy)), StandardCharsets.UTF_8));
+        assertEquals(secondSource, new String(Files.readAllBytes(Paths.get(secondCopy)), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Targets taken by an earlier file of the batch, ignoring case, or by
+     * an existing file are written as collisions and left as they are.
+     */
+    public void testCollisionsAreNotApplied() throws IOException {
+        MediaFile claimed = mediaFile("Nature.Doc.S01E01.mkv", "Nature Doc", "01");
+        MediaFile sameTarget = mediaFile("Nature Doc - 01.mkv", "Nature Doc", "01");
+        MediaFile otherCase = mediaFile("NATURE.DOC.S01E01.mkv", "NATURE DOC", "01");
+        MediaFile existingTarget = mediaFile("Nature.Doc.S01E02.mkv", "Nature Doc", "02");
+        Files.write(Paths.get(existingTarget.toString()), new byte[0]);
+        List<PlanOperation> operations = plan(null, false, claimed, sameTarget, otherCase, existingTarget);
+
+        assertEquals(4, operations.size());
+        assertOperation(PlanOperation.Type.RENAME, claimed.getOriginalFileName(), claimed.toString(),
+                operations.get(0));
+        for(int i = 1; i < operations.size(); i++){
+            assertEquals(PlanOperation.Type.COLLISION, operations.get(i).getType());
+        }
+        assertEquals("Target of " + claimed.getOriginalFileName(), operations.get(1).getReason());
+        assertEquals("Target of " + claimed.getOriginalFileName(), operations.get(2).getReason());
+        assertEquals("Target exists", operations.get(3).getReason());
+
+        apply();
+        assertTrue(Utilities.fileExists(claimed.toString()));
+        assertFalse(Utilities.fileExists(claimed.getOriginalFileName()));
+        assertTrue(Utilities.fileExists(sameTarget.getOriginalFileName()));
+        assertTrue(Utilities.fileExists(otherCase.getOriginalFileName()));
+        assertTrue(Utilities.fileExists(existingTarget.getOriginalFileName()));
+        assertEquals(0, Files.size(Paths.get(existingTarget.toString())));
+    }
+
+    /**
+     * With a review queue, low confidence renames are written for review
+     * without a copy, and are not applied.
+     */
+    public void testReviewsAreNotApplied() throws IOException {
+        MediaFile unsure = mediaFile("Nature Doc 0102.mkv", "Nature Doc", "102");
+        List<PlanOperation> operations = plan(copyModule(), true, unsure);
+
+        assertEquals(1, operations.size());
+        assertOperation(PlanOperation.Type.REVIEW, unsure.getOriginalFileName(), unsure.toString(), operations.get(0));
+        assertEquals("LOW", operations.get(0).getConfidence());
+
+        apply();
+        assertTrue(Utilities.fileExists(unsure.getOriginalFileName()));
+        assertFalse(Utilities.fileExists(unsure.toString()));
+    }
+}